@@ -10,34 +10,92 @@ package org.mule.tools.maven.plugin.mule;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
 import static org.glassfish.jersey.client.HttpUrlConnectorProvider.SET_METHOD_WORKAROUND;
 
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.ws.rs.Priorities;
+import javax.ws.rs.client.AsyncInvoker;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.InvocationCallback;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Response;
 
 import org.apache.maven.plugin.logging.Log;
+import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.media.multipart.MultiPartFeature;
 
-public abstract class AbstractApi {
+public abstract class AbstractApi implements AutoCloseable {
 
   protected static final String LOGIN = "/accounts/login";
   protected final Log log;
+  private HttpTransport transport = HttpTransport.urlConnection;
+  private Client client;
+  protected DeploymentMetrics metrics = new DeploymentMetrics();
 
   public AbstractApi(Log log) {
     this.log = log;
   }
 
+  /**
+   * Sets the HTTP client used for the requests, {@link HttpTransport#urlConnection} by default. Must be set before the first
+   * request.
+   */
+  public AbstractApi setTransport(HttpTransport transport) {
+    this.transport = transport;
+    return this;
+  }
+
+  /**
+   * Sets where the HTTP metrics of this client are recorded. Must be set before the first request.
+   */
+  public AbstractApi setMetrics(DeploymentMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
   protected WebTarget getTarget(String uri, String path) {
-    ClientBuilder builder = ClientBuilder.newBuilder();
-    configureSecurityContext(builder);
-    Client client = builder.build().register(MultiPartFeature.class);
+    WebTarget target = getClient().target(uri).path(path);
     if (log != null && log.isDebugEnabled() && !isLoginRequest(path)) {
-      client.register(new ApiLoggingFilter(log));
+      target.register(new ApiLoggingFilter(log));
     }
 
-    return client.target(uri).path(path);
+    return target;
+  }
+
+  /**
+   * @return The client used by all the requests, so connections and TLS sessions are reused.
+   */
+  protected synchronized Client getClient() {
+    if (client == null) {
+      ClientConfig config = new ClientConfig();
+      transport.configure(config);
+      ClientBuilder builder = ClientBuilder.newBuilder().withConfig(config);
+      configureSecurityContext(builder);
+      // Response filters run from the highest priority down, so bodies are decompressed before they are cached or logged
+      client = builder.build().register(MultiPartFeature.class)
+          .register(new GzipResponseFilter(metrics), Priorities.USER + 100)
+          .register(new ConditionalCacheFilter(metrics), Priorities.USER + 50);
+    }
+    return client;
+  }
+
+  /**
+   * Closes the client, releasing its pooled connections and threads. A later request creates a new one.
+   */
+  @Override
+  public synchronized void close() {
+    if (client != null) {
+      client.close();
+      client = null;
+    }
   }
 
   protected boolean isLoginRequest(String path) {
@@ -49,7 +107,7 @@ public abstract class AbstractApi {
   }
 
   protected Response post(String uri, String path, Entity entity) {
-    return builder(uri, path).post(entity);
+    return send(path, getTarget(uri, path), "POST", entity);
   }
 
   protected Response post(String uri, String path, Object entity) {
@@ -57,7 +115,7 @@ public abstract class AbstractApi {
   }
 
   protected Response put(String uri, String path, Entity entity) {
-    return builder(uri, path).put(entity);
+    return send(path, getTarget(uri, path), "PUT", entity);
   }
 
   protected Response put(String uri, String path, Object entity) {
@@ -65,30 +123,167 @@ public abstract class AbstractApi {
   }
 
   protected Response delete(String uri, String path) {
-    return builder(uri, path).delete();
+    return send(path, getTarget(uri, path), "DELETE", null);
   }
 
   protected Response get(String uri, String path) {
-    return builder(uri, path).get();
+    return send(path, getTarget(uri, path), "GET", null);
   }
 
-  protected <T> T get(String uri, String path, Class<T> clazz) {
-    return get(uri, path).readEntity(clazz);
+  protected Response get(String uri, String path, Map<String, Object> queryParams) {
+    WebTarget target = getTarget(uri, path);
+    for (Map.Entry<String, Object> param : queryParams.entrySet()) {
+      target = target.queryParam(param.getKey(), param.getValue());
+    }
+    return send(path, target, "GET", null);
+  }
+
+  protected <T> T get(final String uri, final String path, final Class<T> clazz) {
+    return readShared(uri, path, clazz, new Callable<T>() {
+
+      @Override
+      public T call() {
+        return get(uri, path).readEntity(clazz);
+      }
+    });
+  }
+
+  /**
+   * Runs a read, sharing its result with other threads of the build that make the same read at the same time.
+   *
+   * @param type The type of the result, as different types may be read from the same path.
+   */
+  protected <T> T readShared(String uri, String path, Type type, Callable<T> read) {
+    String key = uri + "|" + path + "|" + type.getTypeName() + "|" + getRequestScope();
+    return SingleFlight.getInstance().execute(key, read, metrics);
+  }
+
+  /**
+   * @return What the responses depend on other than the uri and path, usually the credentials used for the requests.
+   */
+  protected String getRequestScope() {
+    return "";
   }
 
   protected Response patch(String uri, String path, Entity entity) {
-    Invocation.Builder builder = builder(uri, path);
-    builder.property(SET_METHOD_WORKAROUND, true);
-    return builder.method("PATCH", entity);
+    return send(path, getTarget(uri, path), "PATCH", entity);
   }
 
-  private Invocation.Builder builder(String uri, String path) {
-    WebTarget target = getTarget(uri, path);
+  /**
+   * Sends the request without waiting for its response. With an asynchronous transport such as
+   * {@link HttpTransport#grizzly}, many requests can be in flight without a thread for each of them.
+   */
+  protected CompletableFuture<Response> postAsync(String uri, String path, Entity entity) {
+    return sendAsync(path, getTarget(uri, path), "POST", entity);
+  }
+
+  protected CompletableFuture<Response> putAsync(String uri, String path, Entity entity) {
+    return sendAsync(path, getTarget(uri, path), "PUT", entity);
+  }
+
+  protected CompletableFuture<Response> deleteAsync(String uri, String path) {
+    return sendAsync(path, getTarget(uri, path), "DELETE", null);
+  }
+
+  protected CompletableFuture<Response> getAsync(String uri, String path) {
+    return sendAsync(path, getTarget(uri, path), "GET", null);
+  }
+
+  /**
+   * Sends the request, and sends it once more when it was rejected with a 401 and the credentials could be renewed.
+   */
+  private Response send(String path, WebTarget target, String method, Entity<?> entity) {
+    String requestScope = getRequestScope();
+    Response response = invoke(target, method, entity);
+    if (response.getStatus() == 401 && !isLoginRequest(path) && reauthenticate(requestScope)) {
+      response.close();
+      response = invoke(target, method, entity);
+    }
+    return response;
+  }
+
+  /**
+   * Like {@link #send(String, WebTarget, String, Entity)}, without waiting for the response.
+   */
+  private CompletableFuture<Response> sendAsync(final String path, final WebTarget target, final String method,
+                                                final Entity<?> entity) {
+    final String requestScope = getRequestScope();
+    return invokeAsync(target, method, entity).thenCompose(new Function<Response, CompletionStage<Response>>() {
+
+      @Override
+      public CompletionStage<Response> apply(final Response response) {
+        if (response.getStatus() != 401 || isLoginRequest(path)) {
+          return CompletableFuture.completedFuture(response);
+        }
+        // Logging in again blocks, so it doesn't hold the thread that completed the request
+        return CompletableFuture.supplyAsync(new Supplier<Response>() {
+
+          @Override
+          public Response get() {
+            if (!reauthenticate(requestScope)) {
+              return response;
+            }
+            response.close();
+            return invoke(target, method, entity);
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Sends a request, with no entity when <code>entity</code> is null.
+   */
+  protected Response invoke(WebTarget target, String method, Entity<?> entity) {
+    Invocation.Builder builder = request(target, method);
+    return entity == null ? builder.method(method) : builder.method(method, entity);
+  }
+
+  /**
+   * Sends a request without waiting for its response, with no entity when <code>entity</code> is null.
+   */
+  protected CompletableFuture<Response> invokeAsync(WebTarget target, String method, Entity<?> entity) {
+    final CompletableFuture<Response> response = new CompletableFuture<>();
+    InvocationCallback<Response> callback = new InvocationCallback<Response>() {
+
+      @Override
+      public void completed(Response result) {
+        response.complete(result);
+      }
+
+      @Override
+      public void failed(Throwable failure) {
+        response.completeExceptionally(failure);
+      }
+    };
+    AsyncInvoker invoker = request(target, method).async();
+    if (entity == null) {
+      invoker.method(method, callback);
+    } else {
+      invoker.method(method, entity, callback);
+    }
+    return response;
+  }
+
+  private Invocation.Builder request(WebTarget target, String method) {
     Invocation.Builder builder = target.request(APPLICATION_JSON_TYPE);
     configureRequest(builder);
+    if ("PATCH".equals(method) && !transport.isPatchSupported()) {
+      builder.property(SET_METHOD_WORKAROUND, true);
+    }
     return builder;
   }
 
+  /**
+   * Template method to renew the credentials of the requests after one was rejected with a 401 (Unauthorized).
+   *
+   * @param requestScope The {@link #getRequestScope()} the rejected request was sent with.
+   * @return Whether the request should be sent again.
+   */
+  protected boolean reauthenticate(String requestScope) {
+    return false;
+  }
+
   /**
    * Template method to allow subclasses to configure the request (adding headers for example).
    * @param builder The invocation builder for the request.
@@ -8,10 +8,11 @@ package org.mule.tools.maven.plugin.mule;
 
 import java.io.File;
 
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 
 
-public abstract class AbstractDeployer {
+public abstract class AbstractDeployer implements AutoCloseable {
 
   private final String applicationName;
   private final File applicationFile;
@@ -29,6 +30,24 @@ public abstract class AbstractDeployer {
    */
   public abstract void deploy() throws DeploymentException;
 
+  /**
+   * Deploys the application, running the {@link HookPoint#preDeploy} hook before and the {@link HookPoint#postDeploy} hook
+   * after it.
+   */
+  public void deploy(DeploymentHook hook) throws DeploymentException, MojoExecutionException {
+    hook.execute(HookPoint.preDeploy);
+    deploy();
+    hook.execute(HookPoint.postDeploy);
+  }
+
+  /**
+   * Releases the HTTP clients used by the deployer, if any.
+   */
+  @Override
+  public void close() {
+    // Implemented in deployers calling remote APIs
+  }
+
   /**
    * Logs an info message in the plugin.
    * @param message The message to log.
@@ -45,6 +64,23 @@ public abstract class AbstractDeployer {
     log.error(message);
   }
 
+  /**
+   * Checks that the application file exists.
+   *
+   * @return The size of the application file in bytes.
+   * @throws DeploymentException If the application file doesn't exist.
+   */
+  protected long checkApplicationFile() throws DeploymentException {
+    if (applicationFile == null || !applicationFile.isFile()) {
+      throw new DeploymentException("Application file " + applicationFile + " does not exist.");
+    }
+    return applicationFile.length();
+  }
+
+  protected Log getLog() {
+    return log;
+  }
+
   public String getApplicationName() {
     return applicationName;
   }
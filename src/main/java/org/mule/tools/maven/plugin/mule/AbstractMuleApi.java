@@ -15,6 +15,7 @@ import org.mule.tools.maven.plugin.mule.arm.Environments;
 import org.mule.tools.maven.plugin.mule.arm.UserInfo;
 
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
 
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation;
@@ -33,6 +34,7 @@ public abstract class AbstractMuleApi extends AbstractApi {
   private static final String AUTHORIZATION_HEADER = "Authorization";
   private static final String ENV_ID_HEADER = "X-ANYPNT-ENV-ID";
   private static final String ORG_ID_HEADER = "X-ANYPNT-ORG-ID";
+  private static final String SESSION = "session";
 
   protected String uri;
   private String username;
@@ -43,6 +45,8 @@ public abstract class AbstractMuleApi extends AbstractApi {
   private String bearerToken;
   private String envId;
   private String orgId;
+  private String[] session;
+  private ApiSessionCache cache;
 
   public AbstractMuleApi(String uri, Log log, String username, String password, String environment, String businessGroup) {
     super(log);
@@ -53,10 +57,106 @@ public abstract class AbstractMuleApi extends AbstractApi {
     this.businessGroup = businessGroup;
   }
 
+  /**
+   * Shares the authenticated session and inventory with other executions using the same cache.
+   */
+  public AbstractMuleApi setSessionCache(ApiSessionCache cache) {
+    this.cache = cache;
+    return this;
+  }
+
   public void init() {
+    if (cache == null) {
+      setSession(login());
+      return;
+    }
+    setSession(cache.get(getSessionScope(), SESSION, ApiSessionCache.SESSION_TTL, new Callable<String[]>() {
+
+      @Override
+      public String[] call() {
+        return login();
+      }
+    }));
+  }
+
+  /**
+   * Logs in again after the platform rejected the token, unless another request already did. The rejected session is
+   * discarded from the cache, so other executions sharing it log in again too, or reuse this new session.
+   */
+  @Override
+  protected synchronized boolean reauthenticate(String requestScope) {
+    if (session == null) {
+      return false;
+    }
+    if (!requestScope.equals(getRequestScope())) {
+      return true;
+    }
+    log.info("Session of " + username + " expired, renewing it");
+    if (cache != null) {
+      cache.invalidate(getSessionScope(), SESSION, session);
+    }
+    init();
+    return true;
+  }
+
+  private void setSession(String[] session) {
+    this.session = session;
+    bearerToken = session[0];
+    orgId = session[1];
+    envId = session[2];
+  }
+
+  /**
+   * Logs in and resolves the organization and environment.
+   *
+   * @return The bearer token, organization id and environment id.
+   */
+  protected String[] login() {
     bearerToken = getBearerToken(username, password);
     orgId = getOrgId();
     envId = findEnvironmentByName(environment).id;
+    return new String[] {bearerToken, orgId, envId};
+  }
+
+  private String getSessionScope() {
+    // Credentials are part of the key, so a session is never reused with other credentials
+    return uri + "|" + username + "|" + ApiSessionCache.digest(password) + "|" + businessGroup + "|" + environment;
+  }
+
+  /**
+   * Returns the cached inventory value, loading it when it isn't cached. Inventory is cached per uri, user, organization and
+   * environment, shared by the ARM and CloudHub APIs, so names are prefixed with the API they belong to.
+   */
+  protected <T> T cached(String name, Callable<T> loader) {
+    if (cache == null) {
+      try {
+        return loader.call();
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    return cache.get(getInventoryScope(), name, ApiSessionCache.INVENTORY_TTL, loader);
+  }
+
+  /**
+   * Discards the cached inventory value, after a change that makes it stale.
+   */
+  protected void invalidate(String name) {
+    if (cache != null) {
+      cache.invalidate(getInventoryScope(), name);
+    }
+  }
+
+  @Override
+  protected String getRequestScope() {
+    return bearerToken + "|" + orgId + "|" + envId;
+  }
+
+  private String getInventoryScope() {
+    // What a user sees of an environment depends on their permissions
+    return uri + "|" + username + "|" + orgId + "|" + envId;
   }
 
   private String getBearerToken(String username, String password) {
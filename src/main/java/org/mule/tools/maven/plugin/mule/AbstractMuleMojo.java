@@ -6,7 +6,10 @@
  */
 package org.mule.tools.maven.plugin.mule;
 
-import groovy.lang.GroovyShell;
+import org.mule.tools.maven.plugin.mule.agent.AgentApi;
+import org.mule.tools.maven.plugin.mule.arm.ArmApi;
+import org.mule.tools.maven.plugin.mule.cloudhub.CloudhubApi;
+
 import org.apache.commons.lang.StringUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.factory.ArtifactFactory;
@@ -26,14 +29,14 @@ import org.apache.maven.settings.Settings;
 import org.apache.maven.settings.crypto.DefaultSettingsDecryptionRequest;
 import org.apache.maven.settings.crypto.SettingsDecrypter;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -110,6 +113,15 @@ public abstract class AbstractMuleMojo extends AbstractMojo {
   @Parameter(readonly = true, property = "anypoint.uri", defaultValue = "https://anypoint.mulesoft.com")
   protected String uri;
 
+  /**
+   * URIs of the Mule Agents to deploy to, instead of <code>uri</code>. The application is uploaded to all of them at the
+   * same time.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "agent.uris")
+  protected List<String> agentUris = new ArrayList<>();
+
   /**
    * Anypoint environment name.
    *
@@ -160,6 +172,50 @@ public abstract class AbstractMuleMojo extends AbstractMojo {
   @Parameter(defaultValue = "Medium", readonly = true, property = "arm.insecure")
   protected boolean armInsecure;
 
+  /**
+   * Trust store with the certificates of an on premises ARM, when they aren't trusted by the JVM.
+   *
+   * @since 2.3
+   */
+  @Parameter(required = false, property = "arm.trustStore")
+  protected File armTrustStore;
+
+  /**
+   * @since 2.3
+   */
+  @Parameter(required = false, property = "arm.trustStorePassword")
+  protected String armTrustStorePassword;
+
+  /**
+   * Type of the trust store, the JVM default type (usually <code>jks</code>) if not set.
+   *
+   * @since 2.3
+   */
+  @Parameter(required = false, property = "arm.trustStoreType")
+  protected String armTrustStoreType;
+
+  /**
+   * Key store with the client certificate presented to an on premises ARM that requires one.
+   *
+   * @since 2.3
+   */
+  @Parameter(required = false, property = "arm.keyStore")
+  protected File armKeyStore;
+
+  /**
+   * @since 2.3
+   */
+  @Parameter(required = false, property = "arm.keyStorePassword")
+  protected String armKeyStorePassword;
+
+  /**
+   * Type of the key store, the JVM default type (usually <code>jks</code>) if not set.
+   *
+   * @since 2.3
+   */
+  @Parameter(required = false, property = "arm.keyStoreType")
+  protected String armKeyStoreType;
+
   @Parameter
   private List<ArtifactDescription> artifactItems = new ArrayList<ArtifactDescription>();
 
@@ -197,6 +253,53 @@ public abstract class AbstractMuleMojo extends AbstractMojo {
   @Parameter(property = "anypoint.target.type")
   protected TargetType targetType;
 
+  /**
+   * File where the metrics collected during the execution are stored as properties. Metrics are always logged.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "mule.metricsFile", required = false)
+  protected File metricsFile;
+
+  protected DeploymentMetrics metrics = new DeploymentMetrics();
+
+  /**
+   * Share Anypoint Platform sessions and the environment inventory with the other executions of the build, instead of
+   * logging in and looking them up again for every module. Disabled by default, as executions then see inventory up to five
+   * minutes old when something else changes the environment during the build.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "anypoint.sessionCache", defaultValue = "false")
+  protected boolean sessionCache;
+
+  /**
+   * HTTP client used to call Anypoint Platform and the agent: <code>urlConnection</code> (JDK), <code>apache</code> (pooled
+   * connections) or <code>grizzly</code> (non blocking).
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "anypoint.transport", defaultValue = "urlConnection")
+  protected HttpTransport transport = HttpTransport.urlConnection;
+
+  /**
+   * Groovy scripts to run at each point of the deployment: <code>preInstall</code>, <code>postStart</code>,
+   * <code>preDeploy</code> and <code>postDeploy</code>. Scripts run in the build process, so they don't restart Mule.
+   *
+   * @since 2.3
+   */
+  @Parameter(required = false)
+  protected ScriptHooks hooks;
+
+  /**
+   * Directory where the plugin keeps what later builds reuse: compiled scripts, startup times and class
+   * data sharing archives.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "mule.cacheDirectory", defaultValue = "${user.home}/.mule-maven-plugin")
+  protected File cacheDirectory;
+
   /**
    * @see org.apache.maven.plugin.Mojo#execute()
    */
@@ -206,7 +309,25 @@ public abstract class AbstractMuleMojo extends AbstractMojo {
       getLog().info("Skipping execution: skip=" + skip);
     } else {
       getLog().debug("Executing mojo, skip=" + skip);
-      doExecute();
+      try {
+        doExecute();
+      } finally {
+        reportMetrics();
+      }
+    }
+  }
+
+  private void reportMetrics() {
+    if (metrics.isEmpty()) {
+      return;
+    }
+    metrics.report(getLog());
+    if (metricsFile != null) {
+      try {
+        metrics.store(metricsFile);
+      } catch (IOException e) {
+        getLog().warn("Couldn't store metrics in " + metricsFile + ": " + e.getMessage());
+      }
     }
   }
 
@@ -239,42 +360,97 @@ public abstract class AbstractMuleMojo extends AbstractMojo {
     }
   }
 
-  protected String readFile(String file) throws IOException {
-    BufferedReader reader = new BufferedReader(new FileReader(file));
-    String line;
-    StringBuilder stringBuilder = new StringBuilder();
+  protected void executeGroovyScript() throws MojoExecutionException {
+    getLog().info("executing script: " + script.getAbsolutePath());
+    runScript(script, null);
+  }
 
-    while ((line = reader.readLine()) != null) {
-      stringBuilder.append(line);
-      stringBuilder.append("\n");
+  /**
+   * Runs the script configured for the hook point, if any.
+   */
+  protected void executeHook(HookPoint hookPoint) throws MojoExecutionException {
+    File hookScript = hooks != null ? hooks.getScript(hookPoint) : null;
+    if (hookScript != null) {
+      getLog().info("executing " + hookPoint + " script: " + hookScript.getAbsolutePath());
+      runScript(hookScript, hookPoint);
     }
+  }
 
-    return stringBuilder.toString();
+  /**
+   * @return A hook that runs the configured scripts, for the mojo and its deployers to call at each hook point. Each script
+   *         runs once per hook.
+   */
+  protected DeploymentHook createDeploymentHook() {
+    return new OnceDeploymentHook(new DeploymentHook() {
+
+      @Override
+      public void execute(HookPoint hookPoint) throws MojoExecutionException {
+        executeHook(hookPoint);
+      }
+    });
   }
 
-  protected void executeGroovyScript() throws MojoExecutionException {
-    GroovyShell shell = new GroovyShell();
-    getLog().info("executing script: " + script.getAbsolutePath());
-    shell.setProperty("basedir", mavenProject.getBasedir());
+  private void runScript(File file, HookPoint hookPoint) throws MojoExecutionException {
+    Map<String, Object> variables = new HashMap<>();
+    variables.put("basedir", mavenProject.getBasedir());
+    variables.put("project", mavenProject);
+    variables.put("log", getLog());
+    variables.put("hook", hookPoint != null ? hookPoint.name() : null);
+    new GroovyScriptRunner(new File(cacheDirectory, "scripts"), getLog(), metrics).run(file, variables, mavenProject.getProperties());
+  }
 
-    for (Map.Entry entry : mavenProject.getProperties().entrySet()) {
-      shell.setProperty((String) entry.getKey(), entry.getValue());
-    }
+  /**
+   * @return The cache shared with the other executions of the build, or null when sessions aren't shared.
+   */
+  protected ApiSessionCache getSessionCache() {
+    return sessionCache ? ApiSessionCache.getInstance() : null;
+  }
 
-    getLog().info(mavenProject.getBasedir().getAbsolutePath());
-    try {
-      shell.evaluate(readFile(script.getAbsolutePath()));
-    } catch (IOException e) {
-      throw new MojoExecutionException("error executing script: " + script.getAbsolutePath() + "\n" + e.getMessage());
-    }
+  protected ArmApi createArmApi() {
+    ArmApi armApi = new ArmApi(getLog(), uri, username, password, environment, businessGroup, armInsecure);
+    armApi.setSessionCache(getSessionCache());
+    armApi.setTransport(transport);
+    armApi.setTlsConfiguration(createArmTlsConfiguration()).setMetrics(metrics);
+    return armApi;
+  }
+
+  protected TlsConfiguration createArmTlsConfiguration() {
+    return new TlsConfiguration().setTrustStore(armTrustStore, armTrustStorePassword, armTrustStoreType)
+        .setKeyStore(armKeyStore, armKeyStorePassword, armKeyStoreType);
+  }
+
+  protected CloudhubApi createCloudhubApi() {
+    CloudhubApi cloudhubApi = new CloudhubApi(uri, getLog(), username, password, environment, businessGroup);
+    cloudhubApi.setSessionCache(getSessionCache());
+    cloudhubApi.setTransport(transport);
+    cloudhubApi.setMetrics(metrics);
+    return cloudhubApi;
+  }
+
+  protected AgentApi createAgentApi(String agentUri) {
+    AgentApi agentApi = new AgentApi(getLog(), agentUri);
+    agentApi.setTransport(transport);
+    agentApi.setMetrics(metrics);
+    return agentApi;
+  }
+
+  protected List<String> getAgentUris() {
+    return agentUris.isEmpty() ? Collections.singletonList(uri) : agentUris;
   }
 
   protected void addDependencies(Deployer deployer) throws MojoFailureException, MojoExecutionException {
+    deployer.addLibraries(getDependencies());
+  }
+
+  /**
+   * @return The resolved artifacts of <code>artifactItems</code>.
+   */
+  protected List<File> getDependencies() throws MojoFailureException, MojoExecutionException {
     List<File> libraries = new ArrayList<File>();
     for (ArtifactDescription artifact : artifactItems) {
       libraries.add(this.getDependency(artifact));
     }
-    deployer.addLibraries(libraries);
+    return libraries;
   }
 
   protected Artifact resolveMavenProjectArtifact() throws MojoFailureException {
@@ -328,8 +504,9 @@ public abstract class AbstractMuleMojo extends AbstractMojo {
       }
     }
 
+    // Only needed to send PATCH through HttpURLConnection
     String ibmJdkSupport = System.getProperty("ibm.jdk.support");
-    if ("true".equals(ibmJdkSupport)) {
+    if ("true".equals(ibmJdkSupport) && !transport.isPatchSupported()) {
       getLog().debug("Attempting to provide support for IBM JDK...");
       try {
         Field methods = HttpURLConnection.class.getDeclaredField("methods");
@@ -351,6 +528,6 @@ public abstract class AbstractMuleMojo extends AbstractMojo {
   }
 
   public enum DeploymentType {
-    standalone, cluster, cloudhub, arm, agent
+    standalone, cluster, cloudhub, arm, agent, embedded
   }
 }
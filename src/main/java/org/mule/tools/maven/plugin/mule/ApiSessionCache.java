@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Anypoint Platform state shared by all the executions of the plugin in a build: authenticated sessions, the organization and
+ * environment they resolve to, and inventory snapshots such as the deployed applications. The plugin class realm lives as long
+ * as the Maven session, so modules built in parallel reuse the same state.
+ * <p>
+ * Values are grouped by scope, usually the (uri, organization, environment) they belong to. Loading and invalidating values of
+ * the same scope is serialized by a lock taken from a fixed set of stripes, so a value is loaded once while other scopes keep
+ * being served concurrently.
+ */
+public class ApiSessionCache {
+
+  public static final long SESSION_TTL = TimeUnit.MINUTES.toMillis(30);
+  public static final long INVENTORY_TTL = TimeUnit.MINUTES.toMillis(5);
+
+  private static final int STRIPES = 32;
+  private static final ApiSessionCache INSTANCE = new ApiSessionCache();
+
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final Lock[] locks = new Lock[STRIPES];
+
+  public ApiSessionCache() {
+    for (int i = 0; i < STRIPES; i++) {
+      locks[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * @return The cache shared by the whole build.
+   */
+  public static ApiSessionCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * @return The SHA-256 digest of a secret, in hex, so scopes can be keyed on credentials without holding them in plain text
+   *         or colliding the way {@link String#hashCode()} does.
+   */
+  public static String digest(String secret) {
+    if (secret == null) {
+      return null;
+    }
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+      StringBuilder hex = new StringBuilder();
+      for (byte b : hash) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns the value cached for the name in the scope, loading it if it's not cached or it's older than the time to live.
+   */
+  public <T> T get(String scope, String name, long ttl, Callable<T> loader) {
+    String key = key(scope, name);
+    T value = getIfPresent(key);
+    if (value != null) {
+      return value;
+    }
+    Lock lock = lockFor(scope);
+    lock.lock();
+    try {
+      value = getIfPresent(key);
+      if (value == null) {
+        value = load(loader);
+        entries.put(key, new Entry(value, System.currentTimeMillis() + ttl));
+      }
+      return value;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Discards the value cached for the name in the scope, for example after changing what it describes.
+   */
+  public void invalidate(String scope, String name) {
+    Lock lock = lockFor(scope);
+    lock.lock();
+    try {
+      entries.remove(key(scope, name));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Discards the value cached for the name in the scope if it is still the given one, so a value that was already replaced
+   * isn't discarded.
+   */
+  public void invalidate(String scope, String name, Object value) {
+    String key = key(scope, name);
+    Lock lock = lockFor(scope);
+    lock.lock();
+    try {
+      Entry entry = entries.get(key);
+      if (entry != null && entry.value == value) {
+        entries.remove(key);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Discards all the values cached in the scope.
+   */
+  public void invalidate(String scope) {
+    String prefix = scope + "\n";
+    Lock lock = lockFor(scope);
+    lock.lock();
+    try {
+      for (Iterator<String> keys = entries.keySet().iterator(); keys.hasNext();) {
+        if (keys.next().startsWith(prefix)) {
+          keys.remove();
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T getIfPresent(String key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.expires < System.currentTimeMillis()) {
+      entries.remove(key, entry);
+      return null;
+    }
+    return (T) entry.value;
+  }
+
+  private <T> T load(Callable<T> loader) {
+    try {
+      return loader.call();
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private Lock lockFor(String scope) {
+    return locks[(scope.hashCode() & Integer.MAX_VALUE) % STRIPES];
+  }
+
+  private static String key(String scope, String name) {
+    return scope + "\n" + name;
+  }
+
+  private static class Entry {
+
+    private final Object value;
+    private final long expires;
+
+    Entry(Object value, long expires) {
+      this.value = value;
+      this.expires = expires;
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * Application class data sharing archive for a Mule Runtime Standalone instance. Archives are dumped when the JVM of a
+ * training run exits, and are keyed by Mule version, the JVM of the instance, application and MULE_HOME, as the JVM only
+ * maps an archive created by the same JVM with the same class path.
+ */
+public class ClassDataSharingArchive {
+
+  /**
+   * First JDK able to dump a dynamic archive with the classes loaded by an application.
+   */
+  static final int MINIMUM_JAVA_VERSION = 13;
+
+  private static final String BASELINE = "baseline.ready.millis";
+
+  private final File archive;
+  private final File baselineFile;
+
+  public ClassDataSharingArchive(File cacheDirectory, String muleVersion, MuleJvm jvm, String applicationName, File muleHome) {
+    String key = String.format("mule-%s-jvm-%s-%s-%08x", muleVersion, jvm.getVersion(), applicationName,
+                               (muleHome.getAbsolutePath() + "|" + jvm.getCommand()).hashCode())
+        .replaceAll("[^\\w.-]", "_");
+    this.archive = new File(cacheDirectory, key + ".jsa");
+    this.baselineFile = new File(cacheDirectory, key + ".properties");
+  }
+
+  /**
+   * @return Whether the JVM of the instance is known to be able to dump archives.
+   */
+  public static boolean isSupported(MuleJvm jvm) {
+    return jvm.getJavaVersion() != null && jvm.getJavaVersion() >= MINIMUM_JAVA_VERSION;
+  }
+
+  public File getFile() {
+    return archive;
+  }
+
+  public boolean exists() {
+    return archive.isFile() && archive.length() > 0;
+  }
+
+  /**
+   * @return The JVM option that makes the training run dump this archive on exit.
+   */
+  public String getTrainingOption() {
+    archive.getParentFile().mkdirs();
+    return "-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath();
+  }
+
+  /**
+   * Stores the time the training run took to get the application deployed, to measure the improvement of later runs.
+   */
+  public void setBaseline(long readyMillis) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty(BASELINE, Long.toString(readyMillis));
+    try (OutputStream stream = new FileOutputStream(baselineFile)) {
+      properties.store(stream, "Startup without class data sharing archive " + archive.getName());
+    }
+  }
+
+  /**
+   * @return The time the training run took to get the application deployed, or null if unknown.
+   */
+  public Long getBaseline() {
+    if (!baselineFile.isFile()) {
+      return null;
+    }
+    Properties properties = new Properties();
+    try (InputStream stream = new FileInputStream(baselineFile)) {
+      properties.load(stream);
+      String baseline = properties.getProperty(BASELINE);
+      return baseline == null ? null : Long.valueOf(baseline);
+    } catch (IOException | NumberFormatException e) {
+      return null;
+    }
+  }
+
+  public String toString() {
+    return archive.getAbsolutePath();
+  }
+}
@@ -14,20 +14,41 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.maven.plugin.MojoFailureException;
 
 public class ClusterConfigurator {
 
+  /**
+   * Port the cluster member of a node listens on, the same one the other nodes list for it in <code>mule.cluster.nodes</code>.
+   */
+  public static final String CLUSTER_PORT_PROPERTY = "mule.cluster.port";
+
   public boolean configureCluster(File[] paths, List<MuleProcessController> mules) throws MojoFailureException {
+    return configureCluster(paths, mules, Collections.<PortAllocation>emptyList());
+  }
+
+  /**
+   * When ports are allocated to the nodes, they find each other through an explicit member list of their cluster ports
+   * instead of multicast, so clusters of any size, and clusters of different builds, can run on the same host.
+   *
+   * @param ports Ports allocated to each node. When empty, nodes keep the default multicast discovery.
+   */
+  public boolean configureCluster(File[] paths, List<MuleProcessController> mules, List<PortAllocation> ports)
+      throws MojoFailureException {
     int nodeNumber = 1;
     for (File f : paths) {
       try {
-        if (!new File(f.getAbsolutePath() + "/.mule").mkdirs()) {
+        File muleDirectory = new File(f.getAbsolutePath() + "/.mule");
+        if (!muleDirectory.isDirectory() && !muleDirectory.mkdirs()) {
           throw new MojoFailureException("Couldn't create .mule dir at: " + f.getAbsolutePath());
         }
-        createClusterConfig(paths, mules, nodeNumber, f);
+        createClusterConfig(paths, ports, nodeNumber, f);
         nodeNumber++;
       } catch (IOException ex) {
         throw new MojoFailureException("Couldn't create mule-cluster.properties in one of the mules" + ex.getMessage());
@@ -37,27 +58,44 @@ public class ClusterConfigurator {
     return true;
   }
 
-  private void createClusterConfig(File[] paths, List<MuleProcessController> mules, int nodeNumber, File f)
-      throws IOException, MojoFailureException {
-    BufferedWriter writer = null;
-    try {
-
-      writer = new BufferedWriter(new OutputStreamWriter(
-                                                         new FileOutputStream(f.getAbsolutePath()
-                                                             + "/.mule/mule-cluster.properties"),
-                                                         StandardCharsets.UTF_8));
-      writer.write("mule.clusterSize=" + paths.length);
-      writer.write("mule.clusterSchema=partitioned-sync2backup");
-      writer.write("mule.clusterId=" + mules.hashCode());
-      writer.write("mule.clusterNodeId=" + nodeNumber);
-      writer.close();
-    } finally {
-      try {
-        writer.close();
-      } catch (IOException e) {
-        throw new MojoFailureException("Couldn't close mule-cluster.properties file: " + f.getAbsolutePath());
+  private void createClusterConfig(File[] paths, List<PortAllocation> ports, int nodeNumber, File f) throws IOException {
+    try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                                                                           new FileOutputStream(f.getAbsolutePath()
+                                                                               + "/.mule/mule-cluster.properties"),
+                                                                           StandardCharsets.UTF_8))) {
+      writeProperty(writer, "mule.clusterSize", paths.length);
+      writeProperty(writer, "mule.clusterSchema", "partitioned-sync2backup");
+      writeProperty(writer, "mule.clusterId", getClusterId(paths));
+      writeProperty(writer, "mule.clusterNodeId", nodeNumber);
+      if (!ports.isEmpty()) {
+        writeProperty(writer, "mule.cluster.multicastenabled", false);
+        writeProperty(writer, "mule.cluster.nodes", StringUtils.join(getMembers(ports), ","));
+        writeProperty(writer, CLUSTER_PORT_PROPERTY, ports.get(nodeNumber - 1).getClusterPort());
       }
     }
   }
 
+  /**
+   * @return An id derived from the node locations: the same on every run of a build, and different for every build.
+   */
+  static String getClusterId(File[] paths) {
+    StringBuilder locations = new StringBuilder();
+    for (File path : paths) {
+      locations.append(path.getAbsolutePath()).append(File.pathSeparatorChar);
+    }
+    return UUID.nameUUIDFromBytes(locations.toString().getBytes(StandardCharsets.UTF_8)).toString();
+  }
+
+  static List<String> getMembers(List<PortAllocation> ports) {
+    List<String> members = new ArrayList<>();
+    for (PortAllocation allocation : ports) {
+      members.add("127.0.0.1:" + allocation.getClusterPort());
+    }
+    return members;
+  }
+
+  private void writeProperty(BufferedWriter writer, String name, Object value) throws IOException {
+    writer.write(name + "=" + value);
+    writer.newLine();
+  }
 }
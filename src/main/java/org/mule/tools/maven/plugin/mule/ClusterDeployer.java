@@ -8,12 +8,16 @@ package org.mule.tools.maven.plugin.mule;
 
 import org.mule.tck.probe.PollingProber;
 import org.mule.tck.probe.Prober;
-import org.mule.test.infrastructure.process.AppDeploymentProbe;
 import org.mule.test.infrastructure.process.MuleControllerException;
 import org.mule.test.infrastructure.process.MuleProcessController;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -26,10 +30,16 @@ public class ClusterDeployer {
   private Log log;
   private File application;
   private Prober prober;
+  private List<MuleInstanceProbe> probes = new ArrayList<>();
   private long timeout;
   private long pollingDelay;
   private String[] arguments;
   private ClusterConfigurator configurator = new ClusterConfigurator();
+  private DeploymentMetrics metrics = new DeploymentMetrics();
+  private DeploymentHook hook;
+  private List<PortAllocation> ports = Collections.emptyList();
+  private int startupBatchSize = Integer.MAX_VALUE;
+  private long startupStagger;
 
   public ClusterDeployer(File[] paths,
                          List<MuleProcessController> mules,
@@ -46,6 +56,9 @@ public class ClusterDeployer {
     this.arguments = arguments;
     this.prober = new PollingProber(timeout, pollingDelay);
     this.paths = paths;
+    for (int i = 0; i < paths.length; i++) {
+      probes.add(new MuleInstanceProbe(paths[i], mules.get(i)));
+    }
     log.debug(toString());
   }
 
@@ -56,10 +69,21 @@ public class ClusterDeployer {
 
   public void execute() throws MojoFailureException, MojoExecutionException {
     try {
-      configurator.configureCluster(paths, mules);
-      startMulesIfStopped();
+      configurator.configureCluster(paths, mules, ports);
+      long start = System.nanoTime();
+      boolean started = startMulesIfStopped();
+      if (started) {
+        executeHook(HookPoint.postStart);
+      }
+      long deployStart = System.nanoTime();
+      executeHook(HookPoint.preDeploy);
       deployApplications();
       waitForDeployments();
+      executeHook(HookPoint.postDeploy);
+      metrics.elapsed("deploy.ready.millis", deployStart);
+      if (started) {
+        metrics.elapsed("mule.ready.millis", start);
+      }
     } catch (MuleControllerException e) {
       throw new MojoFailureException("Error deploying application: [" + application + "]");
     } catch (RuntimeException e) {
@@ -69,14 +93,14 @@ public class ClusterDeployer {
   }
 
   private void waitForDeployments() throws MojoFailureException {
-    for (MuleProcessController m : mules) {
+    for (MuleInstanceProbe probe : probes) {
       if (!application.exists()) {
         throw new MojoFailureException("Application does not exists: " + application);
       }
       log.debug("Checking for application [" + application + "] to be deployed.");
       String app = getApplicationName(application);
       try {
-        prober.check(AppDeploymentProbe.isDeployed(m, app));
+        prober.check(probe.deployed(app));
       } catch (AssertionError e) {
         log.error("Couldn't deploy application [" + application + "] after [" + timeout
             + "] miliseconds. Check Mule Runtime log");
@@ -93,48 +117,127 @@ public class ClusterDeployer {
   }
 
   private void deployApplications() throws MojoFailureException {
-    for (MuleProcessController m : mules) {
+    FileStager stager = new FileStager(metrics);
+    for (File path : paths) {
       if (!application.exists()) {
         throw new MojoFailureException("Application does not exists: " + application.getAbsolutePath());
       }
       log.info("Deploying application [" + application + "]");
       try {
-        m.deploy(application.getAbsolutePath());
-      } catch (MuleControllerException e) {
-        log.error("Couldn't deploy application: " + application + ". Check Mule Runtime logs");
+        stager.stageAtomically(application.toPath(), new File(path, "apps/" + application.getName()).toPath());
+      } catch (IOException e) {
+        throw new MojoFailureException("Couldn't deploy application: " + application + ": " + e.getMessage());
       }
     }
   }
 
-  private void startMulesIfStopped() {
-    for (MuleProcessController m : mules) {
+  /**
+   * Starts the stopped nodes in batches of <code>startupBatchSize</code> nodes started at the same time, waiting
+   * <code>startupStagger</code> milliseconds between batches.
+   *
+   * @return true if any node was started by this call.
+   */
+  private boolean startMulesIfStopped() throws MojoExecutionException {
+    List<MuleProcessController> stopped = new ArrayList<>();
+    for (int i = 0; i < mules.size(); i++) {
       log.debug("Checking if Mule Runtime is running.");
-      if (!m.isRunning()) {
-        try {
-          log.info("Starting Mule Runtime");
-          if (arguments == null) {
-            m.start();
-          } else {
-            m.start(arguments);
-          }
-        } catch (MuleControllerException e) {
-          log.error("Couldn't start Mule Runtime. Check Mule Runtime logs");
+      if (!probes.get(i).isRunning()) {
+        stopped.add(mules.get(i));
+      }
+    }
+    if (stopped.isEmpty()) {
+      return false;
+    }
+    long start = System.nanoTime();
+    try {
+      for (int first = 0; first < stopped.size(); first += startupBatchSize) {
+        if (first > 0 && startupStagger > 0) {
+          Thread.sleep(startupStagger);
+        }
+        List<MuleProcessController> batch = stopped.subList(first, Math.min(stopped.size(), first + startupBatchSize));
+        log.info(String.format("Starting Mule Runtime nodes %d to %d of %d", first + 1, first + batch.size(), stopped.size()));
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (final MuleProcessController m : batch) {
+          tasks.add(new Callable<Void>() {
+
+            @Override
+            public Void call() {
+              start(m);
+              return null;
+            }
+          });
         }
+        ParallelExecutor.invokeAll(batch.size(), tasks);
       }
+    } catch (ExecutionException e) {
+      throw new MojoExecutionException("Couldn't start Mule Runtime", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Interrupted while starting Mule Runtime", e);
     }
-
+    metrics.elapsed("mule.start.millis", start);
+    return true;
   }
 
-  public ClusterDeployer addLibraries(List<File> libs) {
-    for (File file : libs) {
-      for (MuleProcessController c : mules) {
-        c.addLibrary(file);
+  private void start(MuleProcessController m) {
+    try {
+      if (arguments == null) {
+        m.start();
+      } else {
+        m.start(arguments);
       }
+    } catch (MuleControllerException e) {
+      log.error("Couldn't start Mule Runtime. Check Mule Runtime logs");
+    }
+  }
+
 
-      log.debug(String.format("Adding library %s...", file));
+  public ClusterDeployer setMetrics(DeploymentMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  /**
+   * Called at each {@link HookPoint} after Mule Runtime Standalone is installed.
+   */
+  public ClusterDeployer setHook(DeploymentHook hook) {
+    this.hook = hook;
+    return this;
+  }
+
+  private void executeHook(HookPoint hookPoint) throws MojoExecutionException {
+    if (hook != null) {
+      hook.execute(hookPoint);
     }
+  }
+
+  /**
+   * Starts nodes in batches instead of all at the same time.
+   *
+   * @param batchSize Nodes started at the same time.
+   * @param stagger Milliseconds between batches.
+   */
+  public ClusterDeployer setStartup(int batchSize, long stagger) {
+    this.startupBatchSize = Math.max(1, batchSize);
+    this.startupStagger = stagger;
     return this;
   }
 
+  /**
+   * Sets the ports allocated to each node, so nodes find each other on them.
+   */
+  public ClusterDeployer setPortAllocations(List<PortAllocation> ports) {
+    this.ports = ports;
+    return this;
+  }
+
+  public ClusterDeployer addLibraries(List<File> libs) throws MojoFailureException {
+    try {
+      new LibraryProvisioner(new File(paths[0], ".mule/libs"), log, metrics).provision(libs, paths);
+    } catch (IOException e) {
+      throw new MojoFailureException("Couldn't add libraries to Mule Runtime: " + e.getMessage());
+    }
+    return this;
+  }
 
 }
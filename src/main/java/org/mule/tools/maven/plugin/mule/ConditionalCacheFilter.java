@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static javax.ws.rs.core.HttpHeaders.CONTENT_LENGTH;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static javax.ws.rs.core.HttpHeaders.ETAG;
+import static javax.ws.rs.core.HttpHeaders.IF_MODIFIED_SINCE;
+import static javax.ws.rs.core.HttpHeaders.IF_NONE_MATCH;
+import static javax.ws.rs.core.HttpHeaders.LAST_MODIFIED;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.Response;
+
+/**
+ * Keeps the body of GET responses that have an <code>ETag</code> or <code>Last-Modified</code> header, and revalidates it
+ * with <code>If-None-Match</code> or <code>If-Modified-Since</code> the next time the same resource is read with the same
+ * request headers. A <code>304 Not Modified</code> response is replaced with the kept body. Revalidations are recorded as
+ * <code>http.cache.revalidated.count</code> and the bodies not transferred as <code>http.cache.saved.bytes</code>. A
+ * <code>304 Not Modified</code> for a body that was discarded in the meantime is replaced by the response to the same
+ * request sent again without validators, recorded as <code>http.cache.retried.count</code>.
+ * <p>
+ * Bodies are shared by all the clients of the build, as are the sessions in {@link ApiSessionCache}.
+ */
+public class ConditionalCacheFilter implements ClientRequestFilter, ClientResponseFilter {
+
+  private static final int MAX_ENTRIES = 256;
+  private static final int MAX_BODY_BYTES = 4 * 1024 * 1024;
+  private static final String KEY_PROPERTY = ConditionalCacheFilter.class.getName() + ".key";
+  private static final String RETRY_KEY_PROPERTY = ConditionalCacheFilter.class.getName() + ".retryKey";
+
+  private static final Map<String, CachedResponse> RESPONSES =
+      Collections.synchronizedMap(new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+          return size() > MAX_ENTRIES;
+        }
+      });
+
+  private final DeploymentMetrics metrics;
+
+  public ConditionalCacheFilter(DeploymentMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void filter(ClientRequestContext request) throws IOException {
+    if (!HttpMethod.GET.equals(request.getMethod())) {
+      return;
+    }
+    String retryKey = (String) request.getProperty(RETRY_KEY_PROPERTY);
+    if (retryKey != null) {
+      // Sent again without validators, the response is kept under the key of the original request
+      request.setProperty(KEY_PROPERTY, retryKey);
+      return;
+    }
+    String key = getKey(request);
+    request.setProperty(KEY_PROPERTY, key);
+    CachedResponse cached = RESPONSES.get(key);
+    if (cached != null) {
+      if (cached.etag != null) {
+        request.getHeaders().putSingle(IF_NONE_MATCH, cached.etag);
+      }
+      if (cached.lastModified != null) {
+        request.getHeaders().putSingle(IF_MODIFIED_SINCE, cached.lastModified);
+      }
+    }
+  }
+
+  @Override
+  public void filter(ClientRequestContext request, ClientResponseContext response) throws IOException {
+    String key = (String) request.getProperty(KEY_PROPERTY);
+    if (key == null) {
+      return;
+    }
+    if (response.getStatus() == 304) {
+      CachedResponse cached = RESPONSES.get(key);
+      if (cached != null) {
+        response.setStatus(200);
+        response.getHeaders().putSingle(CONTENT_TYPE, cached.contentType);
+        response.getHeaders().putSingle(CONTENT_LENGTH, Integer.toString(cached.body.length));
+        response.setEntityStream(new ByteArrayInputStream(cached.body));
+        metrics.increment("http.cache.revalidated.count");
+        metrics.add("http.cache.saved.bytes", cached.body.length);
+      } else if (request.getProperty(RETRY_KEY_PROPERTY) == null) {
+        replace(response, retry(request, key));
+        metrics.increment("http.cache.retried.count");
+      }
+      return;
+    }
+    if (response.getStatus() != 200) {
+      return;
+    }
+    String etag = response.getHeaderString(ETAG);
+    String lastModified = response.getHeaderString(LAST_MODIFIED);
+    if ((etag == null && lastModified == null) || !response.hasEntity() || response.getLength() > MAX_BODY_BYTES) {
+      RESPONSES.remove(key);
+      return;
+    }
+    byte[] body = read(response.getEntityStream());
+    response.setEntityStream(new ByteArrayInputStream(body));
+    if (body.length <= MAX_BODY_BYTES) {
+      RESPONSES.put(key, new CachedResponse(etag, lastModified, response.getHeaderString(CONTENT_TYPE), body));
+    }
+  }
+
+  /**
+   * Discards all the kept responses.
+   */
+  public static void clear() {
+    RESPONSES.clear();
+  }
+
+  /**
+   * Sends the request again without validators, through the same client so the response is decompressed and kept.
+   */
+  private static Response retry(ClientRequestContext request, String key) {
+    Invocation.Builder builder = request.getClient().target(request.getUri().toString()).request();
+    for (Map.Entry<String, List<String>> header : request.getStringHeaders().entrySet()) {
+      if (!IF_NONE_MATCH.equalsIgnoreCase(header.getKey()) && !IF_MODIFIED_SINCE.equalsIgnoreCase(header.getKey())) {
+        for (String value : header.getValue()) {
+          builder.header(header.getKey(), value);
+        }
+      }
+    }
+    return builder.property(RETRY_KEY_PROPERTY, key).get();
+  }
+
+  private static void replace(ClientResponseContext response, Response retried) {
+    response.setStatus(retried.getStatus());
+    response.getHeaders().clear();
+    response.getHeaders().putAll(retried.getStringHeaders());
+    if (retried.hasEntity()) {
+      response.setEntityStream(new ByteArrayInputStream(retried.readEntity(byte[].class)));
+    } else {
+      retried.close();
+    }
+  }
+
+  private static String getKey(ClientRequestContext request) {
+    // Headers carry the credentials, organization and environment, so a body is only reused within the same scope
+    StringBuilder key = new StringBuilder(request.getUri().toString());
+    for (Map.Entry<String, List<String>> header : new TreeMap<>(request.getStringHeaders()).entrySet()) {
+      key.append('|').append(header.getKey()).append('=').append(header.getValue());
+    }
+    return key.toString();
+  }
+
+  private static byte[] read(InputStream input) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    try {
+      for (int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+        output.write(buffer, 0, read);
+      }
+    } finally {
+      input.close();
+    }
+    return output.toByteArray();
+  }
+
+  private static class CachedResponse {
+
+    private final String etag;
+    private final String lastModified;
+    private final String contentType;
+    private final byte[] body;
+
+    CachedResponse(String etag, String lastModified, String contentType, byte[] body) {
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.contentType = contentType;
+      this.body = body;
+    }
+  }
+}
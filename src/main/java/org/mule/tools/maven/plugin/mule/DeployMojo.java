@@ -9,11 +9,12 @@ package org.mule.tools.maven.plugin.mule;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
@@ -47,7 +48,6 @@ import org.mule.util.FilenameUtils;
 public class DeployMojo extends AbstractMuleMojo {
 
   private static final long DEFAULT_POLLING_DELAY = 1000;
-  private static final Integer MAX_CLUSTER_SIZE = 8;
 
   @Component
   protected ArchiverManager archiverManager;
@@ -97,7 +97,7 @@ public class DeployMojo extends AbstractMuleMojo {
   protected String[] arguments;
 
   /**
-   * List of external libs (Jar files) to be added to MULE_HOME/user/lib directory.
+   * List of external libs (Jar files) to be added to MULE_HOME/lib/user directory.
    *
    * @since 1.0
    */
@@ -136,6 +136,160 @@ public class DeployMojo extends AbstractMuleMojo {
   @Parameter(required = false)
   protected Map<String, String> properties;
 
+  /**
+   * Performance profile to apply to the wrapper configuration of Mule Runtime Standalone: <code>fastStartup</code>,
+   * <code>throughput</code> or <code>lowMemory</code>. It sets heap size, garbage collector, JIT compilation and class data
+   * sharing options. The heap is sized from the host memory and the number of Mule instances started on this host.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "mule.performanceProfile", required = false)
+  protected PerformanceProfile performanceProfile;
+
+  /**
+   * Class data sharing archive to be mapped by the Mule Runtime Standalone JVM. Requires Mule Runtime to run on JDK 10 or
+   * newer.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "mule.cdsArchive", required = false)
+  protected File cdsArchive;
+
+  /**
+   * When set to true, and no <code>cdsArchive</code> is configured, the first deployment is a training run that dumps a
+   * class data sharing archive of the classes loaded by Mule Runtime and the application. Following runs map the archive
+   * to start faster. Archives are cached next to the Mule distribution. Requires Mule Runtime to run on JDK 13 or newer, as
+   * set by <code>wrapper.java.command</code> in its <code>conf/wrapper.conf</code>, or else <code>JAVA_HOME</code>.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "mule.cds.generate", defaultValue = "false")
+  protected boolean generateCdsArchive;
+
+  /**
+   * When set to true, Mule Runtime Standalone applications are installed as exploded directories instead of zip files.
+   * Application directories are hard linked, zip files are extracted concurrently, and the result is moved into
+   * <code>MULE_HOME/apps</code> in one rename. Set <code>application</code> to the exploded application directory of the
+   * build output to avoid packaging it.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "mule.exploded", defaultValue = "false")
+  protected boolean exploded;
+
+  /**
+   * When set to true, and the exploded application is already deployed to a running Mule Runtime Standalone, only the files
+   * that changed since the deployment are written and the application is redeployed. Nothing is done when no file changed.
+   * Implies <code>exploded</code>.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "mule.incremental", defaultValue = "false")
+  protected boolean incremental;
+
+  /**
+   * When set to true and Mule Runtime Standalone is not running, the application is copied before starting Mule Runtime, so
+   * it is deployed while Mule Runtime boots instead of after it finishes. The domain and libraries are always copied before
+   * starting.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "mule.coldStart", defaultValue = "false")
+  protected boolean coldStart;
+
+  /**
+   * When set to true, each Mule Runtime Standalone instance gets a range of free ports reserved for it on this host, so
+   * several builds can run instances at the same time. The ports are passed to Mule as <code>http.port</code>,
+   * <code>https.port</code> and <code>mule.ports.base</code> system properties, cluster nodes find each other on them, and
+   * they are released on undeploy. The HTTP port is also set as the <code>mule.http.port</code> project property.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "mule.ports.allocate", defaultValue = "false")
+  protected boolean allocatePorts;
+
+  /**
+   * First port of the range ports are allocated from.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "mule.ports.rangeStart", defaultValue = "20000")
+  protected int portRangeStart;
+
+  /**
+   * Last port of the range ports are allocated from.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "mule.ports.rangeEnd", defaultValue = "29999")
+  protected int portRangeEnd;
+
+  /**
+   * Number of cluster nodes started at the same time.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "mule.cluster.startupBatchSize", defaultValue = "4")
+  protected int startupBatchSize;
+
+  /**
+   * Milliseconds to wait between starting batches of cluster nodes, so they don't all compete for the host at once.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "mule.cluster.startupStagger", defaultValue = "1000")
+  protected long startupStagger;
+
+  /**
+   * Waits until the application is started on all its CloudHub workers, streaming the deployment logs meanwhile, or on all
+   * the Mule Agents, instead of finishing as soon as the deployment is requested. A failed deployment fails the build.
+   * Agents get <code>deploymentTimeout</code> milliseconds in total.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "mule.waitForDeployment", defaultValue = "false")
+  protected boolean waitForDeployment;
+
+  /**
+   * Undeploys the application from each Mule Agent and waits for it to be gone before uploading the new version, when
+   * <code>waitForDeployment</code> is set. Only needed for agents that redeploy an application faster than they're polled,
+   * so the new deployment can't be told apart from the previous one. Warning: the application is unavailable on every agent
+   * from its undeployment until the new version is started.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "agent.undeployBeforeRedeploy", defaultValue = "false")
+  protected boolean undeployBeforeRedeploy;
+
+  /**
+   * Milliseconds to wait for the application to start on CloudHub when <code>waitForDeployment</code> is set.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "cloudhub.deploymentTimeout", defaultValue = "600000")
+  protected long cloudhubDeploymentTimeout;
+
+  /**
+   * Ant patterns of the files to extract from the Mule Runtime distribution, relative to the distribution directory, for
+   * example <code>bin/**</code>. All files are extracted by default.
+   *
+   * @since 2.3
+   */
+  @Parameter
+  protected List<String> distributionIncludes = new ArrayList<>();
+
+  /**
+   * Ant patterns of the files to skip when extracting the Mule Runtime distribution, relative to the distribution
+   * directory, for example <code>docs/**</code> or <code>examples/**</code>.
+   *
+   * @since 2.3
+   */
+  @Parameter
+  protected List<String> distributionExcludes = new ArrayList<>();
+
+  private DeploymentHook deploymentHook;
+  private final Map<File, MuleJvm> muleJvms = new HashMap<>();
+
 
   public void doExecute() throws MojoExecutionException, MojoFailureException {
     initializeApplication();
@@ -156,6 +310,9 @@ public class DeployMojo extends AbstractMuleMojo {
       case agent:
         agent();
         break;
+      case embedded:
+        embedded();
+        break;
       default:
         throw new MojoFailureException("Unsupported deployment type: " + deploymentType);
     }
@@ -165,17 +322,23 @@ public class DeployMojo extends AbstractMuleMojo {
     CloudhubDeployer deployer = new CloudhubDeployer(uri, username, password, environment, applicationName, application,
                                                      region, muleVersion, workers, workerType, getLog(), properties,
                                                      businessGroup);
+    deployer.setSessionCache(getSessionCache()).setTransport(transport).setMetrics(metrics)
+        .setWaitForDeployment(waitForDeployment, cloudhubDeploymentTimeout);
     deployWithDeployer(deployer);
   }
 
   private void arm() throws MojoFailureException, MojoExecutionException {
     ArmDeployer deployer = new ArmDeployer(uri, username, password, environment, targetType, target, application, applicationName,
-                                           getLog(), businessGroup, armInsecure);
+                                           getLog(), businessGroup, armInsecure)
+        .setSessionCache(getSessionCache()).setTransport(transport).setTlsConfiguration(createArmTlsConfiguration())
+        .setMetrics(metrics);
     deployWithDeployer(deployer);
   }
 
   private void agent() throws MojoFailureException, MojoExecutionException {
-    AgentDeployer deployer = new AgentDeployer(getLog(), applicationName, application, uri);
+    AgentDeployer deployer = new AgentDeployer(getLog(), applicationName, application, getAgentUris()).setTransport(transport)
+        .setMetrics(metrics).setWaitForDeployment(waitForDeployment, deploymentTimeout)
+        .setUndeployBeforeRedeploy(undeployBeforeRedeploy);
     deployWithDeployer(deployer);
   }
 
@@ -184,15 +347,18 @@ public class DeployMojo extends AbstractMuleMojo {
       executeGroovyScript();
     }
     try {
-      deployer.deploy();
+      deployer.deploy(getDeploymentHook());
     } catch (DeploymentException e) {
       getLog().error("Failed to deploy " + applicationName + ": " + e.getMessage(), e);
       throw new MojoFailureException("Failed to deploy [" + application + "]");
+    } finally {
+      deployer.close();
     }
   }
 
   private void cluster() throws MojoExecutionException, MojoFailureException {
     validateSize();
+    getDeploymentHook().execute(HookPoint.preInstall);
     File[] muleHomes = new File[size];
     List<MuleProcessController> controllers = new LinkedList();
     for (int i = 0; i < size; i++) {
@@ -208,37 +374,277 @@ public class DeployMojo extends AbstractMuleMojo {
     if (null != script) {
       executeGroovyScript();
     }
-    new ClusterDeployer(muleHomes, controllers, getLog(), application, deploymentTimeout, arguments, DEFAULT_POLLING_DELAY)
-        .addLibraries(libs).execute();
+    List<PortAllocation> ports = allocatePorts(muleHomes);
+    ClusterDeployer deployer =
+        new ClusterDeployer(muleHomes, controllers, getLog(), application, deploymentTimeout, arguments, DEFAULT_POLLING_DELAY)
+            .setMetrics(metrics).setPortAllocations(ports).setStartup(startupBatchSize, startupStagger)
+            .addLibraries(libs);
+    List<ClassDataSharingArchive> archives = getClassDataSharingArchives(muleHomes, controllers);
+    if (isTrainingRequired(archives, muleHomes, controllers)) {
+      configureWrappers(muleHomes, archives, ports, true);
+      deployer.execute();
+      completeTraining(archives, controllers);
+    }
+    configureWrappers(muleHomes, archives, ports, false);
+    deployer.setHook(getDeploymentHook()).execute();
+    reportClassDataSharing(archives);
   }
 
   private void validateSize() throws MojoFailureException {
-    if (size > MAX_CLUSTER_SIZE) {
-      throw new MojoFailureException("Cannot create cluster with more than 8 nodes");
+    if (size < 1) {
+      throw new MojoFailureException("Cluster size must be at least 1");
+    }
+    NodeBudget budget = new NodeBudget(HostResources.detect(), size);
+    int minimumHeap = performanceProfile != null ? performanceProfile.getMinimumHeap() : NodeBudget.MINIMUM_HEAP;
+    String problem = budget.checkMemory(minimumHeap);
+    if (problem != null) {
+      throw new MojoFailureException("Cannot create cluster with " + size + " nodes: " + problem);
     }
+    if (budget.isOversubscribed()) {
+      getLog().warn("Cluster has more nodes than the host has cores, nodes will compete for CPU");
+    }
+    getLog().info("Cluster resources: " + budget);
   }
 
-  public void standalone() throws MojoExecutionException, MojoFailureException {
+
+  /**
+   * @return The deployer used, so the application can be deployed again to the same Mule Runtime.
+   */
+  public Deployer standalone() throws MojoExecutionException, MojoFailureException {
     File muleHome = installMule(new File(mavenProject.getBuild().getDirectory()));
     MuleProcessController mule = new MuleProcessController(muleHome.getAbsolutePath(), timeout);
 
-    renameApplicationToApplicationName();
+    if (!exploded && !incremental) {
+      renameApplicationToApplicationName();
+    }
 
-    Deployer deployer = new Deployer(mule, getLog(), application, deploymentTimeout, arguments, DEFAULT_POLLING_DELAY)
-        .addLibraries(libs);
+    Deployer deployer =
+        new Deployer(muleHome, mule, getLog(), application, deploymentTimeout, arguments, DEFAULT_POLLING_DELAY)
+            .setMetrics(metrics).setColdStart(coldStart).setTimingsDirectory(getStartupTimingsDirectory())
+            .addLibraries(libs);
+    if (exploded || incremental) {
+      deployer.setExploded(getExplodedApplicationName()).setIncremental(incremental);
+    }
     addDomain(deployer);
     addDependencies(deployer);
     if (null != script) {
       executeGroovyScript();
     }
-    deployer.execute();
+    File[] muleHomes = new File[] {muleHome};
+    List<MuleProcessController> controllers = Collections.singletonList(mule);
+    List<PortAllocation> ports = allocatePorts(muleHomes);
+    List<ClassDataSharingArchive> archives = getClassDataSharingArchives(muleHomes, controllers);
+    if (isTrainingRequired(archives, muleHomes, controllers)) {
+      configureWrappers(muleHomes, archives, ports, true);
+      deployer.execute();
+      completeTraining(archives, controllers);
+    }
+    configureWrappers(muleHomes, archives, ports, false);
+    deployer.setHook(getDeploymentHook()).execute();
+    reportClassDataSharing(archives);
+    return deployer;
+  }
+
+  /**
+   * Deploys to Mule Runtime running inside the Maven JVM, started from the same distribution as a standalone deployment.
+   */
+  private void embedded() throws MojoExecutionException, MojoFailureException {
+    File muleHome = installMule(new File(mavenProject.getBuild().getDirectory()));
+    renameApplicationToApplicationName();
+    EmbeddedDeployer deployer =
+        new EmbeddedDeployer(muleHome, getLog(), application, deploymentTimeout, arguments, DEFAULT_POLLING_DELAY)
+            .setMetrics(metrics).setTimingsDirectory(getStartupTimingsDirectory()).addLibraries(libs)
+            .addLibraries(getDependencies());
+    if (domain != null && domain.exists()) {
+      deployer.addDomain(domain);
+    }
+    if (null != script) {
+      executeGroovyScript();
+    }
+    deployer.setHook(getDeploymentHook()).execute();
+  }
+
+  private List<ClassDataSharingArchive> getClassDataSharingArchives(File[] muleHomes, List<MuleProcessController> controllers) {
+    List<ClassDataSharingArchive> archives = new ArrayList<>();
+    if (!generateCdsArchive || cdsArchive != null) {
+      return archives;
+    }
+    for (File home : muleHomes) {
+      MuleJvm jvm = getMuleJvm(home);
+      if (!ClassDataSharingArchive.isSupported(jvm)) {
+        getLog().warn("Generating class data sharing archives requires JDK " + ClassDataSharingArchive.MINIMUM_JAVA_VERSION
+            + " or newer, but Mule Runtime runs on " + (jvm.getCommand() == null ? "an unknown JDK" : jvm) + ", skipping.");
+        return archives;
+      }
+    }
+    String version = muleDistribution != null ? muleDistribution.getVersion() : muleVersion;
+    for (File home : muleHomes) {
+      archives.add(new ClassDataSharingArchive(new File(cacheDirectory, "cds"), version, getMuleJvm(home), applicationName,
+                                               home));
+    }
+    return archives;
+  }
+
+  private boolean isTrainingRequired(List<ClassDataSharingArchive> archives, File[] muleHomes,
+                                     List<MuleProcessController> controllers) {
+    boolean missing = false;
+    for (ClassDataSharingArchive archive : archives) {
+      missing |= !archive.exists();
+    }
+    if (missing) {
+      for (int i = 0; i < muleHomes.length; i++) {
+        if (new MuleInstanceProbe(muleHomes[i], controllers.get(i)).isRunning()) {
+          getLog().info("Mule Runtime is already running, skipping class data sharing training.");
+          return false;
+        }
+      }
+    }
+    return missing;
+  }
+
+  private void completeTraining(List<ClassDataSharingArchive> archives, List<MuleProcessController> controllers) {
+    long baseline = metrics.get("mule.ready.millis");
+    getLog().info("Stopping Mule Runtime to dump class data sharing archives");
+    long start = System.nanoTime();
+    for (MuleProcessController controller : controllers) {
+      controller.stop();
+    }
+    metrics.elapsed("cds.dump.millis", start);
+    for (ClassDataSharingArchive archive : archives) {
+      if (!archive.exists()) {
+        getLog().warn("Mule Runtime JVM didn't dump class data sharing archive " + archive);
+        continue;
+      }
+      metrics.record("cds.archive.bytes", archive.getFile().length());
+      try {
+        archive.setBaseline(baseline);
+      } catch (IOException e) {
+        getLog().warn("Couldn't store startup baseline for " + archive + ": " + e.getMessage());
+      }
+    }
+  }
+
+  private void reportClassDataSharing(List<ClassDataSharingArchive> archives) {
+    if (archives.isEmpty() || !archives.get(0).exists() || !metrics.contains("mule.ready.millis")) {
+      return;
+    }
+    Long baseline = archives.get(0).getBaseline();
+    if (baseline != null) {
+      long saved = baseline - metrics.get("mule.ready.millis");
+      metrics.record("cds.baseline.ready.millis", baseline);
+      metrics.record("cds.ready.saved.millis", saved);
+      getLog().info("Class data sharing saved " + saved + " ms of startup and deployment");
+    }
+  }
+
+  private List<PortAllocation> allocatePorts(File[] muleHomes) throws MojoFailureException {
+    List<PortAllocation> ports = new ArrayList<>();
+    if (!allocatePorts) {
+      return ports;
+    }
+    PortAllocator allocator = new PortAllocator(getLog(), portRangeStart, portRangeEnd);
+    for (int i = 0; i < muleHomes.length; i++) {
+      try {
+        PortAllocation allocation = allocator.allocate(muleHomes[i]);
+        getLog().info("Using ports " + allocation + " for " + muleHomes[i]);
+        ports.add(allocation);
+        if (muleHomes.length > 1) {
+          mavenProject.getProperties().setProperty("mule." + i + ".http.port", String.valueOf(allocation.getHttpPort()));
+        }
+      } catch (IOException e) {
+        throw new MojoFailureException("Couldn't allocate ports for " + muleHomes[i] + ": " + e.getMessage());
+      }
+    }
+    mavenProject.getProperties().setProperty("mule.http.port", String.valueOf(ports.get(0).getHttpPort()));
+    mavenProject.getProperties().setProperty(PortAllocation.BASE_PORT_PROPERTY, String.valueOf(ports.get(0).getBasePort()));
+    return ports;
+  }
+
+  private void configureWrappers(File[] muleHomes, List<ClassDataSharingArchive> archives, List<PortAllocation> ports,
+                                 boolean training)
+      throws MojoFailureException {
+    for (int i = 0; i < muleHomes.length; i++) {
+      WrapperConfiguration configuration = createWrapperConfiguration(muleHomes[i], muleHomes.length);
+      if (!ports.isEmpty()) {
+        ports.get(i).configure(configuration);
+      }
+      if (!archives.isEmpty()) {
+        ClassDataSharingArchive archive = archives.get(i);
+        if (training) {
+          getLog().info("Training run will dump class data sharing archive " + archive);
+          configuration.addJvmOption(archive.getTrainingOption());
+        } else if (archive.exists()) {
+          getLog().info("Using class data sharing archive " + archive);
+          configuration.setSharedArchive(archive.getFile());
+        }
+      }
+      // Also run with an empty configuration, so the settings of a previous build are removed
+      new WrapperConfigurator(getLog()).configure(muleHomes[i], configuration);
+    }
+  }
+
+  protected WrapperConfiguration createWrapperConfiguration(File muleHome, int nodesOnHost) {
+    HostResources host = HostResources.detect();
+    Integer javaVersion = getMuleJvm(muleHome).getJavaVersion();
+    if (javaVersion != null) {
+      host = host.withJavaVersion(javaVersion);
+    }
+    WrapperConfiguration configuration = new WrapperConfiguration();
+    if (performanceProfile != null) {
+      configuration = performanceProfile.toWrapperConfiguration(host, nodesOnHost);
+      getLog().info(String.format("Using %s performance profile with %dMB heap for %d node(s) on %s", performanceProfile,
+                                  configuration.getMaximumMemory(), nodesOnHost, host));
+    }
+    if (cdsArchive != null) {
+      if (javaVersion == null || javaVersion < 10) {
+        getLog().warn("Class data sharing archives need JDK 10 or newer, Mule Runtime runs on "
+            + (javaVersion == null ? "an unknown JDK" : getMuleJvm(muleHome)) + ", ignoring " + cdsArchive);
+      } else {
+        configuration.setSharedArchive(cdsArchive);
+      }
+    }
+    return new NodeBudget(host, nodesOnHost).configure(configuration);
+  }
+
+  /**
+   * @return Where startup times are kept so they survive MULE_HOME being extracted again.
+   */
+  private File getStartupTimingsDirectory() {
+    return new File(cacheDirectory, "startup");
+  }
+
+  /**
+   * @return The JVM configured for the Mule Runtime instance, which the JVM options must be supported by.
+   */
+  private MuleJvm getMuleJvm(File muleHome) {
+    MuleJvm jvm = muleJvms.get(muleHome);
+    if (jvm == null) {
+      jvm = MuleJvm.detect(muleHome);
+      getLog().debug("Mule Runtime " + muleHome + " runs on " + jvm);
+      muleJvms.put(muleHome, jvm);
+    }
+    return jvm;
+  }
+
+  /**
+   * @return The hook of this deployment, shared by the mojo and the deployers so every hook point runs once.
+   */
+  protected DeploymentHook getDeploymentHook() {
+    if (deploymentHook == null) {
+      deploymentHook = createDeploymentHook();
+    }
+    return deploymentHook;
+  }
+
+  protected String getExplodedApplicationName() {
+    return applicationName.endsWith(".zip") ? FilenameUtils.getBaseName(applicationName) : applicationName;
   }
 
   private void renameApplicationToApplicationName() throws MojoFailureException {
     if (!FilenameUtils.getBaseName(application.getName()).equals(applicationName)) {
       try {
         File destApplication = new File(application.getParentFile(), applicationName + ".zip");
-        FileUtils.copyFile(application, destApplication);
+        new FileStager(metrics).stageAtomically(application.toPath(), destApplication.toPath());
         application = destApplication;
       } catch (IOException e) {
         throw new MojoFailureException("Couldn't rename [" + application + "] to [" + applicationName + "]");
@@ -246,8 +652,10 @@ public class DeployMojo extends AbstractMuleMojo {
     }
   }
 
+
   private File installMule(File buildDirectory) throws MojoExecutionException, MojoFailureException {
     if (muleHome == null) {
+      getDeploymentHook().execute(HookPoint.preInstall);
       muleHome = doInstallMule(buildDirectory);
     }
     mavenProject.getProperties().setProperty("mule.home", muleHome.getAbsolutePath());
@@ -282,6 +690,15 @@ public class DeployMojo extends AbstractMuleMojo {
 
   private void extract(File src, File dest, String type)
       throws MojoExecutionException, MojoFailureException {
+    if (DistributionExtractor.supports(type)) {
+      try {
+        new DistributionExtractor(getLog(), metrics).setIncludes(distributionIncludes).setExcludes(distributionExcludes)
+            .extract(src, dest);
+        return;
+      } catch (IOException e) {
+        throw new MojoExecutionException("Couldn't extract file " + src + " to " + dest, e);
+      }
+    }
     try {
       UnArchiver unArchiver = getArchiver(type);
       unArchiver.setSourceFile(src);
@@ -7,13 +7,14 @@
 package org.mule.tools.maven.plugin.mule;
 
 import org.mule.tck.probe.PollingProber;
+import org.mule.tck.probe.Probe;
 import org.mule.tck.probe.Prober;
 
-import org.mule.test.infrastructure.process.AppDeploymentProbe;
 import org.mule.test.infrastructure.process.MuleControllerException;
 import org.mule.test.infrastructure.process.MuleProcessController;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 import org.apache.maven.plugin.MojoExecutionException;
@@ -22,20 +23,32 @@ import org.apache.maven.plugin.logging.Log;
 
 public class Deployer {
 
+  private File muleHome;
   private MuleProcessController mule;
   private Log log;
   private File application;
   private Prober prober;
+  private MuleInstanceProbe probe;
   private long timeout;
   private long pollingDelay;
   private String[] arguments;
+  private DeploymentMetrics metrics = new DeploymentMetrics();
+  private DeploymentHook hook;
+  private String applicationName;
+  private boolean exploded;
+  private boolean incremental;
+  private long previousAnchor = -1;
+  private boolean coldStart;
+  private File timingsDirectory;
 
-  public Deployer(MuleProcessController mule,
+  public Deployer(File muleHome,
+                  MuleProcessController mule,
                   Log log,
                   File application,
                   long timeout,
                   String[] arguments,
                   long pollingDelay) {
+    this.muleHome = muleHome;
     this.mule = mule;
     this.log = log;
     this.application = application;
@@ -43,19 +56,42 @@ public class Deployer {
     this.pollingDelay = pollingDelay;
     this.arguments = arguments;
     this.prober = new PollingProber(timeout, pollingDelay);
+    this.probe = new MuleInstanceProbe(muleHome, mule);
     log.debug(toString());
   }
 
   public String toString() {
-    return String.format("Deployer with [Controller=%s, log=%s, application=%s, timeout=%d, pollingDelay=%d ]",
-                         mule, log, application, timeout, pollingDelay);
+    return String.format("Deployer with [muleHome=%s, Controller=%s, log=%s, application=%s, timeout=%d, pollingDelay=%d ]",
+                         muleHome, mule, log, application, timeout, pollingDelay);
   }
 
   public void execute() throws MojoFailureException, MojoExecutionException {
     try {
-      startMuleIfStopped();
-      deployApplications();
-      waitForDeployments();
+      long start = System.nanoTime();
+      log.debug("Checking if Mule Runtime is running.");
+      boolean stopped = !probe.isRunning();
+      if (stopped && coldStart) {
+        // Mule Runtime deploys the application while it boots
+        executeHook(HookPoint.preDeploy);
+        deployApplications();
+        startMule();
+        executeHook(HookPoint.postStart);
+        waitForDeployments();
+      } else {
+        if (stopped) {
+          startMule();
+          executeHook(HookPoint.postStart);
+        }
+        long deployStart = System.nanoTime();
+        executeHook(HookPoint.preDeploy);
+        deployApplications();
+        waitForDeployments();
+        metrics.elapsed("deploy.ready.millis", deployStart);
+      }
+      executeHook(HookPoint.postDeploy);
+      if (stopped) {
+        compareStartup(metrics.elapsed("mule.ready.millis", start));
+      }
     } catch (MuleControllerException e) {
       throw new MojoFailureException("Error deploying application: [" + application + "]: " + e.getMessage());
     } catch (RuntimeException e) {
@@ -64,14 +100,36 @@ public class Deployer {
     }
   }
 
+  /**
+   * Stores the time Mule Runtime took to start and deploy the application in this mode, and reports the time saved by a cold
+   * start compared to the last start deploying after booting.
+   */
+  private void compareStartup(long readyMillis) {
+    try {
+      StartupTimings timings = new StartupTimings(getTimingsDirectory(), muleHome);
+      Long saved = timings.getSavedMillis(StartupTimings.SEQUENTIAL, readyMillis);
+      if (coldStart && saved != null) {
+        metrics.record("coldstart.baseline.ready.millis", timings.getReadyMillis(StartupTimings.SEQUENTIAL));
+        metrics.record("coldstart.ready.saved.millis", saved);
+        log.info("Cold start saved " + saved + " ms of startup and deployment");
+      }
+      timings.setReadyMillis(coldStart ? StartupTimings.COLD_START : StartupTimings.SEQUENTIAL, readyMillis);
+    } catch (IOException e) {
+      log.warn("Couldn't compare startup times: " + e.getMessage());
+    }
+  }
+
   private void waitForDeployments() throws MojoFailureException {
     if (!application.exists()) {
       throw new MojoFailureException("Application does not exists: " + application);
     }
     log.debug("Checking for application [" + application + "] to be deployed.");
-    String app = getApplicationName(application);
+    String app = getApplicationName();
     try {
-      prober.check(AppDeploymentProbe.isDeployed(mule, app));
+      if (previousAnchor >= 0) {
+        waitForRedeployment();
+      }
+      prober.check(probe.deployed(app));
     } catch (AssertionError e) {
       log.error("Couldn't deploy application [" + app + "] after [" + timeout
           + "] miliseconds. Check Mule Runtime log");
@@ -79,7 +137,10 @@ public class Deployer {
     }
   }
 
-  private String getApplicationName(File application) {
+  private String getApplicationName() {
+    if (applicationName != null) {
+      return applicationName;
+    }
     String name = application.getName();
     int extensionBeginning = name.lastIndexOf('.');
     return extensionBeginning == -1 ? name : name.substring(0, extensionBeginning);
@@ -87,37 +148,196 @@ public class Deployer {
 
   private void deployApplications() throws MojoFailureException {
     log.info("Deploying application [" + application + "]");
+    previousAnchor = -1;
+    if (exploded) {
+      if (!incremental || !deployIncremental()) {
+        deployExploded();
+      }
+      return;
+    }
     try {
-      mule.deploy(application.getAbsolutePath());
-    } catch (MuleControllerException e) {
-      log.error("Couldn't deploy application: " + application + ". Check Mule Runtime logs");
+      new FileStager(metrics).stageAtomically(application.toPath(), new File(muleHome, "apps/" + application.getName()).toPath());
+    } catch (IOException e) {
+      throw new MojoFailureException("Couldn't deploy application: " + application + ": " + e.getMessage());
     }
   }
 
-  private void startMuleIfStopped() {
-    log.debug("Checking if Mule Runtime is running.");
-    if (!mule.isRunning()) {
-      try {
-        log.info("Starting Mule Runtime");
-        if (arguments == null) {
-          mule.start();
-        } else {
-          mule.start(arguments);
+  /**
+   * Synchronizes the changed files of an already deployed exploded application and requests its redeployment.
+   *
+   * @return false if the application is not deployed and must be installed.
+   */
+  private boolean deployIncremental() throws MojoFailureException {
+    File appsDirectory = new File(muleHome, "apps");
+    File anchor = new File(appsDirectory, applicationName + "-anchor.txt");
+    File deployed = new File(appsDirectory, applicationName);
+    if (!anchor.exists() || !deployed.isDirectory() || !probe.isRunning()) {
+      log.debug("Application [" + applicationName + "] is not deployed, installing it.");
+      return false;
+    }
+    long anchorModified = anchor.lastModified();
+    try {
+      int changes = new IncrementalSynchronizer(log, metrics).synchronize(application, deployed, anchorModified);
+      if (changes == 0) {
+        log.info("Application [" + applicationName + "] is up to date.");
+        return true;
+      }
+      long timestamp = System.currentTimeMillis();
+      if (!ExplodedApplicationInstaller.touchRedeployTriggers(deployed, timestamp)) {
+        log.warn("Couldn't find configuration files of application [" + applicationName + "], reinstalling it.");
+        return false;
+      }
+      log.info(String.format("Synchronized %d changed file(s), redeploying application [%s]", changes, applicationName));
+      previousAnchor = anchorModified;
+      return true;
+    } catch (IOException e) {
+      throw new MojoFailureException("Couldn't synchronize application [" + application + "]: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Waits for Mule Runtime to rewrite the anchor file, which happens when the redeployment finishes. The anchor counts as
+   * rewritten when its modification time differs from the one it had before the redeployment was requested, or when it
+   * was removed and created again, so a stale anchor is never taken for the new deployment whatever the time resolution
+   * of the file system.
+   */
+  private void waitForRedeployment() {
+    final File anchor = new File(new File(muleHome, "apps"), applicationName + "-anchor.txt");
+    final long previous = previousAnchor;
+    prober.check(new Probe() {
+
+      private boolean removed;
+
+      @Override
+      public boolean isSatisfied() {
+        long modified = anchor.lastModified();
+        if (modified == 0) {
+          removed = true;
+          return false;
         }
-      } catch (MuleControllerException e) {
-        log.error("Couldn't start Mule Runtime. Check Mule Runtime logs.");
+        return removed || modified != previous;
+      }
+
+      @Override
+      public String describeFailure() {
+        return "Application [" + applicationName + "] was not redeployed";
+      }
+    });
+  }
+
+  private void deployExploded() throws MojoFailureException {
+    File appsDirectory = new File(muleHome, "apps");
+    File anchor = new File(appsDirectory, applicationName + "-anchor.txt");
+    final File deployed = new File(appsDirectory, applicationName);
+    if (anchor.exists() && probe.isRunning()) {
+      log.info("Undeploying previous version of application [" + applicationName + "]");
+      anchor.delete();
+      try {
+        prober.check(new Probe() {
+
+          @Override
+          public boolean isSatisfied() {
+            return !deployed.exists();
+          }
+
+          @Override
+          public String describeFailure() {
+            return "Application [" + applicationName + "] was not undeployed";
+          }
+        });
+      } catch (AssertionError e) {
+        throw new MojoFailureException("Couldn't undeploy previous version of application [" + applicationName + "]");
       }
     }
+    anchor.delete();
+    try {
+      new ExplodedApplicationInstaller(log, metrics).install(application, applicationName, muleHome);
+    } catch (IOException e) {
+      throw new MojoFailureException("Couldn't install exploded application [" + application + "]: " + e.getMessage());
+    }
   }
 
-  public Deployer addLibraries(List<File> libs) {
-    for (File file : libs) {
-      mule.addLibrary(file);
-      log.debug(String.format("Adding library %s...", file));
+  private void startMule() {
+    try {
+      log.info("Starting Mule Runtime");
+      long start = System.nanoTime();
+      if (arguments == null) {
+        mule.start();
+      } else {
+        mule.start(arguments);
+      }
+      metrics.elapsed("mule.start.millis", start);
+    } catch (MuleControllerException e) {
+      log.error("Couldn't start Mule Runtime. Check Mule Runtime logs.");
     }
+  }
+
+  public Deployer setMetrics(DeploymentMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  /**
+   * Called at each {@link HookPoint} after Mule Runtime Standalone is installed.
+   */
+  public Deployer setHook(DeploymentHook hook) {
+    this.hook = hook;
+    return this;
+  }
+
+  /**
+   * Sets where the startup times are kept, by default the directory MULE_HOME was extracted to.
+   */
+  public Deployer setTimingsDirectory(File timingsDirectory) {
+    this.timingsDirectory = timingsDirectory;
     return this;
   }
 
+  private File getTimingsDirectory() {
+    return timingsDirectory != null ? timingsDirectory : muleHome.getAbsoluteFile().getParentFile();
+  }
+
+  private void executeHook(HookPoint hookPoint) throws MojoExecutionException {
+    if (hook != null) {
+      hook.execute(hookPoint);
+    }
+  }
+
+  /**
+   * Installs the application as an exploded directory named <code>applicationName</code> in the apps directory, instead of
+   * its zip file.
+   */
+  public Deployer setExploded(String applicationName) {
+    this.exploded = true;
+    this.applicationName = applicationName;
+    return this;
+  }
+
+  /**
+   * When the exploded application is already deployed, only copies the files that changed and redeploys it, or does nothing
+   * when no file changed.
+   */
+  public Deployer setIncremental(boolean incremental) {
+    this.incremental = incremental;
+    return this;
+  }
+
+  /**
+   * When Mule Runtime is not running, copies the application before starting it, so it is deployed while Mule Runtime boots.
+   */
+  public Deployer setColdStart(boolean coldStart) {
+    this.coldStart = coldStart;
+    return this;
+  }
+
+  public Deployer addLibraries(List<File> libs) throws MojoFailureException {
+    try {
+      new LibraryProvisioner(new File(muleHome, ".mule/libs"), log, metrics).provision(libs, muleHome);
+    } catch (IOException e) {
+      throw new MojoFailureException("Couldn't add libraries to Mule Runtime: " + e.getMessage());
+    }
+    return this;
+  }
 
   public Deployer addDomain(File domain) throws MojoFailureException {
     try {
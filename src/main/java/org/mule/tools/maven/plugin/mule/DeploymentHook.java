@@ -0,0 +1,17 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Called by deployers at each {@link HookPoint} of a deployment.
+ */
+public interface DeploymentHook {
+
+  void execute(HookPoint hookPoint) throws MojoExecutionException;
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Timings and counters collected during a plugin execution. Names end with their unit: <code>.millis</code>,
+ * <code>.bytes</code>, <code>.count</code> or a rate such as <code>.mb.per.second</code>. It is safe to use from multiple
+ * threads.
+ */
+public class DeploymentMetrics {
+
+  private final ConcurrentMap<String, AtomicLong> values = new ConcurrentSkipListMap<>();
+
+  /**
+   * Sets the value of a metric.
+   */
+  public void record(String name, long value) {
+    counter(name).set(value);
+  }
+
+  /**
+   * Adds to the value of a metric.
+   *
+   * @return The new value.
+   */
+  public long add(String name, long delta) {
+    return counter(name).addAndGet(delta);
+  }
+
+  public long increment(String name) {
+    return add(name, 1);
+  }
+
+  /**
+   * Records the milliseconds elapsed since the given {@link System#nanoTime()}.
+   *
+   * @return The elapsed milliseconds.
+   */
+  public long elapsed(String name, long startNanos) {
+    long millis = NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    record(name, millis);
+    return millis;
+  }
+
+  public long get(String name) {
+    AtomicLong value = values.get(name);
+    return value == null ? 0 : value.get();
+  }
+
+  public boolean contains(String name) {
+    return values.containsKey(name);
+  }
+
+  public boolean isEmpty() {
+    return values.isEmpty();
+  }
+
+  public void report(Log log) {
+    log.info("Deployment metrics:");
+    for (Map.Entry<String, AtomicLong> entry : values.entrySet()) {
+      log.info("  " + entry.getKey() + ": " + entry.getValue().get());
+    }
+  }
+
+  public void store(File file) throws IOException {
+    Properties properties = new Properties();
+    for (Map.Entry<String, AtomicLong> entry : values.entrySet()) {
+      properties.setProperty(entry.getKey(), Long.toString(entry.getValue().get()));
+    }
+    file.getAbsoluteFile().getParentFile().mkdirs();
+    try (OutputStream stream = new FileOutputStream(file)) {
+      properties.store(stream, "mule-maven-plugin deployment metrics");
+    }
+  }
+
+  private AtomicLong counter(String name) {
+    AtomicLong counter = values.get(name);
+    if (counter == null) {
+      AtomicLong created = new AtomicLong();
+      counter = values.putIfAbsent(name, created);
+      if (counter == null) {
+        counter = created;
+      }
+    }
+    return counter;
+  }
+}
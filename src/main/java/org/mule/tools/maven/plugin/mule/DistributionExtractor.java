@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.archiver.tar.TarEntry;
+import org.codehaus.plexus.archiver.tar.TarInputStream;
+import org.codehaus.plexus.util.SelectorUtils;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Extracts a Mule Runtime distribution packaged as a <code>tar.gz</code> file. The archive is decompressed and parsed in a
+ * single pass by the calling thread while a pool of threads writes the files, with a bound on the bytes waiting to be
+ * written. File modes are preserved, so the scripts in <code>bin</code> stay executable.
+ * <p>
+ * Include and exclude patterns use Ant syntax and are matched against the path of each entry inside the distribution
+ * directory, for example <code>docs/**</code>.
+ */
+public class DistributionExtractor {
+
+  private static final int BUFFER_SIZE = 256 * 1024;
+  private static final int MAX_PENDING_KB = 64 * 1024;
+  private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+  private final Log log;
+  private final DeploymentMetrics metrics;
+  private final List<String> includes = new ArrayList<>();
+  private final List<String> excludes = new ArrayList<>();
+  private int threads = ParallelExecutor.defaultThreads();
+
+  public DistributionExtractor(Log log, DeploymentMetrics metrics) {
+    this.log = log;
+    this.metrics = metrics;
+  }
+
+  public DistributionExtractor setIncludes(List<String> includes) {
+    this.includes.clear();
+    if (includes != null) {
+      this.includes.addAll(includes);
+    }
+    return this;
+  }
+
+  public DistributionExtractor setExcludes(List<String> excludes) {
+    this.excludes.clear();
+    if (excludes != null) {
+      this.excludes.addAll(excludes);
+    }
+    return this;
+  }
+
+  public DistributionExtractor setThreads(int threads) {
+    this.threads = Math.max(1, threads);
+    return this;
+  }
+
+  /**
+   * @return Whether this extractor can handle archives of the given type.
+   */
+  public static boolean supports(String type) {
+    return "tar.gz".equals(type) || "tgz".equals(type);
+  }
+
+  /**
+   * Extracts the archive into the destination directory, overwriting existing files.
+   */
+  public void extract(File archive, File destination) throws IOException {
+    long start = System.nanoTime();
+    Path root = destination.getCanonicalFile().toPath();
+    ExecutorService executor = ParallelExecutor.newExecutor(threads);
+    Semaphore pending = new Semaphore(MAX_PENDING_KB);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<TarEntry> links = new ArrayList<>();
+    long bytes = 0;
+    long skipped = 0;
+    try (InputStream compressed = new BufferedInputStream(new FileInputStream(archive), BUFFER_SIZE);
+        TarInputStream input = new TarInputStream(new GZIPInputStream(compressed, BUFFER_SIZE))) {
+      for (TarEntry entry = input.getNextEntry(); entry != null; entry = input.getNextEntry()) {
+        if (failure.get() != null) {
+          break;
+        }
+        if (!isSelected(entry.getName())) {
+          skipped++;
+          continue;
+        }
+        File file = resolve(root, entry.getName());
+        if (entry.isDirectory()) {
+          mkdirs(file);
+        } else if (!StringUtils.isEmpty(entry.getLinkName())) {
+          links.add(entry);
+        } else {
+          mkdirs(file.getParentFile());
+          byte[] content = IOUtils.toByteArray(input, entry.getSize());
+          int permits = Math.max(1, Math.min(MAX_PENDING_KB, content.length / 1024));
+          pending.acquire(permits);
+          executor.execute(new WriteTask(file, content, entry, pending, permits, failure));
+          bytes += content.length;
+        }
+      }
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while extracting " + archive, e);
+    } finally {
+      executor.shutdownNow();
+    }
+    Throwable cause = failure.get();
+    if (cause instanceof IOException) {
+      throw (IOException) cause;
+    }
+    if (cause != null) {
+      throw new IOException("Couldn't write files of " + archive, cause);
+    }
+    for (TarEntry link : links) {
+      createLink(root, link);
+    }
+    long millis = metrics.elapsed("distribution.extract.millis", start);
+    metrics.record("distribution.extract.bytes", bytes);
+    metrics.record("distribution.extract.skipped.count", skipped);
+    double megabytes = bytes / (1024.0 * 1024.0);
+    double throughput = megabytes * 1000 / Math.max(1, millis);
+    metrics.record("distribution.extract.mb.per.second", Math.round(throughput));
+    log.info(String.format("Extracted %.1f MB from %s in %d ms (%.1f MB/s)", megabytes, archive.getName(), millis,
+                           throughput));
+  }
+
+  private boolean isSelected(String name) {
+    String path = stripRoot(name);
+    if (path.isEmpty()) {
+      return true;
+    }
+    if (!includes.isEmpty() && !matches(includes, path) && !isParentOfInclude(path)) {
+      return false;
+    }
+    return !matches(excludes, path);
+  }
+
+  private boolean isParentOfInclude(String path) {
+    // Directories leading to included files are always created
+    for (String include : includes) {
+      if (SelectorUtils.matchPatternStart(include, path)) {
+        return path.endsWith("/");
+      }
+    }
+    return false;
+  }
+
+  private static boolean matches(List<String> patterns, String path) {
+    String file = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    for (String pattern : patterns) {
+      if (SelectorUtils.matchPath(pattern, file)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String stripRoot(String name) {
+    int slash = name.indexOf('/');
+    return slash == -1 ? "" : name.substring(slash + 1);
+  }
+
+  private static File resolve(Path root, String name) throws IOException {
+    Path path = root.resolve(name).normalize();
+    if (!path.startsWith(root)) {
+      throw new IOException("Entry " + name + " is outside of the destination directory");
+    }
+    return path.toFile();
+  }
+
+  private static void mkdirs(File directory) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+      throw new IOException("Couldn't create directory " + directory);
+    }
+  }
+
+  /**
+   * Creates a link once all the files are written. Tar entries don't expose their link type, so a target found relative to
+   * the archive root rather than to the link is taken as a hard link.
+   */
+  private static void createLink(Path root, TarEntry entry) throws IOException {
+    File file = resolve(root, entry.getName());
+    mkdirs(file.getParentFile());
+    Files.deleteIfExists(file.toPath());
+    Path target = file.toPath().getParent().resolve(entry.getLinkName()).normalize();
+    File archiveTarget = resolve(root, entry.getLinkName());
+    if (!Files.exists(target) && archiveTarget.isFile()) {
+      Files.createLink(file.toPath(), archiveTarget.toPath());
+      return;
+    }
+    if (!target.startsWith(root)) {
+      throw new IOException("Link " + entry.getName() + " points outside of the destination directory");
+    }
+    Files.createSymbolicLink(file.toPath(), file.toPath().getParent().relativize(target));
+  }
+
+  private static void setMode(File file, int mode) throws IOException {
+    if (POSIX) {
+      Files.setPosixFilePermissions(file.toPath(), permissions(mode));
+    } else if ((mode & 0111) != 0) {
+      file.setExecutable(true, (mode & 0011) == 0);
+    }
+  }
+
+  private static Set<PosixFilePermission> permissions(int mode) {
+    Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+    PosixFilePermission[] values = PosixFilePermission.values();
+    // PosixFilePermission is declared from OWNER_READ to OTHERS_EXECUTE, the same order as the mode bits
+    for (int i = 0; i < values.length; i++) {
+      if ((mode & (1 << (values.length - 1 - i))) != 0) {
+        permissions.add(values[i]);
+      }
+    }
+    // Keep the files writable by the build, as the plugin overwrites configuration files in place
+    permissions.add(PosixFilePermission.OWNER_WRITE);
+    permissions.add(PosixFilePermission.OWNER_READ);
+    return permissions;
+  }
+
+  private static class WriteTask implements Runnable {
+
+    private final File file;
+    private final byte[] content;
+    private final TarEntry entry;
+    private final Semaphore pending;
+    private final int permits;
+    private final AtomicReference<Throwable> failure;
+
+    WriteTask(File file, byte[] content, TarEntry entry, Semaphore pending, int permits,
+              AtomicReference<Throwable> failure) {
+      this.file = file;
+      this.content = content;
+      this.entry = entry;
+      this.pending = pending;
+      this.permits = permits;
+      this.failure = failure;
+    }
+
+    @Override
+    public void run() {
+      try {
+        if (failure.get() == null) {
+          try (OutputStream output = new FileOutputStream(file)) {
+            output.write(content);
+          }
+          setMode(file, entry.getMode());
+          if (entry.getModTime() != null && entry.getModTime().getTime() > 0) {
+            file.setLastModified(entry.getModTime().getTime());
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        failure.compareAndSet(null, e);
+      } finally {
+        pending.release(permits);
+      }
+    }
+  }
+}
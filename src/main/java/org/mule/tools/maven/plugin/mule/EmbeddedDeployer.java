@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import org.mule.tck.probe.PollingProber;
+import org.mule.tck.probe.Probe;
+import org.mule.tck.probe.Prober;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Deploys an application to a Mule Runtime running inside the Maven JVM, see {@link EmbeddedMule}. Applications, domains and
+ * libraries are copied to MULE_HOME as for a standalone instance, before starting Mule Runtime if it's not running.
+ */
+public class EmbeddedDeployer {
+
+  private final File muleHome;
+  private final Log log;
+  private final File application;
+  private final long timeout;
+  private final String[] arguments;
+  private final Prober prober;
+  private DeploymentMetrics metrics = new DeploymentMetrics();
+  private DeploymentHook hook;
+  private File timingsDirectory;
+
+  public EmbeddedDeployer(File muleHome, Log log, File application, long timeout, String[] arguments, long pollingDelay) {
+    this.muleHome = muleHome;
+    this.log = log;
+    this.application = application;
+    this.timeout = timeout;
+    this.arguments = arguments;
+    this.prober = new PollingProber(timeout, pollingDelay);
+  }
+
+  public void execute() throws MojoFailureException, MojoExecutionException {
+    if (!application.exists()) {
+      throw new MojoFailureException("Application does not exists: " + application);
+    }
+    long start = System.nanoTime();
+    EmbeddedMule mule = EmbeddedMule.get(muleHome);
+    boolean started = mule == null;
+    long usedHeap = started ? getUsedHeap() : 0;
+    executeHook(HookPoint.preDeploy);
+    log.info("Deploying application [" + application + "]");
+    try {
+      new FileStager(metrics).stageAtomically(application.toPath(), new File(muleHome, "apps/" + application.getName()).toPath());
+    } catch (IOException e) {
+      throw new MojoFailureException("Couldn't deploy application: " + application + ": " + e.getMessage());
+    }
+    if (started) {
+      long startupStart = System.nanoTime();
+      mule = EmbeddedMule.start(muleHome, log, arguments);
+      metrics.elapsed("mule.start.millis", startupStart);
+      executeHook(HookPoint.postStart);
+    }
+    waitForDeployment(mule);
+    executeHook(HookPoint.postDeploy);
+    if (started) {
+      metrics.record("embedded.heap.used.bytes", getUsedHeap() - usedHeap);
+      compareStartup(metrics.elapsed("mule.ready.millis", start));
+    }
+  }
+
+  private void waitForDeployment(final EmbeddedMule mule) throws MojoFailureException {
+    final String applicationName = getApplicationName();
+    final File anchor = new File(muleHome, "apps/" + applicationName + "-anchor.txt");
+    try {
+      prober.check(new Probe() {
+
+        @Override
+        public boolean isSatisfied() {
+          return mule.isRunning() && anchor.exists();
+        }
+
+        @Override
+        public String describeFailure() {
+          return "Application [" + applicationName + "] was not deployed";
+        }
+      });
+    } catch (AssertionError e) {
+      log.error("Couldn't deploy application [" + applicationName + "] after [" + timeout
+          + "] miliseconds. Check Mule Runtime log");
+      throw new MojoFailureException("Application deployment timeout.");
+    }
+  }
+
+  /**
+   * Reports how the embedded startup compares to the last standalone start from the same MULE_HOME.
+   */
+  private void compareStartup(long readyMillis) {
+    try {
+      StartupTimings timings = new StartupTimings(getTimingsDirectory(), muleHome);
+      Long saved = timings.getSavedMillis(StartupTimings.SEQUENTIAL, readyMillis);
+      if (saved != null) {
+        metrics.record("embedded.baseline.ready.millis", timings.getReadyMillis(StartupTimings.SEQUENTIAL));
+        metrics.record("embedded.ready.saved.millis", saved);
+        log.info("Embedded Mule Runtime saved " + saved + " ms of startup and deployment compared to standalone");
+      }
+      timings.setReadyMillis(StartupTimings.EMBEDDED, readyMillis);
+    } catch (IOException e) {
+      log.warn("Couldn't compare startup times: " + e.getMessage());
+    }
+  }
+
+  private static long getUsedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private String getApplicationName() {
+    String name = application.getName();
+    int extensionBeginning = name.lastIndexOf('.');
+    return extensionBeginning == -1 ? name : name.substring(0, extensionBeginning);
+  }
+
+  public EmbeddedDeployer setMetrics(DeploymentMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  /**
+   * Called at each {@link HookPoint} after Mule Runtime Standalone is installed.
+   */
+  public EmbeddedDeployer setHook(DeploymentHook hook) {
+    this.hook = hook;
+    return this;
+  }
+
+  /**
+   * Sets where the startup times are kept, by default the directory MULE_HOME was extracted to.
+   */
+  public EmbeddedDeployer setTimingsDirectory(File timingsDirectory) {
+    this.timingsDirectory = timingsDirectory;
+    return this;
+  }
+
+  private File getTimingsDirectory() {
+    return timingsDirectory != null ? timingsDirectory : muleHome.getAbsoluteFile().getParentFile();
+  }
+
+  private void executeHook(HookPoint hookPoint) throws MojoExecutionException {
+    if (hook != null) {
+      hook.execute(hookPoint);
+    }
+  }
+
+  public EmbeddedDeployer addLibraries(List<File> libs) throws MojoFailureException {
+    try {
+      new LibraryProvisioner(new File(muleHome, ".mule/libs"), log, metrics).provision(libs, muleHome);
+    } catch (IOException e) {
+      throw new MojoFailureException("Couldn't add libraries to Mule Runtime: " + e.getMessage());
+    }
+    return this;
+  }
+
+  public EmbeddedDeployer addDomain(File domain) throws MojoFailureException {
+    log.debug(String.format("Deploying domain : %s", domain));
+    try {
+      new FileStager(metrics).stageAtomically(domain.toPath(), new File(muleHome, "domains/" + domain.getName()).toPath());
+    } catch (IOException e) {
+      throw new MojoFailureException("Couldn't deploy domain: " + domain);
+    }
+    return this;
+  }
+}
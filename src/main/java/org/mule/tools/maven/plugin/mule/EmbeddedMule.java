@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Mule Runtime Standalone running inside the Maven JVM. The container is loaded from the libraries of a Mule Runtime
+ * Standalone distribution by a class loader isolated from Maven and the plugin, and deploys applications from its apps
+ * directory like a standalone instance. Mule Runtime reads its home from system properties, so only one embedded instance
+ * can run in a JVM.
+ */
+public class EmbeddedMule {
+
+  static final String CONTAINER_CLASS = "org.mule.module.launcher.MuleContainer";
+  private static final String[] LIBRARY_DIRECTORIES = {"lib/boot", "lib/user", "lib/mule", "lib/opt"};
+  private static final String SYSTEM_PROPERTY_ARGUMENT = "-M-D";
+
+  private static EmbeddedMule running;
+
+  private final File muleHome;
+  private final Log log;
+  private final Map<String, String> previousProperties = new HashMap<>();
+  private URLClassLoader classLoader;
+  private Object container;
+  private Thread shutdownHook;
+
+  private EmbeddedMule(File muleHome, Log log) {
+    this.muleHome = muleHome.getAbsoluteFile();
+    this.log = log;
+  }
+
+  /**
+   * @return The instance running from the MULE_HOME, or null if it's not running.
+   */
+  public static synchronized EmbeddedMule get(File muleHome) {
+    return running != null && running.muleHome.equals(muleHome.getAbsoluteFile()) ? running : null;
+  }
+
+  /**
+   * Starts Mule Runtime from the MULE_HOME. Arguments such as <code>-M-Dname=value</code> are set as system properties while
+   * it runs, other arguments are passed to the container.
+   */
+  public static synchronized EmbeddedMule start(File muleHome, Log log, String[] arguments) throws MojoExecutionException {
+    if (running != null) {
+      throw new MojoExecutionException("An embedded Mule Runtime is already running from " + running.muleHome);
+    }
+    EmbeddedMule mule = new EmbeddedMule(muleHome, log);
+    mule.doStart(arguments == null ? new String[0] : arguments);
+    running = mule;
+    return mule;
+  }
+
+  private void doStart(String[] arguments) throws MojoExecutionException {
+    List<String> containerArguments = new ArrayList<>();
+    setSystemProperty("mule.home", muleHome.getPath());
+    setSystemProperty("mule.base", muleHome.getPath());
+    for (String argument : arguments) {
+      if (argument.startsWith(SYSTEM_PROPERTY_ARGUMENT) && argument.contains("=")) {
+        String property = argument.substring(SYSTEM_PROPERTY_ARGUMENT.length());
+        setSystemProperty(property.substring(0, property.indexOf('=')), property.substring(property.indexOf('=') + 1));
+      } else {
+        containerArguments.add(argument);
+      }
+    }
+    ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+    try {
+      // The parent of the system class loader only has JDK classes
+      classLoader = new URLClassLoader(getClassPath(muleHome), ClassLoader.getSystemClassLoader().getParent());
+      Thread.currentThread().setContextClassLoader(classLoader);
+      Class<?> containerClass = classLoader.loadClass(CONTAINER_CLASS);
+      container = containerClass.getConstructor(String[].class).newInstance((Object) containerArguments.toArray(new String[0]));
+      log.info("Starting embedded Mule Runtime from " + muleHome);
+      containerClass.getMethod("start", boolean.class).invoke(container, false);
+    } catch (ClassNotFoundException e) {
+      restoreSystemProperties();
+      throw new MojoExecutionException("Couldn't find Mule Runtime container in " + muleHome + ", embedded mode needs Mule 3");
+    } catch (ReflectiveOperationException | IOException e) {
+      restoreSystemProperties();
+      Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+      throw new MojoExecutionException("Couldn't start embedded Mule Runtime from " + muleHome, cause);
+    } finally {
+      Thread.currentThread().setContextClassLoader(contextClassLoader);
+    }
+    shutdownHook = new Thread("mule-maven-plugin-embedded-shutdown") {
+
+      @Override
+      public void run() {
+        stopContainer();
+      }
+    };
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+  }
+
+  public synchronized boolean isRunning() {
+    return container != null;
+  }
+
+  /**
+   * Stops Mule Runtime, undeploying its applications, and releases its classes.
+   */
+  public void stop() {
+    synchronized (EmbeddedMule.class) {
+      if (running == this) {
+        running = null;
+      }
+    }
+    if (shutdownHook != null) {
+      try {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      } catch (IllegalStateException e) {
+        // Already shutting down
+      }
+    }
+    stopContainer();
+    restoreSystemProperties();
+  }
+
+  private synchronized void stopContainer() {
+    if (container == null) {
+      return;
+    }
+    log.info("Stopping embedded Mule Runtime");
+    ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+    try {
+      Thread.currentThread().setContextClassLoader(classLoader);
+      container.getClass().getMethod("stop").invoke(container);
+    } catch (ReflectiveOperationException e) {
+      log.warn("Couldn't stop embedded Mule Runtime: " + e.getMessage());
+    } finally {
+      Thread.currentThread().setContextClassLoader(contextClassLoader);
+      container = null;
+      try {
+        classLoader.close();
+      } catch (IOException e) {
+        log.debug("Couldn't close embedded Mule Runtime class loader: " + e.getMessage());
+      }
+    }
+  }
+
+  private void setSystemProperty(String name, String value) {
+    if (!previousProperties.containsKey(name)) {
+      previousProperties.put(name, System.getProperty(name));
+    }
+    System.setProperty(name, value);
+  }
+
+  private void restoreSystemProperties() {
+    for (Map.Entry<String, String> property : previousProperties.entrySet()) {
+      if (property.getValue() == null) {
+        System.clearProperty(property.getKey());
+      } else {
+        System.setProperty(property.getKey(), property.getValue());
+      }
+    }
+    previousProperties.clear();
+  }
+
+  /**
+   * @return The configuration directory and the libraries of the distribution, in the order the wrapper loads them.
+   */
+  static URL[] getClassPath(File muleHome) throws MalformedURLException {
+    List<URL> urls = new ArrayList<>();
+    urls.add(new File(muleHome, "conf").toURI().toURL());
+    for (String directory : LIBRARY_DIRECTORIES) {
+      File[] jars = new File(muleHome, directory).listFiles(new FileFilter() {
+
+        @Override
+        public boolean accept(File file) {
+          return file.isFile() && file.getName().endsWith(".jar");
+        }
+      });
+      if (jars == null) {
+        continue;
+      }
+      Arrays.sort(jars);
+      for (File jar : jars) {
+        urls.add(jar.toURI().toURL());
+      }
+    }
+    return urls.toArray(new URL[0]);
+  }
+}
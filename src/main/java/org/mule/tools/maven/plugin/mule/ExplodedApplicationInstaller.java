@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Installs an application as an exploded directory in <code>MULE_HOME/apps</code>, skipping the copy of the zip file and its
+ * extraction by Mule Runtime. Application directories are hard linked and zip files are extracted concurrently into a
+ * staging directory inside MULE_HOME, which is then moved into <code>apps</code> in a single rename, so Mule Runtime never
+ * sees a partially written application.
+ */
+public class ExplodedApplicationInstaller {
+
+  public static final String DEPLOY_PROPERTIES = "mule-deploy.properties";
+  public static final String DEFAULT_CONFIG = "mule-config.xml";
+
+  private final Log log;
+  private final DeploymentMetrics metrics;
+  private final FileStager stager;
+
+  public ExplodedApplicationInstaller(Log log, DeploymentMetrics metrics) {
+    this.log = log;
+    this.metrics = metrics;
+    this.stager = new FileStager(metrics);
+  }
+
+  /**
+   * Installs the application, which must not be deployed, as <code>MULE_HOME/apps/applicationName</code>.
+   *
+   * @param application Application zip file or exploded application directory.
+   * @return The installed application directory.
+   */
+  public File install(File application, String applicationName, File muleHome) throws IOException {
+    long start = System.nanoTime();
+    File appsDirectory = new File(muleHome, "apps");
+    File target = new File(appsDirectory, applicationName);
+    Path staging = createStagingDirectory(muleHome, applicationName);
+    try {
+      if (application.isDirectory()) {
+        log.debug("Linking exploded application " + application + " into " + staging);
+        stager.stageTree(application.toPath(), staging);
+      } else {
+        log.debug("Extracting " + application + " into " + staging);
+        extract(application, staging);
+      }
+      touchRedeployTriggers(staging.toFile(), System.currentTimeMillis());
+      if (target.exists()) {
+        log.debug("Removing previous exploded application " + target);
+        FileUtils.deleteDirectory(target);
+      }
+      move(staging, target.toPath());
+    } finally {
+      FileUtils.deleteQuietly(staging.toFile());
+    }
+    metrics.elapsed("exploded.install.millis", start);
+    return target;
+  }
+
+  /**
+   * Extracts the zip file concurrently, one task per entry.
+   */
+  public void extract(File zip, final Path directory) throws IOException {
+    final Path root = directory.toAbsolutePath().normalize();
+    try (final ZipFile zipFile = new ZipFile(zip)) {
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements();) {
+        final ZipEntry entry = entries.nextElement();
+        final Path path = root.resolve(entry.getName()).normalize();
+        if (!path.startsWith(root)) {
+          throw new IOException("Zip entry [" + entry.getName() + "] is outside of the application directory");
+        }
+        if (entry.isDirectory()) {
+          Files.createDirectories(path);
+          continue;
+        }
+        tasks.add(new Callable<Void>() {
+
+          @Override
+          public Void call() throws IOException {
+            Files.createDirectories(path.getParent());
+            try (InputStream in = zipFile.getInputStream(entry)) {
+              metrics.add("exploded.extracted.bytes", Files.copy(in, path));
+            }
+            if (entry.getTime() != -1) {
+              path.toFile().setLastModified(entry.getTime());
+            }
+            return null;
+          }
+        });
+      }
+      ParallelExecutor.invokeAllFileTasks(tasks);
+    }
+  }
+
+  /**
+   * @return The configuration files of the application directory, that Mule Runtime watches to redeploy the application.
+   */
+  public static Set<String> getConfigResources(File applicationDirectory) throws IOException {
+    File descriptor = new File(applicationDirectory, DEPLOY_PROPERTIES);
+    String resources = null;
+    if (descriptor.isFile()) {
+      Properties properties = new Properties();
+      try (InputStream in = Files.newInputStream(descriptor.toPath())) {
+        properties.load(in);
+      }
+      resources = properties.getProperty("config.resources");
+    }
+    if (StringUtils.isBlank(resources)) {
+      return Collections.singleton(DEFAULT_CONFIG);
+    }
+    Set<String> configs = new LinkedHashSet<>();
+    for (String resource : resources.split(",")) {
+      if (StringUtils.isNotBlank(resource)) {
+        configs.add(resource.trim());
+      }
+    }
+    return configs;
+  }
+
+  /**
+   * Rewrites the configuration files with the given timestamp, so Mule Runtime redeploys the application. They are copied
+   * rather than linked, so touching them doesn't modify the project files.
+   *
+   * @return true if at least one configuration file was found.
+   */
+  static boolean touchRedeployTriggers(File applicationDirectory, long timestamp) throws IOException {
+    boolean touched = false;
+    for (String config : getConfigResources(applicationDirectory)) {
+      File file = new File(applicationDirectory, config);
+      if (!file.isFile()) {
+        continue;
+      }
+      File copy = new File(applicationDirectory, config + ".tmp");
+      Files.copy(file.toPath(), copy.toPath(), REPLACE_EXISTING);
+      Files.move(copy.toPath(), file.toPath(), REPLACE_EXISTING);
+      file.setLastModified(timestamp);
+      touched = true;
+    }
+    return touched;
+  }
+
+  private Path createStagingDirectory(File muleHome, String applicationName) throws IOException {
+    Path stagingRoot = new File(muleHome, ".mule/staging").toPath();
+    Files.createDirectories(stagingRoot);
+    return Files.createTempDirectory(stagingRoot, applicationName + "-");
+  }
+
+  private void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target);
+    }
+  }
+}
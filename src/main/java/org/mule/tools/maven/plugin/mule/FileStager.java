@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+/**
+ * Places files in Mule Runtime directories without copying their contents when possible: files are hard linked, and
+ * only copied when the file system doesn't support links or the target is on another file system. Copies are done with
+ * {@link FileChannel#transferTo}, so the kernel moves the bytes without going through the JVM heap. Bytes linked and copied
+ * are recorded in the metrics as <code>staging.linked.bytes</code> and <code>staging.copied.bytes</code>.
+ */
+public class FileStager {
+
+  private final DeploymentMetrics metrics;
+
+  public FileStager(DeploymentMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Makes <code>target</code>, which must not exist, have the contents of <code>source</code>.
+   */
+  public void stage(Path source, Path target) throws IOException {
+    long size = Files.size(source);
+    try {
+      Files.createLink(target, source);
+      metrics.add("staging.linked.bytes", size);
+      return;
+    } catch (UnsupportedOperationException | IOException e) {
+      // Links not supported or different file systems, falling back to copy
+    }
+    copy(source, target);
+    metrics.add("staging.copied.bytes", size);
+  }
+
+  /**
+   * Stages <code>source</code> next to <code>target</code> and renames it to <code>target</code>, replacing it, so readers
+   * such as the Mule Runtime deployment scanner never see a partially written file. Each call stages under its own name,
+   * so concurrent stagings of the same target don't clash and the last one to finish wins.
+   */
+  public void stageAtomically(Path source, Path target) throws IOException {
+    Path staging = target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID() + ".staging");
+    try {
+      stage(source, staging);
+      try {
+        Files.move(staging, target, REPLACE_EXISTING, ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(staging, target, REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(staging);
+    }
+  }
+
+  private void copy(Path source, Path target) throws IOException {
+    try (FileChannel in = FileChannel.open(source, READ); FileChannel out = FileChannel.open(target, CREATE_NEW, WRITE)) {
+      long size = in.size();
+      for (long position = 0; position < size;) {
+        position += in.transferTo(position, size - position, out);
+      }
+    }
+    Files.setLastModifiedTime(target, Files.getLastModifiedTime(source));
+  }
+
+  /**
+   * Recreates the <code>source</code> directory tree in <code>target</code>, staging files concurrently.
+   */
+  public void stageTree(final Path source, final Path target) throws IOException {
+    final List<Callable<Void>> tasks = new ArrayList<>();
+    Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+        Files.createDirectories(target.resolve(source.relativize(directory).toString()));
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(final Path file, BasicFileAttributes attributes) {
+        tasks.add(new Callable<Void>() {
+
+          @Override
+          public Void call() throws IOException {
+            stage(file, target.resolve(source.relativize(file).toString()));
+            return null;
+          }
+        });
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    ParallelExecutor.invokeAllFileTasks(tasks);
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovySystem;
+import groovy.lang.MissingPropertyException;
+import groovy.lang.Script;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+/**
+ * Runs Groovy scripts, compiling each distinct script only once. Compiled classes are kept in memory for the rest of the
+ * build, so every module of a reactor shares them, and written to a cache directory for later builds. Both caches are
+ * keyed by the SHA-1 hash of the script contents and the Groovy version.
+ */
+public class GroovyScriptRunner {
+
+  private static final ConcurrentMap<String, Class<?>> COMPILED = new ConcurrentHashMap<>();
+
+  private final File cacheDirectory;
+  private final Log log;
+  private final DeploymentMetrics metrics;
+
+  public GroovyScriptRunner(File cacheDirectory, Log log, DeploymentMetrics metrics) {
+    this.cacheDirectory = cacheDirectory;
+    this.log = log;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Runs the script with the given variables. Properties are also available to the script as variables, resolved when the
+   * script reads them.
+   */
+  public void run(File script, Map<String, Object> variables, Properties properties) throws MojoExecutionException {
+    long start = System.nanoTime();
+    try {
+      Binding binding = new PropertiesBinding(properties);
+      for (Map.Entry<String, Object> variable : variables.entrySet()) {
+        binding.setVariable(variable.getKey(), variable.getValue());
+      }
+      Script instance = InvokerHelper.createScript(load(script), binding);
+      instance.run();
+    } catch (IOException | CompilationFailedException e) {
+      throw new MojoExecutionException("error executing script: " + script.getAbsolutePath() + "\n" + e.getMessage());
+    }
+    metrics.elapsed("scripts.millis", start);
+  }
+
+  private Class<?> load(File script) throws IOException {
+    String text = new String(Files.readAllBytes(script.toPath()), UTF_8);
+    String hash = hash(GroovySystem.getVersion() + "\n" + text);
+    Class<?> compiled = COMPILED.get(hash);
+    if (compiled != null) {
+      metrics.increment("scripts.memory.hits.count");
+      return compiled;
+    }
+    synchronized (COMPILED) {
+      compiled = COMPILED.get(hash);
+      if (compiled == null) {
+        compiled = loadOrCompile(hash, text);
+        COMPILED.put(hash, compiled);
+      }
+      return compiled;
+    }
+  }
+
+  private Class<?> loadOrCompile(String hash, String text) throws IOException {
+    String className = "MuleScript_" + hash;
+    File classes = new File(cacheDirectory, hash);
+    if (classes.isDirectory()) {
+      try {
+        Class<?> cached = loadClass(classes, className);
+        metrics.increment("scripts.disk.hits.count");
+        return cached;
+      } catch (ClassNotFoundException | LinkageError e) {
+        // Left by an interrupted build or damaged on disk, it is compiled again
+        log.warn("Discarding unreadable compiled script " + classes + ": " + e);
+        FileUtils.deleteQuietly(classes);
+      }
+    }
+    long start = System.nanoTime();
+    log.debug("Compiling script " + className);
+    File staging = new File(cacheDirectory, hash + "-" + UUID.randomUUID());
+    CompilerConfiguration configuration = new CompilerConfiguration();
+    configuration.setTargetDirectory(staging);
+    CompilationUnit unit = new CompilationUnit(configuration);
+    unit.addSource(className + ".groovy", text);
+    unit.compile();
+    if (!staging.renameTo(classes)) {
+      // Compiled concurrently by another build
+      FileUtils.deleteQuietly(staging);
+    }
+    metrics.elapsed("scripts.compile.millis", start);
+    try {
+      return loadClass(classes, className);
+    } catch (ClassNotFoundException | LinkageError e) {
+      throw new IOException("Couldn't load compiled script from " + classes, e);
+    }
+  }
+
+  private Class<?> loadClass(File classes, String className) throws ClassNotFoundException {
+    GroovyClassLoader classLoader = new GroovyClassLoader(getClass().getClassLoader());
+    classLoader.addClasspath(classes.getAbsolutePath());
+    return classLoader.loadClass(className);
+  }
+
+  static String hash(String text) {
+    try {
+      StringBuilder hash = new StringBuilder();
+      for (byte b : MessageDigest.getInstance("SHA-1").digest(text.getBytes(UTF_8))) {
+        hash.append(String.format("%02x", b));
+      }
+      return hash.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Resolves unknown variables from the properties, instead of copying all of them into the binding.
+   */
+  private static class PropertiesBinding extends Binding {
+
+    private final Properties properties;
+
+    PropertiesBinding(Properties properties) {
+      this.properties = properties;
+    }
+
+    @Override
+    public Object getVariable(String name) {
+      try {
+        return super.getVariable(name);
+      } catch (MissingPropertyException e) {
+        if (properties.containsKey(name)) {
+          return properties.get(name);
+        }
+        throw e;
+      }
+    }
+
+    @Override
+    public boolean hasVariable(String name) {
+      return super.hasVariable(name) || properties.containsKey(name);
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static javax.ws.rs.core.HttpHeaders.ACCEPT_ENCODING;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_ENCODING;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_LENGTH;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+
+/**
+ * Asks for gzip compressed responses and decompresses them while they are read. The difference between the decompressed
+ * and the transferred size is recorded as <code>http.gzip.saved.bytes</code>.
+ */
+public class GzipResponseFilter implements ClientRequestFilter, ClientResponseFilter {
+
+  private static final String GZIP = "gzip";
+
+  private final DeploymentMetrics metrics;
+
+  public GzipResponseFilter(DeploymentMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void filter(ClientRequestContext request) throws IOException {
+    if (!request.getHeaders().containsKey(ACCEPT_ENCODING)) {
+      request.getHeaders().putSingle(ACCEPT_ENCODING, GZIP);
+    }
+  }
+
+  @Override
+  public void filter(ClientRequestContext request, ClientResponseContext response) throws IOException {
+    String encoding = response.getHeaderString(CONTENT_ENCODING);
+    if (encoding == null || !GZIP.equalsIgnoreCase(encoding.trim()) || !response.hasEntity()) {
+      return;
+    }
+    response.getHeaders().remove(CONTENT_ENCODING);
+    response.getHeaders().remove(CONTENT_LENGTH);
+    CountingInputStream compressed = new CountingInputStream(response.getEntityStream());
+    response.setEntityStream(new DecompressingInputStream(compressed));
+  }
+
+  private class DecompressingInputStream extends CountingInputStream {
+
+    private final CountingInputStream compressed;
+    private boolean closed;
+
+    DecompressingInputStream(CountingInputStream compressed) throws IOException {
+      super(new GZIPInputStream(compressed));
+      this.compressed = compressed;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        metrics.add("http.gzip.saved.bytes", getCount() - compressed.getCount());
+      }
+      super.close();
+    }
+  }
+
+  private static class CountingInputStream extends FilterInputStream {
+
+    private long count;
+
+    CountingInputStream(InputStream input) {
+      super(input);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b != -1) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int read = super.read(buffer, offset, length);
+      if (read > 0) {
+        count += read;
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      count += skipped;
+      return skipped;
+    }
+
+    long getCount() {
+      return count;
+    }
+  }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+/**
+ * Points of a deployment where scripts can run.
+ */
+public enum HookPoint {
+
+  /**
+   * Before Mule Runtime Standalone is installed.
+   */
+  preInstall,
+
+  /**
+   * After Mule Runtime Standalone is running, before the application is deployed.
+   */
+  postStart,
+
+  /**
+   * Before the application is deployed.
+   */
+  preDeploy,
+
+  /**
+   * After the application is deployed.
+   */
+  postDeploy
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * Describes the resources of the host running the build, used to size the Mule Runtime instances started on it.
+ */
+public class HostResources {
+
+  private static final long MEGABYTE = 1024 * 1024;
+
+  private final long totalMemory;
+  private final int processors;
+  private final int javaVersion;
+
+  public HostResources(long totalMemory, int processors, int javaVersion) {
+    this.totalMemory = totalMemory;
+    this.processors = processors;
+    this.javaVersion = javaVersion;
+  }
+
+  /**
+   * Detects the resources of the current host. Physical memory is read from the platform MBean when available, otherwise
+   * it is estimated from the maximum heap of the running JVM.
+   */
+  public static HostResources detect() {
+    return new HostResources(detectTotalMemory(), Runtime.getRuntime().availableProcessors(),
+                             parseJavaVersion(System.getProperty("java.specification.version")));
+  }
+
+  /**
+   * @return These resources, with the JDK Mule Runtime runs on when it is not the one running the build.
+   */
+  public HostResources withJavaVersion(int javaVersion) {
+    return new HostResources(totalMemory, processors, javaVersion);
+  }
+
+  private static long detectTotalMemory() {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (os instanceof com.sun.management.OperatingSystemMXBean) {
+      long physical = ((com.sun.management.OperatingSystemMXBean) os).getTotalPhysicalMemorySize();
+      if (physical > 0) {
+        return physical;
+      }
+    }
+    // By default the JVM takes a quarter of the physical memory as maximum heap
+    return Runtime.getRuntime().maxMemory() * 4;
+  }
+
+  static int parseJavaVersion(String specificationVersion) {
+    if (specificationVersion == null) {
+      return 8;
+    }
+    String version = specificationVersion.startsWith("1.") ? specificationVersion.substring(2) : specificationVersion;
+    int end = 0;
+    while (end < version.length() && Character.isDigit(version.charAt(end))) {
+      end++;
+    }
+    return end == 0 ? 8 : Integer.parseInt(version.substring(0, end));
+  }
+
+  public long getTotalMemory() {
+    return totalMemory;
+  }
+
+  public long getTotalMemoryMegabytes() {
+    return totalMemory / MEGABYTE;
+  }
+
+  public int getProcessors() {
+    return processors;
+  }
+
+  /**
+   * @return The feature version of the JDK (8, 11, 17...) running the build, unless set with {@link #withJavaVersion(int)}.
+   */
+  public int getJavaVersion() {
+    return javaVersion;
+  }
+
+  public String toString() {
+    return String.format("Host with [memory=%dMB, processors=%d, java=%d]", getTotalMemoryMegabytes(), processors,
+                         javaVersion);
+  }
+}
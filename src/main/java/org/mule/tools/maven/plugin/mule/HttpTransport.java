@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.HttpUrlConnectorProvider;
+import org.glassfish.jersey.client.RequestEntityProcessing;
+import org.glassfish.jersey.grizzly.connector.GrizzlyConnectorProvider;
+
+/**
+ * HTTP client used to call the Anypoint Platform and agent APIs.
+ */
+public enum HttpTransport {
+
+  /**
+   * JDK <code>HttpURLConnection</code>. PATCH needs a workaround, and the IBM JDK the <code>ibm.jdk.support</code> system
+   * property.
+   */
+  urlConnection {
+
+    @Override
+    public void configure(ClientConfig config) {
+      config.connectorProvider(new HttpUrlConnectorProvider());
+    }
+  },
+
+  /**
+   * Apache HttpClient, keeping a pool of persistent connections per host. Supports PATCH and streams request bodies.
+   */
+  apache {
+
+    @Override
+    public void configure(ClientConfig config) {
+      PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+      connectionManager.setMaxTotal(MAX_CONNECTIONS);
+      connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+      config.connectorProvider(new ApacheConnectorProvider())
+          .property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager)
+          .property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.CHUNKED);
+    }
+  },
+
+  /**
+   * Grizzly asynchronous client, sharing a small pool of selector threads between connections. Supports PATCH and streams
+   * request bodies.
+   */
+  grizzly {
+
+    @Override
+    public void configure(ClientConfig config) {
+      config.connectorProvider(new GrizzlyConnectorProvider())
+          .property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.CHUNKED);
+    }
+  };
+
+  private static final int MAX_CONNECTIONS = 32;
+
+  /**
+   * Configures the connector of a client using this transport.
+   */
+  public abstract void configure(ClientConfig config);
+
+  /**
+   * @return Whether PATCH can be sent without the <code>HttpURLConnection</code> workaround.
+   */
+  public boolean isPatchSupported() {
+    return this != urlConnection;
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Enumeration;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Brings an exploded application deployed in <code>MULE_HOME/apps</code> up to date with the build output, writing only the
+ * files that changed and deleting the ones that were removed. Files are compared by size and modification time, and by
+ * CRC-32 checksum when only the modification time differs. Files hard linked to the build output already have the new
+ * contents, so they are changed when modified after the application was deployed.
+ */
+public class IncrementalSynchronizer {
+
+  private static final String SYNC_SUFFIX = ".sync";
+
+  private final Log log;
+  private final DeploymentMetrics metrics;
+  private final FileStager stager;
+
+  public IncrementalSynchronizer(Log log, DeploymentMetrics metrics) {
+    this.log = log;
+    this.metrics = metrics;
+    this.stager = new FileStager(metrics);
+  }
+
+  /**
+   * @param application Application zip file or exploded application directory.
+   * @param deployed Deployed application directory.
+   * @param deployedSince Time the deployed application was last deployed, in milliseconds.
+   * @return The number of files changed, added or removed.
+   */
+  public int synchronize(File application, File deployed, long deployedSince) throws IOException {
+    long start = System.nanoTime();
+    Path target = deployed.toPath();
+    Set<String> removed = list(target);
+    int changes = application.isDirectory() ? synchronizeDirectory(application.toPath(), target, deployedSince, removed)
+        : synchronizeZip(application, target, removed);
+    for (String path : removed) {
+      log.debug("Removing " + path);
+      Files.deleteIfExists(target.resolve(path));
+    }
+    metrics.add("incremental.removed.count", removed.size());
+    metrics.elapsed("incremental.sync.millis", start);
+    return changes + removed.size();
+  }
+
+  private int synchronizeDirectory(final Path source, final Path target, final long deployedSince, final Set<String> removed)
+      throws IOException {
+    final int[] changes = new int[1];
+    Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+        String path = relativize(source, file);
+        removed.remove(path);
+        Path deployedFile = target.resolve(path);
+        if (!Files.exists(deployedFile) || !isSameContent(file, attributes, deployedFile)) {
+          log.debug("Updating " + path);
+          Path synced = prepare(deployedFile);
+          stager.stage(file, synced);
+          replace(synced, deployedFile);
+          count(changes);
+        } else if (Files.isSameFile(file, deployedFile) && attributes.lastModifiedTime().toMillis() > deployedSince) {
+          log.debug("Modified " + path);
+          count(changes);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    return changes[0];
+  }
+
+  private int synchronizeZip(File application, Path target, Set<String> removed) throws IOException {
+    int changes = 0;
+    try (ZipFile zipFile = new ZipFile(application)) {
+      for (Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements();) {
+        ZipEntry entry = entries.nextElement();
+        if (entry.isDirectory()) {
+          continue;
+        }
+        removed.remove(entry.getName());
+        Path deployedFile = target.resolve(entry.getName()).normalize();
+        if (!deployedFile.startsWith(target)) {
+          throw new IOException("Zip entry [" + entry.getName() + "] is outside of the application directory");
+        }
+        if (Files.exists(deployedFile) && isSameContent(entry, deployedFile)) {
+          continue;
+        }
+        log.debug("Updating " + entry.getName());
+        Path synced = prepare(deployedFile);
+        try (InputStream in = zipFile.getInputStream(entry)) {
+          metrics.add("exploded.extracted.bytes", Files.copy(in, synced));
+        }
+        if (entry.getTime() != -1) {
+          synced.toFile().setLastModified(entry.getTime());
+        }
+        replace(synced, deployedFile);
+        changes++;
+      }
+    }
+    metrics.add("incremental.changed.count", changes);
+    return changes;
+  }
+
+  private boolean isSameContent(Path file, BasicFileAttributes attributes, Path deployedFile) throws IOException {
+    if (attributes.size() != Files.size(deployedFile)) {
+      return false;
+    }
+    if (Files.isSameFile(file, deployedFile)
+        || attributes.lastModifiedTime().toMillis() == Files.getLastModifiedTime(deployedFile).toMillis()) {
+      return true;
+    }
+    return checksum(file) == checksum(deployedFile);
+  }
+
+  private boolean isSameContent(ZipEntry entry, Path deployedFile) throws IOException {
+    if (entry.getSize() != Files.size(deployedFile)) {
+      return false;
+    }
+    if (entry.getTime() == Files.getLastModifiedTime(deployedFile).toMillis()) {
+      return true;
+    }
+    return entry.getCrc() == checksum(deployedFile);
+  }
+
+  private void count(int[] changes) {
+    changes[0]++;
+    metrics.increment("incremental.changed.count");
+  }
+
+  static long checksum(Path file) throws IOException {
+    CRC32 crc = new CRC32();
+    byte[] buffer = new byte[64 * 1024];
+    try (InputStream in = Files.newInputStream(file)) {
+      for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+        crc.update(buffer, 0, read);
+      }
+    }
+    return crc.getValue();
+  }
+
+  private Path prepare(Path deployedFile) throws IOException {
+    Files.createDirectories(deployedFile.getParent());
+    Path synced = deployedFile.resolveSibling(deployedFile.getFileName() + SYNC_SUFFIX);
+    Files.deleteIfExists(synced);
+    return synced;
+  }
+
+  private void replace(Path synced, Path deployedFile) throws IOException {
+    Files.move(synced, deployedFile, REPLACE_EXISTING, ATOMIC_MOVE);
+  }
+
+  private static Set<String> list(final Path directory) throws IOException {
+    final Set<String> files = new TreeSet<>();
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+        files.add(relativize(directory, file));
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    return files;
+  }
+
+  private static String relativize(Path directory, Path file) {
+    return directory.relativize(file).toString().replace(File.separatorChar, '/');
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Adds libraries to the <code>lib/user</code> directory of Mule Runtime instances. Each jar is copied once to a store where
+ * it is named after the SHA-1 hash of its contents, and linked from there into every instance, so all instances share the
+ * same file on disk and in the page cache. Jars already present with the same contents are skipped, and instances are
+ * provisioned concurrently.
+ */
+public class LibraryProvisioner {
+
+  private final File store;
+  private final Log log;
+  private final DeploymentMetrics metrics;
+  private final FileStager stager;
+
+  public LibraryProvisioner(File store, Log log, DeploymentMetrics metrics) {
+    this.store = store;
+    this.log = log;
+    this.metrics = metrics;
+    this.stager = new FileStager(metrics);
+  }
+
+  public void provision(List<File> libraries, File... muleHomes) throws IOException {
+    if (libraries.isEmpty()) {
+      return;
+    }
+    long start = System.nanoTime();
+    Files.createDirectories(store.toPath());
+    List<Callable<Path>> storeTasks = new ArrayList<>();
+    for (final File library : libraries) {
+      storeTasks.add(new Callable<Path>() {
+
+        @Override
+        public Path call() throws IOException {
+          return store(library);
+        }
+      });
+    }
+    List<Path> stored = ParallelExecutor.invokeAllFileTasks(storeTasks);
+    Map<String, Path> names = getTargetNames(libraries, stored);
+    List<Callable<Path>> linkTasks = new ArrayList<>();
+    for (final File muleHome : muleHomes) {
+      for (Map.Entry<String, Path> name : names.entrySet()) {
+        final Path source = name.getValue();
+        final Path target = new File(muleHome, "lib/user/" + name.getKey()).toPath();
+        linkTasks.add(new Callable<Path>() {
+
+          @Override
+          public Path call() throws IOException {
+            provision(source, target);
+            return target;
+          }
+        });
+      }
+    }
+    ParallelExecutor.invokeAllFileTasks(linkTasks);
+    metrics.elapsed("libraries.provision.millis", start);
+  }
+
+  /**
+   * Names the libraries in <code>lib/user</code> after their files. Different libraries with the same file name, such as
+   * artifacts with the same id from different groups, are prefixed with the start of their hash so they don't overwrite
+   * each other, and the same library listed twice is provisioned once.
+   */
+  private static Map<String, Path> getTargetNames(List<File> libraries, List<Path> stored) {
+    Map<String, Set<Path>> sources = new HashMap<>();
+    for (int i = 0; i < libraries.size(); i++) {
+      String name = libraries.get(i).getName();
+      if (!sources.containsKey(name)) {
+        sources.put(name, new LinkedHashSet<Path>());
+      }
+      sources.get(name).add(stored.get(i));
+    }
+    Map<String, Path> names = new TreeMap<>();
+    for (Map.Entry<String, Set<Path>> entry : sources.entrySet()) {
+      if (entry.getValue().size() == 1) {
+        names.put(entry.getKey(), entry.getValue().iterator().next());
+        continue;
+      }
+      for (Path source : entry.getValue()) {
+        names.put(source.getFileName().toString().substring(0, 8) + "-" + entry.getKey(), source);
+      }
+    }
+    return names;
+  }
+
+  private Path store(File library) throws IOException {
+    Path stored = new File(store, hash(library.toPath()) + ".jar").toPath();
+    if (!Files.exists(stored)) {
+      log.debug(String.format("Storing library %s as %s", library, stored.getFileName()));
+      stager.stageAtomically(library.toPath(), stored);
+    }
+    return stored;
+  }
+
+  private void provision(Path stored, Path target) throws IOException {
+    if (Files.exists(target) && (Files.isSameFile(stored, target)
+        || Files.size(stored) == Files.size(target) && stored.getFileName().toString().equals(hash(target) + ".jar"))) {
+      log.debug(String.format("Library %s is up to date", target));
+      metrics.increment("libraries.skipped.count");
+      return;
+    }
+    log.debug(String.format("Adding library %s...", target));
+    Files.createDirectories(target.getParent());
+    stager.stageAtomically(stored, target);
+    metrics.increment("libraries.provisioned.count");
+  }
+
+  static String hash(Path file) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    byte[] buffer = new byte[64 * 1024];
+    try (InputStream in = Files.newInputStream(file)) {
+      for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+        digest.update(buffer, 0, read);
+      }
+    }
+    StringBuilder hash = new StringBuilder();
+    for (byte b : digest.digest()) {
+      hash.append(String.format("%02x", b));
+    }
+    return hash.toString();
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.SecureRandom;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+
+/**
+ * Delegates to another context, recording the TLS handshakes of its sockets: <code>tls.handshakes.count</code>,
+ * <code>tls.resumed.count</code> for handshakes that resumed a cached session, and <code>tls.handshake.millis</code>, the
+ * total time from creating the sockets to completing their handshakes. Connections made through {@link SSLEngine} aren't
+ * recorded.
+ */
+public class MeteredSslContext extends SSLContext {
+
+  public MeteredSslContext(SSLContext delegate, DeploymentMetrics metrics) {
+    super(new MeteredSpi(delegate, metrics), delegate.getProvider(), delegate.getProtocol());
+  }
+
+  private static class MeteredSpi extends SSLContextSpi {
+
+    private final SSLContext delegate;
+    private final DeploymentMetrics metrics;
+
+    MeteredSpi(SSLContext delegate, DeploymentMetrics metrics) {
+      this.delegate = delegate;
+      this.metrics = metrics;
+    }
+
+    @Override
+    protected void engineInit(KeyManager[] keyManagers, TrustManager[] trustManagers, SecureRandom random) {
+      throw new UnsupportedOperationException("The delegate context is already initialized");
+    }
+
+    @Override
+    protected SSLSocketFactory engineGetSocketFactory() {
+      return new MeteredSocketFactory(delegate.getSocketFactory(), metrics);
+    }
+
+    @Override
+    protected SSLServerSocketFactory engineGetServerSocketFactory() {
+      return delegate.getServerSocketFactory();
+    }
+
+    @Override
+    protected SSLEngine engineCreateSSLEngine() {
+      return delegate.createSSLEngine();
+    }
+
+    @Override
+    protected SSLEngine engineCreateSSLEngine(String host, int port) {
+      return delegate.createSSLEngine(host, port);
+    }
+
+    @Override
+    protected SSLSessionContext engineGetServerSessionContext() {
+      return delegate.getServerSessionContext();
+    }
+
+    @Override
+    protected SSLSessionContext engineGetClientSessionContext() {
+      return delegate.getClientSessionContext();
+    }
+  }
+
+  private static class MeteredSocketFactory extends SSLSocketFactory {
+
+    private final SSLSocketFactory delegate;
+    private final DeploymentMetrics metrics;
+
+    MeteredSocketFactory(SSLSocketFactory delegate, DeploymentMetrics metrics) {
+      this.delegate = delegate;
+      this.metrics = metrics;
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+      return delegate.getDefaultCipherSuites();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+      return delegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+      return meter(delegate.createSocket());
+    }
+
+    @Override
+    public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+      return meter(delegate.createSocket(socket, host, port, autoClose));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+      return meter(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+      return meter(delegate.createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+      return meter(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+      return meter(delegate.createSocket(address, port, localAddress, localPort));
+    }
+
+    private Socket meter(Socket socket) {
+      if (socket instanceof SSLSocket) {
+        final long created = System.currentTimeMillis();
+        ((SSLSocket) socket).addHandshakeCompletedListener(new HandshakeCompletedListener() {
+
+          @Override
+          public void handshakeCompleted(HandshakeCompletedEvent event) {
+            metrics.increment("tls.handshakes.count");
+            metrics.add("tls.handshake.millis", System.currentTimeMillis() - created);
+            // A resumed session was created by an earlier connection
+            if (event.getSession().getCreationTime() < created) {
+              metrics.increment("tls.resumed.count");
+            }
+          }
+        });
+      }
+      return socket;
+    }
+  }
+}
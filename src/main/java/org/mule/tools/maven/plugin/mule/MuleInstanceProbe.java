@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import org.mule.tck.probe.Probe;
+import org.mule.test.infrastructure.process.MuleProcessController;
+
+import java.io.File;
+
+/**
+ * Checks the state of a Mule Runtime Standalone instance by reading files instead of running its scripts. The instance is
+ * running when the process in its wrapper pid file is alive in <code>/proc</code> and runs from this MULE_HOME, so a pid
+ * reused by another process after a crash doesn't count. An application is deployed when its anchor file exists. Where
+ * <code>/proc</code> is not available the {@link MuleProcessController} is used.
+ */
+public class MuleInstanceProbe {
+
+  private final File muleHome;
+  private final MuleProcessController controller;
+  private final WrapperProcess process;
+
+  public MuleInstanceProbe(File muleHome, MuleProcessController controller) {
+    this.muleHome = muleHome;
+    this.controller = controller;
+    this.process = new WrapperProcess(muleHome);
+  }
+
+  public boolean isRunning() {
+    if (!WrapperProcess.isProcAvailable()) {
+      return controller.isRunning();
+    }
+    return process.isAlive();
+  }
+
+  public boolean isDeployed(String applicationName) {
+    return new File(muleHome, "apps/" + applicationName + "-anchor.txt").exists() && isRunning();
+  }
+
+  /**
+   * @return A probe satisfied when the application is deployed.
+   */
+  public Probe deployed(final String applicationName) {
+    return new Probe() {
+
+      @Override
+      public boolean isSatisfied() {
+        return isDeployed(applicationName);
+      }
+
+      @Override
+      public String describeFailure() {
+        return "Application [" + applicationName + "] is not deployed in " + muleHome;
+      }
+    };
+  }
+}
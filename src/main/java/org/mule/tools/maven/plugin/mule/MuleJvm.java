@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The JVM a Mule Runtime Standalone instance runs on, which is not necessarily the one running the build. It is the
+ * <code>wrapper.java.command</code> of the instance, with <code>%VARIABLE%</code> references expanded from the environment,
+ * or the <code>java</code> of <code>JAVA_HOME</code> or the <code>PATH</code> when the command is just <code>java</code>.
+ */
+public class MuleJvm {
+
+  private static final Pattern COMMAND = Pattern.compile("^\\s*wrapper\\.java\\.command\\s*=\\s*(.*?)\\s*$");
+  private static final Pattern VARIABLE = Pattern.compile("%(\\w+)%");
+  private static final Pattern RELEASE_VERSION = Pattern.compile("^JAVA_VERSION=\"?([^\"]+)\"?\\s*$");
+  private static final Pattern OUTPUT_VERSION = Pattern.compile("version \"([^\"]+)\"");
+  private static final long VERSION_TIMEOUT = 10000;
+
+  private final File command;
+  private final String version;
+
+  MuleJvm(File command, String version) {
+    this.command = command;
+    this.version = version;
+  }
+
+  public static MuleJvm detect(File muleHome) {
+    return detect(muleHome, System.getenv());
+  }
+
+  static MuleJvm detect(File muleHome, Map<String, String> environment) {
+    File command = resolveCommand(readCommand(muleHome), environment);
+    return new MuleJvm(command, command == null ? null : readVersion(command));
+  }
+
+  /**
+   * @return The java executable, or null if it can't be found.
+   */
+  public File getCommand() {
+    return command;
+  }
+
+  /**
+   * @return The full version of the JVM, such as <code>1.8.0_292</code> or <code>17.0.2</code>, or null if unknown.
+   */
+  public String getVersion() {
+    return version;
+  }
+
+  /**
+   * @return The feature version of the JVM (8, 11, 17...), or null if unknown.
+   */
+  public Integer getJavaVersion() {
+    return version == null ? null : HostResources.parseJavaVersion(version);
+  }
+
+  private static String readCommand(File muleHome) {
+    File wrapperConf = new File(muleHome, WrapperConfigurator.WRAPPER_CONF);
+    String command = "java";
+    if (!wrapperConf.isFile()) {
+      return command;
+    }
+    try {
+      // The wrapper takes the last value of a property
+      for (String line : Files.readAllLines(wrapperConf.toPath(), ISO_8859_1)) {
+        Matcher matcher = COMMAND.matcher(line);
+        if (matcher.matches()) {
+          command = matcher.group(1);
+        }
+      }
+    } catch (IOException e) {
+      // Use the default command of the wrapper
+    }
+    return command;
+  }
+
+  private static File resolveCommand(String command, Map<String, String> environment) {
+    StringBuffer expanded = new StringBuffer();
+    Matcher matcher = VARIABLE.matcher(command);
+    while (matcher.find()) {
+      String value = environment.get(matcher.group(1));
+      if (value == null) {
+        return null;
+      }
+      matcher.appendReplacement(expanded, Matcher.quoteReplacement(value));
+    }
+    matcher.appendTail(expanded);
+    File file = new File(expanded.toString());
+    if (file.isAbsolute() || expanded.indexOf(File.separator) != -1) {
+      return file.isFile() ? file : null;
+    }
+    // JAVA_HOME first, then the PATH
+    String javaHome = environment.get("JAVA_HOME");
+    if (javaHome != null) {
+      File javaHomeCommand = findExecutable(new File(javaHome, "bin"), file.getName());
+      if (javaHomeCommand != null) {
+        return javaHomeCommand;
+      }
+    }
+    String path = environment.get("PATH");
+    if (path != null) {
+      for (String directory : path.split(File.pathSeparator)) {
+        File pathCommand = findExecutable(new File(directory), file.getName());
+        if (pathCommand != null) {
+          return pathCommand;
+        }
+      }
+    }
+    return null;
+  }
+
+  private static File findExecutable(File directory, String name) {
+    for (String candidate : new String[] {name, name + ".exe"}) {
+      File file = new File(directory, candidate);
+      if (file.isFile()) {
+        return file;
+      }
+    }
+    return null;
+  }
+
+  private static String readVersion(File command) {
+    try {
+      // bin/java of the JDK, or of the JRE inside a JDK 8, possibly reached through links such as /usr/bin/java
+      File home = command.toPath().toRealPath().toFile().getParentFile().getParentFile();
+      for (int i = 0; i < 2 && home != null; i++, home = home.getParentFile()) {
+        String version = readReleaseVersion(new File(home, "release"));
+        if (version != null) {
+          return version;
+        }
+      }
+    } catch (IOException e) {
+      // Ask the JVM
+    }
+    return runVersion(command);
+  }
+
+  private static String readReleaseVersion(File release) throws IOException {
+    if (!release.isFile()) {
+      return null;
+    }
+    for (String line : Files.readAllLines(release.toPath(), ISO_8859_1)) {
+      Matcher matcher = RELEASE_VERSION.matcher(line);
+      if (matcher.matches()) {
+        return matcher.group(1);
+      }
+    }
+    return null;
+  }
+
+  private static String runVersion(File command) {
+    try {
+      Process process = new ProcessBuilder(command.getAbsolutePath(), "-version").redirectErrorStream(true).start();
+      try (InputStream output = process.getInputStream()) {
+        if (!process.waitFor(VERSION_TIMEOUT, TimeUnit.MILLISECONDS)) {
+          return null;
+        }
+        Matcher matcher = OUTPUT_VERSION.matcher(IOUtils.toString(output, ISO_8859_1));
+        return matcher.find() ? matcher.group(1) : null;
+      } finally {
+        process.destroy();
+      }
+    } catch (IOException e) {
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  public String toString() {
+    return command + (version == null ? "" : " " + version);
+  }
+}
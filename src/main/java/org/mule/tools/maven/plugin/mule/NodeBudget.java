@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+/**
+ * Share of the host cores and memory given to each Mule Runtime instance when several of them run on the same host, so
+ * nodes don't size their heaps, garbage collector and compiler threads as if each one had the whole host.
+ */
+public class NodeBudget {
+
+  /**
+   * Heap of Mule Runtime instances when the wrapper configuration doesn't set one, in megabytes.
+   */
+  public static final int DEFAULT_HEAP = 1024;
+
+  /**
+   * Smallest heap a Mule Runtime instance can run with, in megabytes.
+   */
+  public static final int MINIMUM_HEAP = 256;
+
+  private final HostResources host;
+  private final int nodes;
+
+  public NodeBudget(HostResources host, int nodes) {
+    this.host = host;
+    this.nodes = Math.max(1, nodes);
+  }
+
+  /**
+   * @return The cores each node may use.
+   */
+  public int getProcessors() {
+    return Math.max(1, host.getProcessors() / nodes);
+  }
+
+  /**
+   * @return The heap each node may use, in megabytes: three quarters of the host memory shared among the nodes.
+   */
+  public int getMaximumHeap() {
+    return (int) Math.min(DEFAULT_HEAP, host.getTotalMemoryMegabytes() * 3 / 4 / nodes);
+  }
+
+  /**
+   * @param minimumHeap Heap each node needs, in megabytes.
+   * @return The reason the nodes don't fit in the host memory, or null if they fit.
+   */
+  public String checkMemory(int minimumHeap) {
+    long required = (long) minimumHeap * nodes;
+    if (required > host.getTotalMemoryMegabytes()) {
+      return String.format("%d nodes need at least %dMB of heap but the host has %dMB", nodes, required,
+                           host.getTotalMemoryMegabytes());
+    }
+    return null;
+  }
+
+  /**
+   * @return true if there are more nodes than cores.
+   */
+  public boolean isOversubscribed() {
+    return nodes > host.getProcessors();
+  }
+
+  /**
+   * Limits heap (unless already set) and processors of the node. Nothing is added when the node gets the whole host, so
+   * the wrapper configuration is left untouched.
+   */
+  public WrapperConfiguration configure(WrapperConfiguration configuration) {
+    if (nodes == 1) {
+      return configuration;
+    }
+    if (configuration.getMaximumMemory() == null && getMaximumHeap() < DEFAULT_HEAP) {
+      int heap = Math.max(MINIMUM_HEAP, getMaximumHeap());
+      configuration.setInitialMemory(heap).setMaximumMemory(heap);
+    }
+    int processors = getProcessors();
+    if (processors >= host.getProcessors()) {
+      return configuration;
+    }
+    if (host.getJavaVersion() >= 10) {
+      configuration.addJvmOption("-XX:ActiveProcessorCount=" + processors);
+    } else {
+      configuration.addJvmOption("-XX:ParallelGCThreads=" + processors)
+          .addJvmOption("-XX:ConcGCThreads=" + Math.max(1, (processors + 3) / 4));
+    }
+    return configuration;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d core(s) and %dMB heap for each of %d nodes", getProcessors(), getMaximumHeap(), nodes);
+  }
+}
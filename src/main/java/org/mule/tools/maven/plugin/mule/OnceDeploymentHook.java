@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Runs each {@link HookPoint} of another hook at most once, however many times deployers reach it. A deployment shares one
+ * instance among the mojo and its deployers, so a hook point is never run twice when both call it, and the redeployments
+ * of the watch goal don't run the hooks of the initial deployment again.
+ */
+public class OnceDeploymentHook implements DeploymentHook {
+
+  private final DeploymentHook hook;
+  private final Set<HookPoint> executed = EnumSet.noneOf(HookPoint.class);
+
+  public OnceDeploymentHook(DeploymentHook hook) {
+    this.hook = hook;
+  }
+
+  @Override
+  public synchronized void execute(HookPoint hookPoint) throws MojoExecutionException {
+    if (executed.add(hookPoint)) {
+      hook.execute(hookPoint);
+    }
+  }
+}
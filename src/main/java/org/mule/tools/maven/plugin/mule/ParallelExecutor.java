@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs independent tasks concurrently on a bounded pool of daemon threads and waits for all of them, or starts asynchronous
+ * tasks from the calling thread and waits for their results.
+ */
+public class ParallelExecutor {
+
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+  private ParallelExecutor() {}
+
+  /**
+   * Runs the tasks with at most <code>threads</code> of them at the same time.
+   *
+   * @return The results, in the same order as the tasks.
+   * @throws ExecutionException With the failure of the first failed task, after all tasks finished.
+   */
+  public static <T> List<T> invokeAll(int threads, List<? extends Callable<T>> tasks)
+      throws ExecutionException, InterruptedException {
+    List<T> results = new ArrayList<>(tasks.size());
+    if (threads <= 1 || tasks.size() <= 1) {
+      for (Callable<T> task : tasks) {
+        try {
+          results.add(task.call());
+        } catch (Exception e) {
+          throw new ExecutionException(e);
+        }
+      }
+      return results;
+    }
+    ExecutorService executor = newExecutor(Math.min(threads, tasks.size()));
+    try {
+      List<Future<T>> futures = executor.invokeAll(tasks);
+      ExecutionException failure = null;
+      for (Future<T> future : futures) {
+        try {
+          results.add(future.get());
+        } catch (ExecutionException e) {
+          failure = failure == null ? e : failure;
+          results.add(null);
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      return results;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Starts the asynchronous task for every key, with at most <code>limit</code> of them in flight, and waits for all of them.
+   * No thread is used other than the calling one and the ones completing the tasks, such as those of an HTTP client.
+   *
+   * @param failures Where the failures of the keys whose task failed are added.
+   * @return The results of the keys whose task succeeded, in the order of the keys.
+   */
+  public static <K, T> Map<K, T> invokeAllAsync(Collection<K> keys, int limit, AsyncTask<K, T> task, Map<K, Throwable> failures)
+      throws InterruptedException {
+    final Semaphore permits = new Semaphore(Math.max(1, limit));
+    Map<K, CompletableFuture<T>> futures = new LinkedHashMap<>();
+    for (K key : keys) {
+      permits.acquire();
+      CompletableFuture<T> future;
+      try {
+        future = task.start(key);
+      } catch (RuntimeException e) {
+        future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+      }
+      future.whenComplete(new BiConsumer<T, Throwable>() {
+
+        @Override
+        public void accept(T result, Throwable failure) {
+          permits.release();
+        }
+      });
+      futures.put(key, future);
+    }
+    Map<K, T> results = new LinkedHashMap<>();
+    for (Map.Entry<K, CompletableFuture<T>> future : futures.entrySet()) {
+      try {
+        results.put(future.getKey(), future.getValue().get());
+      } catch (ExecutionException e) {
+        failures.put(future.getKey(), e.getCause());
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Runs file system tasks with {@link #defaultThreads()} threads.
+   *
+   * @throws IOException The failure of the first failed task.
+   */
+  public static <T> List<T> invokeAllFileTasks(List<? extends Callable<T>> tasks) throws IOException {
+    try {
+      return invokeAll(defaultThreads(), tasks);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for file tasks", e);
+    }
+  }
+
+  /**
+   * @return The number of threads to use for CPU or local disk bound tasks.
+   */
+  public static int defaultThreads() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Creates a pool of daemon threads, so pending background work never keeps the build from finishing.
+   */
+  public static ExecutorService newExecutor(int threads) {
+    return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "mule-maven-plugin-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * A task that completes asynchronously, such as an HTTP request.
+   */
+  public interface AsyncTask<K, T> {
+
+    CompletableFuture<T> start(K key);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * JVM tuning presets for the Mule Runtime Standalone instances started by the plugin.
+ */
+public enum PerformanceProfile {
+
+  /**
+   * Small fixed heap, serial collector and C1 only compilation: the JVM is ready as soon as possible, good for short
+   * integration test runs.
+   */
+  fastStartup(8, 256, 1024, true, "-XX:+UseSerialGC", "-XX:TieredStopAtLevel=1"),
+
+  /**
+   * Large fixed heap, parallel collector and full tiered compilation, for load or long running tests.
+   */
+  throughput(2, 512, 8192, true, "-XX:+UseParallelGC", "-XX:+TieredCompilation"),
+
+  /**
+   * Minimal footprint, for hosts running many instances at the same time.
+   */
+  lowMemory(16, 128, 512, false, "-XX:+UseSerialGC", "-XX:TieredStopAtLevel=1", "-XX:ReservedCodeCacheSize=64m",
+      "-Xss512k");
+
+  private final int hostMemoryDivisor;
+  private final int minimumHeap;
+  private final int maximumHeap;
+  private final boolean fixedHeap;
+  private final List<String> jvmOptions;
+
+  PerformanceProfile(int hostMemoryDivisor, int minimumHeap, int maximumHeap, boolean fixedHeap, String... jvmOptions) {
+    this.hostMemoryDivisor = hostMemoryDivisor;
+    this.minimumHeap = minimumHeap;
+    this.maximumHeap = maximumHeap;
+    this.fixedHeap = fixedHeap;
+    this.jvmOptions = Arrays.asList(jvmOptions);
+  }
+
+  /**
+   * Computes the maximum heap for each Mule instance, sharing this profile's slice of the host memory among all the nodes
+   * started on the host.
+   *
+   * @param host The host resources.
+   * @param nodesOnHost Number of Mule instances started on this host.
+   * @return The maximum heap in megabytes.
+   */
+  public int getMaximumHeap(HostResources host, int nodesOnHost) {
+    long heap = host.getTotalMemoryMegabytes() / hostMemoryDivisor / Math.max(1, nodesOnHost);
+    return (int) Math.max(minimumHeap, Math.min(maximumHeap, heap));
+  }
+
+  /**
+   * @return The initial heap in megabytes.
+   */
+  public int getInitialHeap(HostResources host, int nodesOnHost) {
+    return fixedHeap ? getMaximumHeap(host, nodesOnHost) : minimumHeap;
+  }
+
+  /**
+   * @return The minimum heap this profile needs for each instance, in megabytes.
+   */
+  public int getMinimumHeap() {
+    return minimumHeap;
+  }
+
+  public List<String> getJvmOptions() {
+    return jvmOptions;
+  }
+
+  /**
+   * Builds the wrapper configuration for this profile.
+   *
+   * @param host The host resources.
+   * @param nodesOnHost Number of Mule instances started on this host.
+   */
+  public WrapperConfiguration toWrapperConfiguration(HostResources host, int nodesOnHost) {
+    WrapperConfiguration configuration = new WrapperConfiguration()
+        .setInitialMemory(getInitialHeap(host, nodesOnHost))
+        .setMaximumMemory(getMaximumHeap(host, nodesOnHost));
+    for (String option : jvmOptions) {
+      configuration.addJvmOption(option);
+    }
+    return configuration.addJvmOption("-Xshare:auto");
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import java.util.Properties;
+
+/**
+ * Range of consecutive ports reserved for one Mule Runtime instance by {@link PortAllocator}.
+ */
+public class PortAllocation {
+
+  public static final String BASE_PORT_PROPERTY = "mule.ports.base";
+  public static final String PORT_COUNT_PROPERTY = "mule.ports.count";
+
+  private final int basePort;
+  private final int count;
+
+  public PortAllocation(int basePort, int count) {
+    this.basePort = basePort;
+    this.count = count;
+  }
+
+  public int getBasePort() {
+    return basePort;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public int getHttpPort() {
+    return basePort;
+  }
+
+  public int getHttpsPort() {
+    return basePort + 1;
+  }
+
+  /**
+   * @return Port for the cluster (Hazelcast) member of the instance.
+   */
+  public int getClusterPort() {
+    return basePort + 2;
+  }
+
+  public int getWrapperPort() {
+    return basePort + 3;
+  }
+
+  /**
+   * @return Port the Mule Runtime JVM uses to talk to the wrapper.
+   */
+  public int getJvmPort() {
+    return basePort + 4;
+  }
+
+  /**
+   * Passes the ports to the Mule Runtime JVM as <code>http.port</code>, <code>https.port</code>, <code>mule.cluster.port</code>,
+   * <code>mule.ports.base</code> and <code>mule.ports.count</code> system properties, and configures the wrapper ports.
+   */
+  public WrapperConfiguration configure(WrapperConfiguration configuration) {
+    return configuration.addJvmOption("-Dhttp.port=" + getHttpPort())
+        .addJvmOption("-Dhttps.port=" + getHttpsPort())
+        .addJvmOption("-D" + ClusterConfigurator.CLUSTER_PORT_PROPERTY + "=" + getClusterPort())
+        .addJvmOption("-D" + BASE_PORT_PROPERTY + "=" + basePort)
+        .addJvmOption("-D" + PORT_COUNT_PROPERTY + "=" + count)
+        .setWrapperProperty("wrapper.port", String.valueOf(getWrapperPort()))
+        .setWrapperProperty("wrapper.jvm.port.min", String.valueOf(getJvmPort()))
+        .setWrapperProperty("wrapper.jvm.port.max", String.valueOf(getJvmPort()));
+  }
+
+  public Properties toProperties() {
+    Properties properties = new Properties();
+    properties.setProperty(BASE_PORT_PROPERTY, String.valueOf(basePort));
+    properties.setProperty(PORT_COUNT_PROPERTY, String.valueOf(count));
+    properties.setProperty("http.port", String.valueOf(getHttpPort()));
+    properties.setProperty("https.port", String.valueOf(getHttpsPort()));
+    properties.setProperty(ClusterConfigurator.CLUSTER_PORT_PROPERTY, String.valueOf(getClusterPort()));
+    properties.setProperty("wrapper.port", String.valueOf(getWrapperPort()));
+    properties.setProperty("wrapper.jvm.port", String.valueOf(getJvmPort()));
+    return properties;
+  }
+
+  /**
+   * @return The allocation stored in the properties, or null if they don't have one.
+   */
+  public static PortAllocation fromProperties(Properties properties) {
+    String base = properties.getProperty(BASE_PORT_PROPERTY);
+    String count = properties.getProperty(PORT_COUNT_PROPERTY);
+    if (base == null || count == null) {
+      return null;
+    }
+    try {
+      return new PortAllocation(Integer.parseInt(base.trim()), Integer.parseInt(count.trim()));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return basePort + "-" + (basePort + count - 1);
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Reserves port ranges for Mule Runtime instances, so several builds can run instances on the same host without
+ * colliding. A range is reserved by creating a lock file, named after its first port, in a directory shared by all builds
+ * of the host. The lock file holds the MULE_HOME of the instance, which records its range in
+ * <code>MULE_HOME/.mule/ports.properties</code>. Ranges are released on undeploy; ranges whose MULE_HOME was deleted or
+ * moved to another range are stale and reclaimed.
+ */
+public class PortAllocator {
+
+  public static final int DEFAULT_RANGE_START = 20000;
+  public static final int DEFAULT_RANGE_END = 29999;
+  public static final int BLOCK_SIZE = 8;
+  public static final String PORTS_FILE = ".mule/ports.properties";
+
+  private static final long STALE_GRACE_PERIOD = 60000;
+
+  private final Log log;
+  private final File lockDirectory;
+  private final int rangeStart;
+  private final int rangeEnd;
+
+  public PortAllocator(Log log) {
+    this(log, DEFAULT_RANGE_START, DEFAULT_RANGE_END);
+  }
+
+  public PortAllocator(Log log, int rangeStart, int rangeEnd) {
+    this(log, new File(System.getProperty("java.io.tmpdir"), "mule-maven-plugin-ports"), rangeStart, rangeEnd);
+  }
+
+  PortAllocator(Log log, File lockDirectory, int rangeStart, int rangeEnd) {
+    this.log = log;
+    this.lockDirectory = lockDirectory;
+    this.rangeStart = rangeStart;
+    this.rangeEnd = rangeEnd;
+  }
+
+  /**
+   * Reserves a range of {@link #BLOCK_SIZE} ports for the instance, or returns the range it already has.
+   */
+  public synchronized PortAllocation allocate(File muleHome) throws IOException {
+    String owner = muleHome.getAbsolutePath();
+    PortAllocation current = read(muleHome);
+    if (current != null && owner.equals(readOwner(lockFile(current.getBasePort())))) {
+      log.debug("Reusing ports " + current + " for " + muleHome);
+      return current;
+    }
+    Files.createDirectories(lockDirectory.toPath());
+    for (int base = rangeStart; base + BLOCK_SIZE - 1 <= rangeEnd; base += BLOCK_SIZE) {
+      Path lock = lockFile(base);
+      if (Files.exists(lock) && !reclaimIfStale(lock, base)) {
+        continue;
+      }
+      try {
+        Files.write(lock, owner.getBytes(UTF_8), CREATE_NEW, WRITE);
+      } catch (FileAlreadyExistsException e) {
+        continue;
+      }
+      if (!areFree(base, BLOCK_SIZE)) {
+        Files.deleteIfExists(lock);
+        continue;
+      }
+      PortAllocation allocation = new PortAllocation(base, BLOCK_SIZE);
+      write(muleHome, allocation);
+      log.debug("Allocated ports " + allocation + " for " + muleHome);
+      return allocation;
+    }
+    throw new IOException("No free range of " + BLOCK_SIZE + " ports between " + rangeStart + " and " + rangeEnd);
+  }
+
+  /**
+   * Releases the range reserved for the instance, if any.
+   */
+  public synchronized void release(File muleHome) throws IOException {
+    PortAllocation allocation = read(muleHome);
+    if (allocation == null) {
+      return;
+    }
+    Path lock = lockFile(allocation.getBasePort());
+    if (muleHome.getAbsolutePath().equals(readOwner(lock))) {
+      Files.deleteIfExists(lock);
+      log.debug("Released ports " + allocation + " of " + muleHome);
+    }
+    Files.deleteIfExists(new File(muleHome, PORTS_FILE).toPath());
+  }
+
+  /**
+   * @return The range recorded in the MULE_HOME, or null if it has none.
+   */
+  public static PortAllocation read(File muleHome) throws IOException {
+    File file = new File(muleHome, PORTS_FILE);
+    if (!file.isFile()) {
+      return null;
+    }
+    Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(file.toPath())) {
+      properties.load(in);
+    }
+    return PortAllocation.fromProperties(properties);
+  }
+
+  private void write(File muleHome, PortAllocation allocation) throws IOException {
+    File file = new File(muleHome, PORTS_FILE);
+    Files.createDirectories(file.getParentFile().toPath());
+    try (OutputStream out = Files.newOutputStream(file.toPath())) {
+      allocation.toProperties().store(out, "Ports allocated by mule-maven-plugin");
+    }
+  }
+
+  /**
+   * Deletes the lock if its instance no longer uses the range. The lock is renamed before being deleted, so only one
+   * build reclaims it.
+   */
+  private boolean reclaimIfStale(Path lock, int base) throws IOException {
+    String owner = readOwner(lock);
+    if (owner == null || System.currentTimeMillis() - Files.getLastModifiedTime(lock).toMillis() < STALE_GRACE_PERIOD) {
+      return false;
+    }
+    File ownerHome = new File(owner);
+    PortAllocation ownerAllocation = ownerHome.isDirectory() ? read(ownerHome) : null;
+    if (ownerAllocation != null && ownerAllocation.getBasePort() == base) {
+      return false;
+    }
+    Path claimed = lock.resolveSibling(lock.getFileName() + "." + UUID.randomUUID() + ".stale");
+    try {
+      Files.move(lock, claimed);
+    } catch (IOException e) {
+      return false;
+    }
+    if (!owner.equals(readOwner(claimed))) {
+      // Another build reclaimed and reserved the range in the meantime
+      try {
+        Files.move(claimed, lock);
+      } catch (IOException e) {
+        log.debug("Couldn't restore port lock " + lock + ": " + e.getMessage());
+      }
+      return false;
+    }
+    Files.deleteIfExists(claimed);
+    log.debug("Reclaimed stale port lock of " + owner);
+    return true;
+  }
+
+  private String readOwner(Path lock) {
+    try {
+      return new String(Files.readAllBytes(lock), UTF_8).trim();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private Path lockFile(int base) {
+    return new File(lockDirectory, base + ".lock").toPath();
+  }
+
+  /**
+   * @return true if all the ports can be bound.
+   */
+  static boolean areFree(int base, int count) {
+    for (int port = base; port < base + count; port++) {
+      try (ServerSocket socket = new ServerSocket()) {
+        socket.setReuseAddress(false);
+        socket.bind(new InetSocketAddress(port));
+      } catch (IOException e) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
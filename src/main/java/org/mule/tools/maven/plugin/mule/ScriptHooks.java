@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import java.io.File;
+
+/**
+ * Groovy scripts to run at each {@link HookPoint}.
+ */
+public class ScriptHooks {
+
+  private File preInstall;
+  private File postStart;
+  private File preDeploy;
+  private File postDeploy;
+
+  public File getScript(HookPoint hookPoint) {
+    switch (hookPoint) {
+      case preInstall:
+        return preInstall;
+      case postStart:
+        return postStart;
+      case preDeploy:
+        return preDeploy;
+      case postDeploy:
+        return postDeploy;
+      default:
+        return null;
+    }
+  }
+
+  public void setPreInstall(File preInstall) {
+    this.preInstall = preInstall;
+  }
+
+  public void setPostStart(File postStart) {
+    this.postStart = postStart;
+  }
+
+  public void setPreDeploy(File preDeploy) {
+    this.preDeploy = preDeploy;
+  }
+
+  public void setPostDeploy(File postDeploy) {
+    this.postDeploy = postDeploy;
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shares the result of a call among all the threads that make the same call while it is in flight. The first thread runs
+ * it and the others wait for its result, or its failure, instead of repeating it. Nothing is kept once the call completes.
+ * <p>
+ * Calls are recorded as <code>http.reads.count</code>, and the ones that waited for another thread as
+ * <code>http.reads.coalesced.count</code>.
+ */
+public class SingleFlight {
+
+  private static final SingleFlight INSTANCE = new SingleFlight();
+
+  private final ConcurrentMap<String, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+
+  /**
+   * @return The instance shared by the whole build.
+   */
+  public static SingleFlight getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Runs the call, or waits for the same call started by another thread.
+   *
+   * @param key Identifies the call, including everything its result depends on.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T execute(String key, Callable<T> call, DeploymentMetrics metrics) {
+    metrics.increment("http.reads.count");
+    CompletableFuture<Object> flight = new CompletableFuture<>();
+    CompletableFuture<Object> current = calls.putIfAbsent(key, flight);
+    if (current != null) {
+      metrics.increment("http.reads.coalesced.count");
+      try {
+        return (T) current.join();
+      } catch (CompletionException e) {
+        throw propagate(e.getCause());
+      }
+    }
+    try {
+      T result = call.call();
+      flight.complete(result);
+      return result;
+    } catch (Exception e) {
+      flight.completeExceptionally(e);
+      throw propagate(e);
+    } catch (Error e) {
+      flight.completeExceptionally(e);
+      throw e;
+    } finally {
+      calls.remove(key, flight);
+    }
+  }
+
+  private static RuntimeException propagate(Throwable cause) {
+    if (cause instanceof RuntimeException) {
+      return (RuntimeException) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    return new IllegalStateException(cause);
+  }
+}
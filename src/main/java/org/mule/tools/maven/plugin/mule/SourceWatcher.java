@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Watches source directories and mirrors their changes into target directories. Changes are batched until there are none
+ * for <code>debounce</code> milliseconds, subdirectories are watched as they are created, and all the sources are mirrored
+ * again when the watch service loses events. Hidden files and editor backups are ignored.
+ */
+class SourceWatcher {
+
+  private final WatchService watchService;
+  private final FileStager stager;
+  private final long debounce;
+  private final Log log;
+  private final Map<Path, Path> roots = new LinkedHashMap<>();
+  private final Map<WatchKey, Path[]> watchedDirectories = new HashMap<>();
+
+  SourceWatcher(WatchService watchService, FileStager stager, long debounce, Log log) {
+    this.watchService = watchService;
+    this.stager = stager;
+    this.debounce = debounce;
+    this.log = log;
+  }
+
+  /**
+   * Watches the source directory and its subdirectories, if it exists, mirroring them into the target directory.
+   */
+  void watch(Path source, Path target) throws IOException {
+    roots.put(source, target);
+    registerTree(source, target);
+  }
+
+  /**
+   * Mirrors all the files of the watched directories.
+   */
+  void mirrorAll() throws IOException {
+    for (Map.Entry<Path, Path> root : roots.entrySet()) {
+      mirrorTree(root.getKey(), root.getValue());
+    }
+  }
+
+  /**
+   * Waits for a change, then collects the changes that follow it until there are none for <code>debounce</code>
+   * milliseconds.
+   */
+  Changes awaitChanges() throws InterruptedException {
+    Changes changes = new Changes();
+    collect(watchService.take(), changes);
+    for (WatchKey key = watchService.poll(debounce, TimeUnit.MILLISECONDS); key != null;
+        key = watchService.poll(debounce, TimeUnit.MILLISECONDS)) {
+      collect(key, changes);
+    }
+    return changes;
+  }
+
+  /**
+   * Writes the changes to the target directories.
+   */
+  void apply(Changes changes) throws IOException {
+    if (changes.resync) {
+      log.debug("Too many changes, synchronizing all sources");
+      mirrorAll();
+    }
+    for (Map.Entry<Path, Path> change : changes.files.entrySet()) {
+      if (Files.isDirectory(change.getKey())) {
+        mirrorTree(change.getKey(), change.getValue());
+      } else {
+        mirror(change.getKey(), change.getValue());
+      }
+    }
+  }
+
+  /**
+   * Registers the directory with the watch service.
+   */
+  WatchKey register(Path directory) throws IOException {
+    return directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+  }
+
+  private void collect(WatchKey key, Changes changes) {
+    Path[] directories = watchedDirectories.get(key);
+    try {
+      for (WatchEvent<?> event : key.pollEvents()) {
+        if (event.kind() == OVERFLOW) {
+          changes.resync = true;
+          continue;
+        }
+        Path name = (Path) event.context();
+        if (directories == null || isIgnored(name)) {
+          continue;
+        }
+        Path source = directories[0].resolve(name);
+        Path target = directories[1].resolve(name);
+        if (event.kind() == ENTRY_CREATE && Files.isDirectory(source)) {
+          try {
+            registerTree(source, target);
+          } catch (IOException e) {
+            log.debug("Couldn't watch " + source + ": " + e.getMessage());
+          }
+        }
+        changes.files.put(source, target);
+      }
+    } finally {
+      if (!key.reset()) {
+        watchedDirectories.remove(key);
+      }
+    }
+  }
+
+  private void registerTree(final Path source, final Path target) throws IOException {
+    if (!Files.isDirectory(source)) {
+      return;
+    }
+    Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+        Path directoryTarget = target.resolve(source.relativize(directory).toString());
+        watchedDirectories.put(register(directory), new Path[] {directory, directoryTarget});
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private void mirrorTree(final Path source, final Path target) throws IOException {
+    if (!Files.isDirectory(source)) {
+      return;
+    }
+    Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+        if (!isIgnored(file.getFileName())) {
+          mirror(file, target.resolve(source.relativize(file).toString()));
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private void mirror(Path source, Path target) throws IOException {
+    if (Files.isDirectory(source)) {
+      Files.createDirectories(target);
+    } else if (Files.isRegularFile(source)) {
+      Files.createDirectories(target.getParent());
+      Files.deleteIfExists(target);
+      stager.stage(source, target);
+    } else {
+      FileUtils.deleteQuietly(target.toFile());
+    }
+  }
+
+  /**
+   * Ignores hidden files and editor backups.
+   */
+  private static boolean isIgnored(Path name) {
+    String fileName = name.toString();
+    return fileName.startsWith(".") || fileName.endsWith("~");
+  }
+
+  /**
+   * A batch of changes: the changed files and directories, each with its target, and whether events were lost.
+   */
+  static class Changes {
+
+    final Map<Path, Path> files = new LinkedHashMap<>();
+    boolean resync;
+
+    int size() {
+      return files.size();
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs the steps of a deployment as a graph of stages, each one starting as soon as the stages it depends on are
+ * complete. Records the time of every stage as <code>&lt;prefix&gt;.&lt;stage&gt;.millis</code>, the sum of all of them as
+ * <code>&lt;prefix&gt;.stages.millis</code> and the longest chain of dependent stages as
+ * <code>&lt;prefix&gt;.critical.path.millis</code>.
+ */
+public class StageGraph implements AutoCloseable {
+
+  private final ExecutorService executor;
+  private final DeploymentMetrics metrics;
+  private final String prefix;
+  private final AtomicLong totalNanos = new AtomicLong();
+
+  public StageGraph(String prefix, int threads, DeploymentMetrics metrics) {
+    this.prefix = prefix;
+    this.metrics = metrics;
+    this.executor = ParallelExecutor.newExecutor(threads);
+  }
+
+  /**
+   * Adds a stage that runs the task once all its dependencies completed successfully. If a dependency fails, the stage
+   * fails with the same cause without running.
+   */
+  public <T> Stage<T> add(final String name, final Callable<T> task, final Stage<?>... dependencies) {
+    final Stage<T> stage = new Stage<>();
+    CompletableFuture<?>[] futures = new CompletableFuture<?>[dependencies.length];
+    for (int i = 0; i < dependencies.length; i++) {
+      futures[i] = dependencies[i].future;
+    }
+    CompletableFuture.allOf(futures).whenCompleteAsync(new BiConsumer<Void, Throwable>() {
+
+      @Override
+      public void accept(Void ignored, Throwable failure) {
+        if (failure != null) {
+          stage.future.completeExceptionally(failure instanceof CompletionException ? failure.getCause() : failure);
+          return;
+        }
+        long start = System.nanoTime();
+        try {
+          T value = task.call();
+          long nanos = System.nanoTime() - start;
+          metrics.record(prefix + "." + name + ".millis", NANOSECONDS.toMillis(nanos));
+          totalNanos.addAndGet(nanos);
+          long longest = 0;
+          for (Stage<?> dependency : dependencies) {
+            longest = Math.max(longest, dependency.pathNanos);
+          }
+          stage.pathNanos = longest + nanos;
+          stage.future.complete(value);
+        } catch (Throwable e) {
+          stage.future.completeExceptionally(e);
+        }
+      }
+    }, executor);
+    return stage;
+  }
+
+  /**
+   * Waits for a stage and records the critical path that led to it.
+   *
+   * @throws DeploymentException When the stage or any stage it depends on fails with a checked exception.
+   */
+  public <T> T await(Stage<T> stage) throws DeploymentException {
+    try {
+      T value = stage.future.join();
+      metrics.record(prefix + ".critical.path.millis", NANOSECONDS.toMillis(stage.pathNanos));
+      metrics.record(prefix + ".stages.millis", NANOSECONDS.toMillis(totalNanos.get()));
+      return value;
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof DeploymentException) {
+        throw (DeploymentException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new DeploymentException(cause.getMessage(), (Exception) cause);
+    }
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Result of a stage.
+   */
+  public static class Stage<T> {
+
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+    private volatile long pathNanos;
+
+    /**
+     * @return The result of this stage, to be called from the stages that depend on it.
+     */
+    public T get() {
+      return future.join();
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * Last measurements of each way of starting a Mule Runtime Standalone instance, so they can be compared by later executions.
+ * They are kept outside MULE_HOME, which is replaced whenever the distribution is extracted again, in a file per MULE_HOME.
+ */
+public class StartupTimings {
+
+  public static final String SEQUENTIAL = "sequential";
+  public static final String COLD_START = "coldStart";
+  public static final String EMBEDDED = "embedded";
+
+  private final File file;
+  private final Properties timings = new Properties();
+
+  /**
+   * @param directory Where the timings are kept, such as the directory of the Mule distribution in the local repository.
+   */
+  public StartupTimings(File directory, File muleHome) throws IOException {
+    String name = String.format("startup-%s-%08x.properties", muleHome.getName(), muleHome.getAbsolutePath().hashCode())
+        .replaceAll("[^\\w.-]", "_");
+    this.file = new File(directory, name);
+    if (file.exists()) {
+      try (InputStream stream = new FileInputStream(file)) {
+        timings.load(stream);
+      }
+    }
+  }
+
+  /**
+   * @return The last time Mule Runtime took to start and deploy the application in the mode, or null if not measured.
+   */
+  public Long getReadyMillis(String mode) {
+    String value = timings.getProperty(mode + ".ready.millis");
+    try {
+      return value == null ? null : Long.valueOf(value);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return How much faster than the last start in the baseline mode the start was, or null if the baseline is not measured.
+   */
+  public Long getSavedMillis(String baselineMode, long readyMillis) {
+    Long baseline = getReadyMillis(baselineMode);
+    return baseline == null ? null : baseline - readyMillis;
+  }
+
+  public void setReadyMillis(String mode, long readyMillis) throws IOException {
+    timings.setProperty(mode + ".ready.millis", Long.toString(readyMillis));
+    file.getParentFile().mkdirs();
+    try (OutputStream stream = new FileOutputStream(file)) {
+      timings.store(stream, "Mule Runtime startup and deployment times");
+    }
+  }
+}
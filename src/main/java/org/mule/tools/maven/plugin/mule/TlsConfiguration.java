@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * Trust store and key store used to connect to a server, instead of the JVM defaults.
+ */
+public class TlsConfiguration {
+
+  private File trustStore;
+  private String trustStorePassword;
+  private String trustStoreType = KeyStore.getDefaultType();
+  private File keyStore;
+  private String keyStorePassword;
+  private String keyStoreType = KeyStore.getDefaultType();
+
+  public TlsConfiguration setTrustStore(File trustStore, String password, String type) {
+    this.trustStore = trustStore;
+    this.trustStorePassword = password;
+    if (type != null) {
+      this.trustStoreType = type;
+    }
+    return this;
+  }
+
+  public TlsConfiguration setKeyStore(File keyStore, String password, String type) {
+    this.keyStore = keyStore;
+    this.keyStorePassword = password;
+    if (type != null) {
+      this.keyStoreType = type;
+    }
+    return this;
+  }
+
+  /**
+   * @return Whether the JVM default trust store and no client certificate are used.
+   */
+  public boolean isDefault() {
+    return trustStore == null && keyStore == null;
+  }
+
+  /**
+   * Creates a context trusting the certificates in the trust store and presenting the ones in the key store.
+   */
+  public SSLContext createContext() throws GeneralSecurityException, IOException {
+    TrustManager[] trustManagers = null;
+    if (trustStore != null) {
+      TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+      factory.init(load(trustStore, trustStorePassword, trustStoreType));
+      trustManagers = factory.getTrustManagers();
+    }
+    KeyManager[] keyManagers = null;
+    if (keyStore != null) {
+      KeyManagerFactory factory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+      factory.init(load(keyStore, keyStorePassword, keyStoreType), toChars(keyStorePassword));
+      keyManagers = factory.getKeyManagers();
+    }
+    SSLContext context = SSLContext.getInstance("TLS");
+    context.init(keyManagers, trustManagers, null);
+    return context;
+  }
+
+  /**
+   * @return What the context depends on, to tell configurations apart. Passwords are digested so the key doesn't hold them.
+   */
+  public String getKey() {
+    return getKey(trustStore, trustStoreType, trustStorePassword) + "|" + getKey(keyStore, keyStoreType, keyStorePassword);
+  }
+
+  private static String getKey(File store, String type, String password) {
+    return store == null ? "" : store.getAbsolutePath() + "|" + type + "|" + ApiSessionCache.digest(password);
+  }
+
+  private static KeyStore load(File file, String password, String type) throws GeneralSecurityException, IOException {
+    KeyStore store = KeyStore.getInstance(type);
+    try (InputStream stream = new FileInputStream(file)) {
+      store.load(stream, toChars(password));
+    }
+    return store;
+  }
+
+  private static char[] toChars(String password) {
+    return password == null ? null : password.toCharArray();
+  }
+
+  @Override
+  public String toString() {
+    return "trustStore=" + (trustStore == null ? null : trustStore.getAbsolutePath()) + ", keyStore="
+        + (keyStore == null ? null : keyStore.getAbsolutePath());
+  }
+}
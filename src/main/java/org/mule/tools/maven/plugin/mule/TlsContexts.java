@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.net.ssl.SSLContext;
+
+/**
+ * SSL contexts built once per host and configuration, including store types and passwords, and shared by all the executions of the build. Reusing a context also
+ * reuses its TLS session cache, so connections to a host resume the session instead of doing a full handshake.
+ */
+public class TlsContexts {
+
+  private static final ConcurrentMap<String, SSLContext> CONTEXTS = new ConcurrentHashMap<>();
+
+  private TlsContexts() {}
+
+  public static SSLContext get(String host, TlsConfiguration configuration) throws GeneralSecurityException, IOException {
+    String key = host + "|" + configuration.getKey();
+    SSLContext context = CONTEXTS.get(key);
+    if (context == null) {
+      synchronized (CONTEXTS) {
+        context = CONTEXTS.get(key);
+        if (context == null) {
+          context = configuration.createContext();
+          CONTEXTS.put(key, context);
+        }
+      }
+    }
+    return context;
+  }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+/**
+ * How CloudHub applications are undeployed.
+ */
+public enum UndeployMode {
+
+  /**
+   * Stops the application, keeping its domain and settings.
+   */
+  stop,
+
+  /**
+   * Deletes the application, releasing its workers and domain.
+   */
+  delete,
+
+  /**
+   * Deletes the application and waits until CloudHub no longer lists it, so its domain can be reused right away.
+   */
+  deleteAndWait
+}
@@ -8,11 +8,18 @@ package org.mule.tools.maven.plugin.mule;
 
 import org.apache.maven.plugins.annotations.Parameter;
 import org.mule.tools.maven.plugin.mule.agent.AgentApi;
+import org.mule.tools.maven.plugin.mule.agent.AgentDeployer;
 import org.mule.tools.maven.plugin.mule.arm.ArmApi;
 import org.mule.tools.maven.plugin.mule.cloudhub.CloudhubApi;
+import org.mule.tools.maven.plugin.mule.cloudhub.CloudhubUndeployer;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -37,9 +44,55 @@ public class UndeployMojo extends AbstractMuleMojo {
   @Parameter(defaultValue = "true")
   private boolean failIfNotExists;
 
+  /**
+   * Milliseconds Mule Runtime Standalone instances get to stop gracefully before they are killed.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "mule.stopTimeout", defaultValue = "30000")
+  protected long stopTimeout;
+
+  /**
+   * Names of the applications to undeploy from Mule Runtime Standalone instances, embedded Mule Runtime or CloudHub, instead of
+   * <code>applicationName</code>. Names can use <code>*</code> and <code>?</code> wildcards, for example
+   * <code>orders-*</code>. All the applications are undeployed in one pass and the instances are stopped once.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "mule.applicationNames")
+  protected List<String> applicationNames = new ArrayList<>();
+
+  /**
+   * How CloudHub applications are undeployed: <code>stop</code> keeps the application and its domain,
+   * <code>delete</code> releases its workers and domain, and <code>deleteAndWait</code> also waits until the application
+   * is gone, so its domain can be taken again right away.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "cloudhub.undeployMode", defaultValue = "stop")
+  protected UndeployMode undeployMode;
+
+  /**
+   * Number of CloudHub applications undeployed at the same time.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "cloudhub.undeployThreads", defaultValue = "8")
+  protected int undeployThreads;
+
+  /**
+   * Milliseconds to wait for each CloudHub application to be gone in <code>deleteAndWait</code> mode.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "cloudhub.undeployTimeout", defaultValue = "300000")
+  protected long undeployTimeout;
+
   @Override
   protected void doExecute() throws MojoExecutionException, MojoFailureException {
-    initializeApplication();
+    if (applicationNames.isEmpty() || !supportsApplicationNames()) {
+      initializeApplication();
+    }
     initializeEnvironment();
     switch (deploymentType) {
       case standalone:
@@ -57,37 +110,52 @@ public class UndeployMojo extends AbstractMuleMojo {
       case agent:
         agent();
         break;
+      case embedded:
+        embedded();
+        break;
       default:
         throw new MojoFailureException("Unsupported deployment type: " + deploymentType);
     }
   }
 
-  private void cloudhub() throws MojoFailureException {
-    CloudhubApi cloudhubApi = new CloudhubApi(uri, getLog(), username, password, environment, businessGroup);
-    cloudhubApi.init();
-    getLog().info("Stopping application " + applicationName);
-    cloudhubApi.stopApplication(applicationName);
+  private void cloudhub() throws MojoExecutionException {
+    List<String> names = applicationNames.isEmpty() ? Collections.singletonList(applicationName) : applicationNames;
+    try (CloudhubApi cloudhubApi = createCloudhubApi()) {
+      new CloudhubUndeployer(cloudhubApi, getLog(), names).setMode(undeployMode).setThreads(undeployThreads)
+          .setTimeout(undeployTimeout).setFailIfNotExists(failIfNotExists).setMetrics(metrics).execute();
+    }
   }
 
   private void arm() throws MojoFailureException {
-    ArmApi armApi = new ArmApi(getLog(), uri, username, password, environment, businessGroup, armInsecure);
-    armApi.init();
-    getLog().info("Undeploying application " + applicationName);
-    try {
-      armApi.undeployApplication(applicationName, targetType, target);
-    } catch (NotFoundException e) {
-      if (failIfNotExists) {
-        throw e;
-      } else {
-        getLog().warn("Application not found: " + applicationName);
+    try (ArmApi armApi = createArmApi()) {
+      armApi.init();
+      getLog().info("Undeploying application " + applicationName);
+      try {
+        armApi.undeployApplication(applicationName, targetType, target);
+      } catch (NotFoundException e) {
+        if (failIfNotExists) {
+          throw e;
+        } else {
+          getLog().warn("Application not found: " + applicationName);
+        }
       }
     }
   }
 
   private void agent() throws MojoFailureException {
-    AgentApi agentApi = new AgentApi(getLog(), uri);
-    getLog().info("Undeploying application " + applicationName);
-    agentApi.undeployApplication(applicationName);
+    List<AgentApi> agentApis = new ArrayList<>();
+    for (String agentUri : getAgentUris()) {
+      agentApis.add(createAgentApi(agentUri));
+    }
+    AgentDeployer deployer =
+        new AgentDeployer(getLog(), applicationName, null, agentApis.toArray(new AgentApi[agentApis.size()])).setMetrics(metrics);
+    try {
+      deployer.undeploy();
+    } catch (DeploymentException e) {
+      throw new MojoFailureException(e.getMessage(), e);
+    } finally {
+      deployer.close();
+    }
   }
 
   private void cluster() throws MojoFailureException, MojoExecutionException {
@@ -100,7 +168,7 @@ public class UndeployMojo extends AbstractMuleMojo {
         throw new MojoFailureException(muleHomes[i].getAbsolutePath() + "directory does not exist.");
       }
     }
-    new Undeployer(getLog(), applicationName, muleHomes).execute();
+    createUndeployer(muleHomes).execute();
   }
 
   public void standalone() throws MojoFailureException, MojoExecutionException {
@@ -108,7 +176,50 @@ public class UndeployMojo extends AbstractMuleMojo {
       throw new MojoFailureException("MULE_HOME directory does not exist.");
     }
     getLog().info("Using MULE_HOME: " + muleHome);
-    new Undeployer(getLog(), applicationName, muleHome).execute();
+    createUndeployer(muleHome).execute();
   }
 
+  /**
+   * Stops the embedded Mule Runtime, undeploying its applications, and removes the applications.
+   */
+  private void embedded() throws MojoFailureException, MojoExecutionException {
+    EmbeddedMule mule = EmbeddedMule.get(muleHome);
+    if (mule == null) {
+      if (failIfNotExists) {
+        throw new MojoFailureException("Embedded Mule Runtime is not running from " + muleHome);
+      }
+      getLog().warn("Embedded Mule Runtime is not running from " + muleHome);
+      return;
+    }
+    List<String> names = applicationNames.isEmpty() ? Collections.singletonList(applicationName) : applicationNames;
+    Map<String, List<File>> applications = Undeployer.findApplications(new File(muleHome, "apps"), names);
+    for (String pattern : names) {
+      if (!Undeployer.matchesAny(applications.keySet(), pattern)) {
+        if (failIfNotExists) {
+          throw new MojoExecutionException("Application " + pattern + " not found.");
+        }
+        getLog().warn("Application " + pattern + " not found in " + muleHome);
+      }
+    }
+    long start = System.nanoTime();
+    mule.stop();
+    metrics.elapsed("undeploy.millis", start);
+    for (List<File> files : applications.values()) {
+      for (File file : files) {
+        FileUtils.deleteQuietly(file);
+      }
+    }
+    metrics.add("undeploy.applications.count", applications.size());
+  }
+
+  private boolean supportsApplicationNames() {
+    return deploymentType == DeploymentType.standalone || deploymentType == DeploymentType.cluster
+        || deploymentType == DeploymentType.cloudhub || deploymentType == DeploymentType.embedded;
+  }
+
+  private Undeployer createUndeployer(File... muleHomes) {
+    List<String> names = applicationNames.isEmpty() ? Collections.singletonList(applicationName) : applicationNames;
+    return new Undeployer(getLog(), names, muleHomes).setFailIfNotExists(failIfNotExists).setStopTimeout(stopTimeout)
+        .setMetrics(metrics);
+  }
 }
@@ -7,62 +7,330 @@
 package org.mule.tools.maven.plugin.mule;
 
 import org.mule.test.infrastructure.process.MuleProcessController;
-import org.mule.util.FilenameUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 
 /**
- *
+ * Undeploys applications from Mule Runtime Standalone instances and stops them, all instances at the same time.
+ * Applications are named or matched with <code>*</code> and <code>?</code> wildcards, and found in a single pass over the
+ * apps directory. A running instance undeploys all of them at once, then gets <code>stopTimeout</code> milliseconds to
+ * stop gracefully before its processes are killed. Application files are moved to <code>MULE_HOME/.mule/trash</code> and
+ * deleted in the background; leftovers are deleted on later runs.
  */
 public class Undeployer {
 
+  public static final long DEFAULT_STOP_TIMEOUT = 30000;
+
+  private static final String TRASH = ".mule/trash";
+  private static final String ANCHOR_SUFFIX = "-anchor.txt";
+  private static final String ZIP_SUFFIX = ".zip";
+  private static final long POLLING_DELAY = 100;
+  private static final ExecutorService DELETER = ParallelExecutor.newExecutor(1);
+
   private List<File> muleHomes;
-  private String applicationName;
+  private List<String> applicationNames;
   private Log log;
+  private boolean failIfNotExists = true;
+  private long stopTimeout = DEFAULT_STOP_TIMEOUT;
+  private DeploymentMetrics metrics = new DeploymentMetrics();
 
   public Undeployer(Log log, String applicationName, File... muleHomes) {
+    this(log, Collections.singletonList(applicationName), muleHomes);
+  }
+
+  /**
+   * @param applicationNames Names of the applications, or patterns with <code>*</code> and <code>?</code> wildcards.
+   */
+  public Undeployer(Log log, List<String> applicationNames, File... muleHomes) {
     this.muleHomes = Arrays.asList(muleHomes);
-    this.applicationName = applicationName;
+    this.applicationNames = applicationNames;
     this.log = log;
   }
 
+  /**
+   * When set to false, names and patterns that match no application are logged instead of failing.
+   */
+  public Undeployer setFailIfNotExists(boolean failIfNotExists) {
+    this.failIfNotExists = failIfNotExists;
+    return this;
+  }
+
+  public Undeployer setStopTimeout(long stopTimeout) {
+    this.stopTimeout = stopTimeout;
+    return this;
+  }
+
+  public Undeployer setMetrics(DeploymentMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
   public void execute() throws MojoFailureException, MojoExecutionException {
-    for (File muleHome : muleHomes) {
-      log.info("Undeploying application " + applicationName + " from " + muleHome.getAbsolutePath());
-      undeploy(muleHome);
-      log.info("Application " + applicationName + " undeployed");
+    long start = System.nanoTime();
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (final File muleHome : muleHomes) {
+      tasks.add(new Callable<Void>() {
+
+        @Override
+        public Void call() throws Exception {
+          log.info("Undeploying applications " + applicationNames + " from " + muleHome.getAbsolutePath());
+          undeploy(muleHome);
 
-      log.info("Stopping Mule instance " + muleHome.getAbsolutePath());
-      MuleProcessController controller = new MuleProcessController(muleHome.getAbsolutePath());
-      controller.stop();
-      log.info("Mule instance stopped");
+          log.info("Stopping Mule instance " + muleHome.getAbsolutePath());
+          stop(muleHome);
+          log.info("Mule instance stopped");
+          releasePorts(muleHome);
+          return null;
+        }
+      });
+    }
+    try {
+      ParallelExecutor.invokeAll(tasks.size(), tasks);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof MojoExecutionException) {
+        throw (MojoExecutionException) e.getCause();
+      }
+      if (e.getCause() instanceof MojoFailureException) {
+        throw (MojoFailureException) e.getCause();
+      }
+      throw new MojoExecutionException("Unexpected error undeploying applications " + applicationNames, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Interrupted while undeploying applications " + applicationNames, e);
+    }
+    metrics.elapsed("undeploy.millis", start);
+  }
+
+  /**
+   * Stops the instance, killing its processes if it doesn't stop in <code>stopTimeout</code> milliseconds.
+   */
+  private void stop(File muleHome) throws MojoExecutionException {
+    final MuleProcessController controller = new MuleProcessController(muleHome.getAbsolutePath());
+    ExecutorService executor = ParallelExecutor.newExecutor(1);
+    boolean stopped = false;
+    try {
+      Future<?> stopping = executor.submit(new Runnable() {
+
+        @Override
+        public void run() {
+          controller.stop();
+        }
+      });
+      stopping.get(stopTimeout, TimeUnit.MILLISECONDS);
+      stopped = true;
+    } catch (TimeoutException e) {
+      log.warn("Mule instance " + muleHome + " didn't stop after " + stopTimeout + " ms");
+    } catch (ExecutionException e) {
+      log.warn("Couldn't stop Mule instance " + muleHome + ": " + e.getCause().getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Interrupted while stopping Mule instance " + muleHome, e);
+    } finally {
+      executor.shutdownNow();
+    }
+    WrapperProcess process = new WrapperProcess(muleHome);
+    if (!stopped && process.isAlive()) {
+      log.warn("Killing Mule instance " + muleHome);
+      try {
+        metrics.add("undeploy.killed.count", process.kill());
+      } catch (IOException e) {
+        throw new MojoExecutionException("Couldn't kill Mule instance " + muleHome, e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new MojoExecutionException("Interrupted while killing Mule instance " + muleHome, e);
+      }
+    }
+  }
+
+  /**
+   * Waits for the ports allocated to the instance to be free, then releases them.
+   */
+  private void releasePorts(File muleHome) {
+    try {
+      PortAllocation allocation = PortAllocator.read(muleHome);
+      if (allocation == null) {
+        return;
+      }
+      long deadline = System.currentTimeMillis() + stopTimeout;
+      while (!PortAllocator.areFree(allocation.getBasePort(), allocation.getCount())) {
+        if (System.currentTimeMillis() > deadline) {
+          log.warn("Ports " + allocation + " of " + muleHome + " are still in use");
+          break;
+        }
+        Thread.sleep(POLLING_DELAY);
+      }
+      new PortAllocator(log).release(muleHome);
+    } catch (IOException e) {
+      log.warn("Couldn't release ports of " + muleHome + ": " + e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
   }
 
   private void undeploy(File muleHome) throws MojoExecutionException {
     File appsDir = new File(muleHome + "/apps/");
+    File trash = new File(muleHome, TRASH);
+    emptyTrash(trash);
 
-    for (File file : appsDir.listFiles()) {
-      if (FilenameUtils.getBaseName(file.getName()).equals(applicationName)) {
+    Map<String, List<File>> applications = findApplications(appsDir, applicationNames);
+    for (String pattern : applicationNames) {
+      if (!matchesAny(applications.keySet(), pattern)) {
+        if (failIfNotExists) {
+          throw new MojoExecutionException("Application " + pattern + " not found.");
+        }
+        log.warn("Application " + pattern + " not found in " + muleHome);
+      }
+    }
+    if (applications.isEmpty()) {
+      return;
+    }
+    if (new WrapperProcess(muleHome).isAlive()) {
+      undeployFromRuntime(appsDir, applications.keySet());
+    }
+    for (List<File> files : applications.values()) {
+      for (File file : files) {
+        if (!file.exists()) {
+          continue;
+        }
         try {
           log.debug("Deleting " + file);
-          FileUtils.forceDelete(file);
-          return;
+          delete(file, trash);
         } catch (IOException e) {
           log.error("Could not delete " + file.getAbsolutePath());
           throw new MojoExecutionException("Could not delete directory [" + file.getAbsolutePath() + "]", e);
         }
       }
     }
+    metrics.add("undeploy.applications.count", applications.size());
+    log.info("Applications " + applications.keySet() + " undeployed from " + muleHome.getAbsolutePath());
+  }
+
+  /**
+   * Lists the apps directory once, grouping the zip file, directory and anchor file of each application matching one of the
+   * names, which can use <code>*</code> and <code>?</code> wildcards.
+   */
+  static Map<String, List<File>> findApplications(File appsDir, List<String> applicationNames) {
+    Map<String, List<File>> applications = new TreeMap<>();
+    File[] files = appsDir.listFiles();
+    if (files == null) {
+      return applications;
+    }
+    for (File file : files) {
+      String name = applicationName(file);
+      for (String pattern : applicationNames) {
+        if (FilenameUtils.wildcardMatch(name, pattern)) {
+          if (!applications.containsKey(name)) {
+            applications.put(name, new ArrayList<File>());
+          }
+          applications.get(name).add(file);
+          break;
+        }
+      }
+    }
+    return applications;
+  }
+
+  /**
+   * The application of an anchor file or a zip file is its name without the suffix, while an exploded application directory
+   * is named as the application, dots included.
+   */
+  private static String applicationName(File file) {
+    String name = file.getName();
+    if (file.isFile() && name.endsWith(ANCHOR_SUFFIX)) {
+      return name.substring(0, name.length() - ANCHOR_SUFFIX.length());
+    }
+    if (file.isFile() && name.endsWith(ZIP_SUFFIX)) {
+      return name.substring(0, name.length() - ZIP_SUFFIX.length());
+    }
+    return name;
+  }
+
+  static boolean matchesAny(Iterable<String> names, String pattern) {
+    for (String name : names) {
+      if (FilenameUtils.wildcardMatch(name, pattern)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Deletes the anchor files of all the applications, so the running instance undeploys them, and waits for it to remove
+   * their directories.
+   */
+  private void undeployFromRuntime(File appsDir, Iterable<String> applications) throws MojoExecutionException {
+    List<File> directories = new ArrayList<>();
+    for (String application : applications) {
+      if (new File(appsDir, application + ANCHOR_SUFFIX).delete()) {
+        directories.add(new File(appsDir, application));
+      }
+    }
+    long deadline = System.currentTimeMillis() + stopTimeout;
+    try {
+      for (File directory : directories) {
+        while (directory.exists() && System.currentTimeMillis() < deadline) {
+          Thread.sleep(POLLING_DELAY);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Interrupted while undeploying applications " + applicationNames, e);
+    }
+  }
+
+  /**
+   * Moves the file to the trash directory, which is on the same file system, and deletes it in the background.
+   */
+  private void delete(File file, File trash) throws IOException {
+    File trashed = new File(trash, file.getName() + "-" + UUID.randomUUID());
+    try {
+      Files.createDirectories(trash.toPath());
+      Files.move(file.toPath(), trashed.toPath());
+    } catch (IOException e) {
+      log.debug("Couldn't move " + file + " to trash, deleting it: " + e.getMessage());
+      FileUtils.forceDelete(file);
+      return;
+    }
+    deleteInBackground(trashed);
+  }
+
+  private void emptyTrash(File trash) {
+    File[] files = trash.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        deleteInBackground(file);
+      }
+    }
+  }
 
-    throw new MojoExecutionException("Application " + applicationName + " not found.");
+  private void deleteInBackground(final File file) {
+    DELETER.submit(new Runnable() {
+
+      @Override
+      public void run() {
+        FileUtils.deleteQuietly(file);
+      }
+    });
   }
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchService;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Deploys the application to Mule Runtime Standalone and keeps redeploying it as its sources change, until the build is
+ * interrupted. Mule configuration files in <code>src/main/app</code> and compiled classes are watched; bursts of changes are
+ * batched and only the changed files are written to the deployed exploded application.
+ *
+ * @see DeployMojo#incremental
+ * @since 2.3
+ */
+@Mojo(name = "watch", requiresProject = true)
+public class WatchMojo extends DeployMojo {
+
+  /**
+   * Directory with the Mule configuration files of the application.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "mule.watch.appDirectory", defaultValue = "${basedir}/src/main/app")
+  protected File appDirectory;
+
+  /**
+   * Directory with the compiled classes and resources of the application.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "mule.watch.classesDirectory", defaultValue = "${project.build.outputDirectory}")
+  protected File classesDirectory;
+
+  /**
+   * Milliseconds without changes to wait before redeploying, so a burst of changes triggers a single redeployment.
+   *
+   * @since 2.3
+   */
+  @Parameter(property = "mule.watch.debounce", defaultValue = "300")
+  protected long debounce;
+
+  private FileStager stager;
+  private Path workingDirectory;
+
+  @Override
+  public void doExecute() throws MojoExecutionException, MojoFailureException {
+    if (deploymentType != DeploymentType.standalone) {
+      throw new MojoFailureException("The watch goal only supports standalone deployments");
+    }
+    initializeApplication();
+    initializeEnvironment();
+    stager = new FileStager(metrics);
+    workingDirectory = new File(mavenProject.getBuild().getDirectory(), "mule-watch/" + getExplodedApplicationName()).toPath();
+    try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+      SourceWatcher watcher = new SourceWatcher(watchService, stager, debounce, getLog());
+      prepareWorkingDirectory();
+      watcher.watch(appDirectory.toPath(), workingDirectory);
+      watcher.watch(classesDirectory.toPath(), workingDirectory.resolve("classes"));
+      watcher.mirrorAll();
+      application = workingDirectory.toFile();
+      incremental = true;
+      Deployer deployer = standalone();
+      getLog().info("Watching " + appDirectory + " and " + classesDirectory + " for changes. Press Ctrl+C to stop.");
+      watch(watcher, deployer);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Couldn't watch application sources: " + e.getMessage(), e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      getLog().info("Stopped watching application sources");
+    }
+  }
+
+  /**
+   * Prepares the exploded application that is synchronized with the deployed one from the packaged application. The sources
+   * are then mirrored over it.
+   */
+  private void prepareWorkingDirectory() throws IOException {
+    FileUtils.deleteDirectory(workingDirectory.toFile());
+    Files.createDirectories(workingDirectory);
+    if (application.isDirectory()) {
+      stager.stageTree(application.toPath(), workingDirectory);
+    } else {
+      new ExplodedApplicationInstaller(getLog(), metrics).extract(application, workingDirectory);
+    }
+  }
+
+  /**
+   * Redeploys after each batch of changes. A failed cycle, such as a file removed by an editor while it is mirrored, is logged
+   * and the next change is awaited.
+   */
+  private void watch(SourceWatcher watcher, Deployer deployer) throws InterruptedException {
+    for (int cycle = 1;; cycle++) {
+      SourceWatcher.Changes changes = watcher.awaitChanges();
+      long start = System.nanoTime();
+      getLog().info(String.format("Detected %d change(s), redeploying application [%s]", changes.size(), applicationName));
+      try {
+        watcher.apply(changes);
+        deployer.execute();
+        long latency = metrics.elapsed("watch.ready.millis", start);
+        metrics.increment("watch.cycles.count");
+        getLog().info(String.format("Cycle %d: application [%s] ready %d ms after the change", cycle, applicationName, latency));
+      } catch (MojoFailureException | MojoExecutionException e) {
+        getLog().error("Couldn't redeploy application [" + applicationName + "]: " + e.getMessage());
+      } catch (IOException | RuntimeException e) {
+        getLog().error("Couldn't redeploy application [" + applicationName + "], waiting for the next change: " + e, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings managed by the plugin in the wrapper configuration of a Mule Runtime Standalone instance.
+ *
+ * @see WrapperConfigurator
+ */
+public class WrapperConfiguration {
+
+  private Integer initialMemory;
+  private Integer maximumMemory;
+  private List<String> jvmOptions = new ArrayList<>();
+  private Map<String, String> wrapperProperties = new LinkedHashMap<>();
+
+  /**
+   * @param initialMemory Initial heap in megabytes.
+   */
+  public WrapperConfiguration setInitialMemory(Integer initialMemory) {
+    this.initialMemory = initialMemory;
+    return this;
+  }
+
+  /**
+   * @param maximumMemory Maximum heap in megabytes.
+   */
+  public WrapperConfiguration setMaximumMemory(Integer maximumMemory) {
+    this.maximumMemory = maximumMemory;
+    return this;
+  }
+
+  /**
+   * Adds an option to the Mule Runtime JVM, replacing any option previously added for the same flag.
+   */
+  public WrapperConfiguration addJvmOption(String option) {
+    String key = WrapperConfigurator.optionKey(option);
+    for (Iterator<String> iterator = jvmOptions.iterator(); iterator.hasNext();) {
+      if (key.equals(WrapperConfigurator.optionKey(iterator.next()))) {
+        iterator.remove();
+      }
+    }
+    jvmOptions.add(option);
+    return this;
+  }
+
+  /**
+   * Makes the Mule Runtime JVM map the given class data sharing archive.
+   */
+  public WrapperConfiguration setSharedArchive(File archive) {
+    return addJvmOption("-XX:SharedArchiveFile=" + archive.getAbsolutePath()).addJvmOption("-Xshare:auto");
+  }
+
+  /**
+   * Sets a wrapper property, such as <code>wrapper.port</code>.
+   */
+  public WrapperConfiguration setWrapperProperty(String name, String value) {
+    wrapperProperties.put(name, value);
+    return this;
+  }
+
+  public Integer getInitialMemory() {
+    return initialMemory;
+  }
+
+  public Integer getMaximumMemory() {
+    return maximumMemory;
+  }
+
+  public List<String> getJvmOptions() {
+    return jvmOptions;
+  }
+
+  public Map<String, String> getWrapperProperties() {
+    return wrapperProperties;
+  }
+
+  public boolean isEmpty() {
+    return initialMemory == null && maximumMemory == null && jvmOptions.isEmpty() && wrapperProperties.isEmpty();
+  }
+
+  public String toString() {
+    return String.format("WrapperConfiguration with [initialMemory=%s, maximumMemory=%s, jvmOptions=%s, properties=%s]",
+                         initialMemory, maximumMemory, jvmOptions, wrapperProperties);
+  }
+}
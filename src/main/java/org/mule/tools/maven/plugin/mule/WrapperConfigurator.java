@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Rewrites <code>conf/wrapper.conf</code> of a Mule Runtime Standalone instance. Everything the plugin sets lives in a
+ * delimited block at the end of the file, so the file can be reconfigured any number of times. Original options that
+ * conflict with the managed ones are commented out, and restored when they stop conflicting.
+ */
+public class WrapperConfigurator {
+
+  static final String WRAPPER_CONF = "conf/wrapper.conf";
+  static final String BEGIN_MARKER = "# BEGIN mule-maven-plugin managed configuration";
+  static final String END_MARKER = "# END mule-maven-plugin managed configuration";
+  static final String DISABLED_PREFIX = "#mule-maven-plugin# ";
+
+  private static final String INITIAL_MEMORY = "wrapper.java.initmemory";
+  private static final String MAXIMUM_MEMORY = "wrapper.java.maxmemory";
+  private static final Pattern ADDITIONAL = Pattern.compile("^wrapper\\.java\\.additional\\.(\\d+)=(.*)$");
+  private static final Pattern PROPERTY = Pattern.compile("^([\\w.]+)\\s*=.*$");
+  private static final Pattern GARBAGE_COLLECTOR = Pattern.compile("^XX:(Use\\w*GC|CMS\\w*|G1\\w*)$");
+  private static final Pattern HEAP = Pattern.compile("^(-Xms|-Xmx|-Xmn|XX:NewSize|XX:MaxNewSize)$");
+
+  private final Log log;
+
+  public WrapperConfigurator(Log log) {
+    this.log = log;
+  }
+
+  public void configure(File muleHome, WrapperConfiguration configuration) throws MojoFailureException {
+    Path wrapperConf = new File(muleHome, WRAPPER_CONF).toPath();
+    if (!Files.exists(wrapperConf)) {
+      throw new MojoFailureException("Couldn't find wrapper configuration: " + wrapperConf);
+    }
+    log.debug("Configuring " + wrapperConf + " with " + configuration);
+    try {
+      List<String> original = Files.readAllLines(wrapperConf, ISO_8859_1);
+      List<String> lines = configure(original, configuration);
+      if (lines.equals(original)) {
+        log.debug(wrapperConf + " is up to date");
+        return;
+      }
+      Path temporary = wrapperConf.resolveSibling(wrapperConf.getFileName() + ".tmp");
+      Files.write(temporary, lines, ISO_8859_1);
+      Files.move(temporary, wrapperConf, REPLACE_EXISTING, ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new MojoFailureException("Couldn't configure " + wrapperConf + ": " + e.getMessage());
+    }
+  }
+
+  List<String> configure(List<String> original, WrapperConfiguration configuration) {
+    List<String> lines = removeManagedConfiguration(original);
+    List<String> result = new ArrayList<>();
+    int lastIndex = 0;
+
+    for (String line : lines) {
+      Matcher additional = ADDITIONAL.matcher(line);
+      Matcher property = PROPERTY.matcher(line);
+      if (additional.matches()) {
+        lastIndex = Math.max(lastIndex, Integer.parseInt(additional.group(1)));
+        result.add(isOverridden(optionKey(additional.group(2)), configuration) ? DISABLED_PREFIX + line : line);
+      } else if (line.startsWith(INITIAL_MEMORY + "=") && configuration.getInitialMemory() != null
+          || line.startsWith(MAXIMUM_MEMORY + "=") && configuration.getMaximumMemory() != null) {
+        result.add(DISABLED_PREFIX + line);
+      } else if (property.matches() && configuration.getWrapperProperties().containsKey(property.group(1))) {
+        result.add(DISABLED_PREFIX + line);
+      } else {
+        result.add(line);
+      }
+    }
+
+    if (configuration.isEmpty()) {
+      return result;
+    }
+    result.add(BEGIN_MARKER);
+    if (configuration.getInitialMemory() != null) {
+      result.add(INITIAL_MEMORY + "=" + configuration.getInitialMemory());
+    }
+    if (configuration.getMaximumMemory() != null) {
+      result.add(MAXIMUM_MEMORY + "=" + configuration.getMaximumMemory());
+    }
+    if (!configuration.getJvmOptions().isEmpty()) {
+      // Disabled options leave gaps in the sequence of additional parameters
+      result.add("wrapper.ignore_sequence_gaps=TRUE");
+    }
+    for (String option : configuration.getJvmOptions()) {
+      result.add("wrapper.java.additional." + (++lastIndex) + "=" + option);
+    }
+    for (Map.Entry<String, String> property : configuration.getWrapperProperties().entrySet()) {
+      result.add(property.getKey() + "=" + property.getValue());
+    }
+    result.add(END_MARKER);
+    return result;
+  }
+
+  private List<String> removeManagedConfiguration(List<String> original) {
+    List<String> lines = new ArrayList<>();
+    boolean managed = false;
+    for (String line : original) {
+      if (BEGIN_MARKER.equals(line)) {
+        managed = true;
+      } else if (END_MARKER.equals(line)) {
+        managed = false;
+      } else if (!managed) {
+        lines.add(line.startsWith(DISABLED_PREFIX) ? line.substring(DISABLED_PREFIX.length()) : line);
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * Checks whether an original option is replaced by the managed configuration: it sets the same flag, it is collector
+   * related and a collector is chosen, or it is heap related and the heap is sized.
+   */
+  private boolean isOverridden(String key, WrapperConfiguration configuration) {
+    boolean garbageCollector = false;
+    for (String option : configuration.getJvmOptions()) {
+      String managedKey = optionKey(option);
+      if (managedKey.equals(key)) {
+        return true;
+      }
+      garbageCollector |= managedKey.startsWith("XX:Use") && managedKey.endsWith("GC");
+    }
+    boolean heap = configuration.getInitialMemory() != null || configuration.getMaximumMemory() != null;
+    return (garbageCollector && GARBAGE_COLLECTOR.matcher(key).matches()) || (heap && HEAP.matcher(key).matches());
+  }
+
+  /**
+   * Returns the flag an option sets, so that <code>-XX:+UseSerialGC</code> and <code>-XX:-UseSerialGC</code>, or
+   * <code>-Dport=1</code> and <code>-Dport=2</code>, are identified as the same option.
+   */
+  static String optionKey(String option) {
+    String value = option.trim();
+    if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
+      value = value.substring(1, value.length() - 1);
+    }
+    if (value.startsWith("-XX:")) {
+      String name = value.substring(4);
+      if (name.startsWith("+") || name.startsWith("-")) {
+        name = name.substring(1);
+      }
+      int equals = name.indexOf('=');
+      return "XX:" + (equals == -1 ? name : name.substring(0, equals));
+    }
+    if (value.startsWith("-D")) {
+      int equals = value.indexOf('=');
+      return equals == -1 ? value : value.substring(0, equals);
+    }
+    if (value.startsWith("-Xshare")) {
+      return "-Xshare";
+    }
+    if (value.startsWith("-Xss") || value.startsWith("-Xms") || value.startsWith("-Xmx") || value.startsWith("-Xmn")) {
+      return value.substring(0, 4);
+    }
+    return value;
+  }
+
+}
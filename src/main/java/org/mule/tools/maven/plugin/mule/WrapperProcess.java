@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Processes of a Mule Runtime Standalone instance, found through the pid files the wrapper writes in
+ * <code>MULE_HOME/bin</code> and <code>MULE_HOME/.mule</code>.
+ */
+public class WrapperProcess {
+
+  private static final boolean WINDOWS = System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+  private static final File PROC = new File("/proc");
+
+  private final File muleHome;
+
+  public WrapperProcess(File muleHome) {
+    this.muleHome = muleHome;
+  }
+
+  /**
+   * @return The process ids recorded in the pid files of the instance.
+   */
+  public List<Integer> getPids() {
+    List<Integer> pids = new ArrayList<>();
+    for (File directory : new File[] {new File(muleHome, "bin"), new File(muleHome, ".mule")}) {
+      File[] pidFiles = directory.listFiles(new FileFilter() {
+
+        @Override
+        public boolean accept(File file) {
+          return file.isFile() && file.getName().endsWith(".pid");
+        }
+      });
+      if (pidFiles == null) {
+        continue;
+      }
+      for (File pidFile : pidFiles) {
+        Integer pid = readPid(pidFile);
+        if (pid != null && !pids.contains(pid)) {
+          pids.add(pid);
+        }
+      }
+    }
+    return pids;
+  }
+
+  /**
+   * @return true if a process of the instance is running. On Linux, a live process whose pid was reused by a process that
+   *         doesn't belong to this MULE_HOME, as happens after a reboot or a crash left stale pid files, doesn't count.
+   */
+  public boolean isAlive() {
+    for (int pid : getPids()) {
+      if (isAlive(pid) && belongsToInstance(pid)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Forcibly terminates the running processes of the instance. On Linux, processes that don't belong to this MULE_HOME,
+   * because their pid was reused, are left alone.
+   *
+   * @return The number of processes killed.
+   */
+  public int kill() throws IOException, InterruptedException {
+    int killed = 0;
+    for (int pid : getPids()) {
+      if (!isAlive(pid) || !belongsToInstance(pid)) {
+        continue;
+      }
+      String[] command = WINDOWS ? new String[] {"taskkill", "/F", "/T", "/PID", String.valueOf(pid)}
+          : new String[] {"kill", "-9", String.valueOf(pid)};
+      Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+      if (!process.waitFor(10, TimeUnit.SECONDS)) {
+        process.destroy();
+      }
+      killed++;
+    }
+    return killed;
+  }
+
+  /**
+   * @return true if process liveness is read from <code>/proc</code>, without running commands.
+   */
+  public static boolean isProcAvailable() {
+    return PROC.isDirectory();
+  }
+
+  static boolean isAlive(int pid) {
+    if (PROC.isDirectory()) {
+      return new File(PROC, String.valueOf(pid)).isDirectory();
+    }
+    String[] command = WINDOWS ? new String[] {"tasklist", "/NH", "/FI", "PID eq " + pid}
+        : new String[] {"kill", "-0", String.valueOf(pid)};
+    try {
+      Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+      String output = new String(IOUtils.toByteArray(process.getInputStream()), UTF_8);
+      process.waitFor(10, TimeUnit.SECONDS);
+      return WINDOWS ? output.contains(" " + pid + " ") : process.exitValue() == 0;
+    } catch (IOException | IllegalThreadStateException e) {
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private boolean belongsToInstance(int pid) {
+    File cmdline = new File(PROC, pid + "/cmdline");
+    if (!cmdline.isFile()) {
+      return true;
+    }
+    try {
+      return new String(Files.readAllBytes(cmdline.toPath()), UTF_8).contains(muleHome.getAbsolutePath());
+    } catch (IOException e) {
+      return true;
+    }
+  }
+
+  private static Integer readPid(File pidFile) {
+    try {
+      return Integer.valueOf(new String(Files.readAllBytes(pidFile.toPath()), UTF_8).trim());
+    } catch (IOException | NumberFormatException e) {
+      return null;
+    }
+  }
+}
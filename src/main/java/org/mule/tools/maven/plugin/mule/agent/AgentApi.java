@@ -10,6 +10,8 @@ import org.mule.tools.maven.plugin.mule.AbstractApi;
 import org.mule.tools.maven.plugin.mule.ApiException;
 
 import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
@@ -29,19 +31,85 @@ public class AgentApi extends AbstractApi {
   }
 
   public void deployApplication(String applicationName, File file) {
-    Response response =
-        put(uri, APPLICATIONS_PATH + applicationName, Entity.entity(file, MediaType.APPLICATION_OCTET_STREAM_TYPE));
+    checkAccepted(put(uri, APPLICATIONS_PATH + applicationName, applicationEntity(file)), applicationName);
+  }
 
-    if (response.getStatus() != 202) // Created
-    {
-      throw new ApiException(response, uri + APPLICATIONS_PATH + applicationName);
-    }
+  /**
+   * Uploads the application without waiting for the agent to accept it.
+   */
+  public CompletableFuture<Void> deployApplicationAsync(final String applicationName, File file) {
+    return putAsync(uri, APPLICATIONS_PATH + applicationName, applicationEntity(file))
+        .thenApply(new Function<Response, Void>() {
+
+          @Override
+          public Void apply(Response response) {
+            checkAccepted(response, applicationName);
+            return null;
+          }
+        });
+  }
+
+  /**
+   * Looks up the status of an application.
+   * @return The application, or null if the agent doesn't know it yet.
+   */
+  public AgentApplication getApplication(String appName) {
+    return readApplication(get(uri, APPLICATIONS_PATH + appName), appName);
+  }
+
+  /**
+   * Looks up the status of an application without waiting for the response.
+   * @return The application, or null if the agent doesn't know it yet.
+   */
+  public CompletableFuture<AgentApplication> getApplicationAsync(final String appName) {
+    return getAsync(uri, APPLICATIONS_PATH + appName).thenApply(new Function<Response, AgentApplication>() {
+
+      @Override
+      public AgentApplication apply(Response response) {
+        return readApplication(response, appName);
+      }
+    });
+  }
+
+  public String getUri() {
+    return uri;
   }
 
   public void undeployApplication(String appName) {
-    Response response = delete(uri, APPLICATIONS_PATH + appName);
+    checkAccepted(delete(uri, APPLICATIONS_PATH + appName), appName);
+  }
+
+  /**
+   * Undeploys the application without waiting for the agent to accept it.
+   */
+  public CompletableFuture<Void> undeployApplicationAsync(final String appName) {
+    return deleteAsync(uri, APPLICATIONS_PATH + appName).thenApply(new Function<Response, Void>() {
+
+      @Override
+      public Void apply(Response response) {
+        checkAccepted(response, appName);
+        return null;
+      }
+    });
+  }
+
+  private Entity<File> applicationEntity(File file) {
+    return Entity.entity(file, MediaType.APPLICATION_OCTET_STREAM_TYPE);
+  }
 
-    if (response.getStatus() != 202) {
+  private AgentApplication readApplication(Response response, String appName) {
+    if (response.getStatus() == 200) {
+      return response.readEntity(AgentApplication.class);
+    } else if (response.getStatus() == 404) {
+      return null;
+    } else {
+      throw new ApiException(response, uri + APPLICATIONS_PATH + appName);
+    }
+  }
+
+  private void checkAccepted(Response response, String appName) {
+    if (response.getStatus() != 202) // Accepted
+    {
       throw new ApiException(response, uri + APPLICATIONS_PATH + appName);
     }
   }
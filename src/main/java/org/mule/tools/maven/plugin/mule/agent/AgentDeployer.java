@@ -6,32 +6,302 @@
  */
 package org.mule.tools.maven.plugin.mule.agent;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
 import org.mule.tools.maven.plugin.mule.AbstractDeployer;
-import org.mule.tools.maven.plugin.mule.ApiException;
 import org.mule.tools.maven.plugin.mule.DeploymentException;
+import org.mule.tools.maven.plugin.mule.DeploymentMetrics;
+import org.mule.tools.maven.plugin.mule.HttpTransport;
+import org.mule.tools.maven.plugin.mule.ParallelExecutor;
+import org.mule.tools.maven.plugin.mule.ParallelExecutor.AsyncTask;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 import org.apache.maven.plugin.logging.Log;
 
+/**
+ * Deploys an application to one or more Mule Agents, uploading it to all of them at the same time. Optionally waits until
+ * every agent reports the application as started, with a single deadline for all of them. The agent doesn't tell one
+ * deployment of an application from the next, so when an agent already has the application, its state is only trusted once
+ * it left the state it had before the upload, and the previous deployment is never taken for the new one. The time to
+ * upload to and get the application started on each agent is recorded as <code>agent.&lt;n&gt;.upload.millis</code> and
+ * <code>agent.&lt;n&gt;.started.millis</code>, in the order the agents are configured. Requests to the agents are sent
+ * asynchronously from the calling thread, so no thread is held per agent.
+ */
 public class AgentDeployer extends AbstractDeployer {
 
-  private final AgentApi agentApi;
+  private static final String STARTED = "STARTED";
+  private static final String DEPLOYMENT_FAILED = "DEPLOYMENT_FAILED";
+
+  private final List<AgentApi> agentApis = new ArrayList<>();
+  private DeploymentMetrics metrics = new DeploymentMetrics();
+  private boolean waitForDeployment;
+  private boolean undeployBeforeRedeploy;
+  private long deploymentTimeout;
+  private long initialDelay = 500;
+  private long maxDelay = 5000;
 
   public AgentDeployer(Log log, String applicationName, File application, String uri) {
+    this(log, applicationName, application, Collections.singletonList(uri));
+  }
+
+  public AgentDeployer(Log log, String applicationName, File application, List<String> uris) {
+    super(applicationName, application, log);
+    for (String uri : uris) {
+      agentApis.add(new AgentApi(log, uri));
+    }
+  }
+
+  public AgentDeployer(Log log, String applicationName, File application, AgentApi... agentApis) {
     super(applicationName, application, log);
-    this.agentApi = new AgentApi(log, uri);
+    this.agentApis.addAll(Arrays.asList(agentApis));
+  }
+
+  public AgentDeployer setTransport(HttpTransport transport) {
+    for (AgentApi agentApi : agentApis) {
+      agentApi.setTransport(transport);
+    }
+    return this;
+  }
+
+  public AgentDeployer setMetrics(DeploymentMetrics metrics) {
+    this.metrics = metrics;
+    for (AgentApi agentApi : agentApis) {
+      agentApi.setMetrics(metrics);
+    }
+    return this;
+  }
+
+  /**
+   * Waits for all the agents to report the application as started, up to <code>deploymentTimeout</code> milliseconds in
+   * total.
+   */
+  public AgentDeployer setWaitForDeployment(boolean waitForDeployment, long deploymentTimeout) {
+    this.waitForDeployment = waitForDeployment;
+    this.deploymentTimeout = deploymentTimeout;
+    return this;
+  }
+
+  /**
+   * When waiting for the deployment, undeploys the application the agents already have and waits for it to be gone before
+   * uploading the new version, for agents that redeploy faster than they are polled. The application is unavailable
+   * meanwhile.
+   */
+  public AgentDeployer setUndeployBeforeRedeploy(boolean undeployBeforeRedeploy) {
+    this.undeployBeforeRedeploy = undeployBeforeRedeploy;
+    return this;
+  }
+
+  public AgentDeployer setPollingDelay(long initialDelay, long maxDelay) {
+    this.initialDelay = initialDelay;
+    this.maxDelay = Math.max(initialDelay, maxDelay);
+    return this;
+  }
+
+  @Override
+  public void close() {
+    for (AgentApi agentApi : agentApis) {
+      agentApi.close();
+    }
   }
 
   @Override
   public void deploy() throws DeploymentException {
+    info("Deploying application " + getApplicationName() + " to " + agentApis.size() + " Mule Agent(s)");
+    long start = System.nanoTime();
+    long deadline = start + MILLISECONDS.toNanos(deploymentTimeout);
+    Map<AgentApi, Throwable> failures = new LinkedHashMap<>();
     try {
-      info("Deploying application " + getApplicationName() + " to Mule Agent");
-      agentApi.deployApplication(getApplicationName(), getApplicationFile());
-    } catch (ApiException e) {
-      error("Failure: " + e.getMessage());
-      throw new DeploymentException("Failed to deploy application " + getApplicationName(), e);
+      Map<AgentApi, String> previousStates = new HashMap<>();
+      if (waitForDeployment) {
+        List<AgentApi> undeploying = new ArrayList<>();
+        for (Map.Entry<AgentApi, AgentApplication> previous : getApplications(agentApis, failures).entrySet()) {
+          if (previous.getValue() != null && undeployBeforeRedeploy) {
+            info("Undeploying previous version of application " + getApplicationName() + " from " + previous.getKey().getUri());
+            undeploying.add(previous.getKey());
+          } else if (previous.getValue() != null) {
+            previousStates.put(previous.getKey(), previous.getValue().state);
+          }
+        }
+        Set<AgentApi> undeployed = undeployFrom(undeploying, failures).keySet();
+        await(undeployed, false, Collections.<AgentApi, String>emptyMap(), start, deadline, failures);
+      }
+      List<AgentApi> uploading = new ArrayList<>(agentApis);
+      uploading.removeAll(failures.keySet());
+      Map<AgentApi, Long> uploaded = uploadTo(uploading, start, failures);
+      if (waitForDeployment) {
+        await(uploaded.keySet(), true, previousStates, start, deadline, failures);
+      } else {
+        for (Map.Entry<AgentApi, Long> upload : uploaded.entrySet()) {
+          info("Uploaded application " + getApplicationName() + " to " + upload.getKey().getUri() + " in " + upload.getValue()
+              + " ms");
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DeploymentException("Interrupted while trying to deploy application " + getApplicationName(), e);
     }
+    checkFailures("deploy", failures);
+    metrics.elapsed("agent.deploy.millis", start);
+  }
+
+  /**
+   * Removes the application from all the agents at the same time. Every agent is tried, and the failures of all of them
+   * are reported together.
+   */
+  public void undeploy() throws DeploymentException {
+    long start = System.nanoTime();
+    Map<AgentApi, Throwable> failures = new LinkedHashMap<>();
+    for (AgentApi agentApi : agentApis) {
+      info("Undeploying application " + getApplicationName() + " from " + agentApi.getUri());
+    }
+    try {
+      undeployFrom(agentApis, failures);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DeploymentException("Interrupted while trying to undeploy application " + getApplicationName(), e);
+    }
+    checkFailures("undeploy", failures);
+    metrics.elapsed("undeploy.millis", start);
+  }
+
+  private Map<AgentApi, AgentApplication> getApplications(Collection<AgentApi> agents, Map<AgentApi, Throwable> failures)
+      throws InterruptedException {
+    return ParallelExecutor.invokeAllAsync(agents, agents.size(), new AsyncTask<AgentApi, AgentApplication>() {
+
+      @Override
+      public CompletableFuture<AgentApplication> start(AgentApi agentApi) {
+        return agentApi.getApplicationAsync(getApplicationName());
+      }
+    }, failures);
+  }
+
+  private Map<AgentApi, Void> undeployFrom(Collection<AgentApi> agents, Map<AgentApi, Throwable> failures)
+      throws InterruptedException {
+    return ParallelExecutor.invokeAllAsync(agents, agents.size(), new AsyncTask<AgentApi, Void>() {
+
+      @Override
+      public CompletableFuture<Void> start(AgentApi agentApi) {
+        return agentApi.undeployApplicationAsync(getApplicationName());
+      }
+    }, failures);
+  }
+
+  /**
+   * Uploads the application to the agents, recording how long each upload took as soon as it completes.
+   *
+   * @return The milliseconds from <code>start</code> to the end of the upload, by agent.
+   */
+  private Map<AgentApi, Long> uploadTo(Collection<AgentApi> agents, final long start, Map<AgentApi, Throwable> failures)
+      throws InterruptedException {
+    return ParallelExecutor.invokeAllAsync(agents, agents.size(), new AsyncTask<AgentApi, Long>() {
+
+      @Override
+      public CompletableFuture<Long> start(AgentApi agentApi) {
+        final String metric = metric(agentApi) + ".upload.millis";
+        return agentApi.deployApplicationAsync(getApplicationName(), getApplicationFile()).thenApply(new Function<Void, Long>() {
+
+          @Override
+          public Long apply(Void result) {
+            return metrics.elapsed(metric, start);
+          }
+        });
+      }
+    }, failures);
+  }
+
+  /**
+   * Polls the agents, all of them at the same time, until the application is started on each of them, or gone when
+   * <code>started</code> is false. The states of an agent are only taken into account once the application left the one it
+   * has in <code>previousStates</code>, the state of its previous deployment.
+   */
+  private void await(Collection<AgentApi> agents, boolean started, Map<AgentApi, String> previousStates, long start,
+                     long deadline, Map<AgentApi, Throwable> failures)
+      throws InterruptedException {
+    // The agents still waited for, with the previous state they haven't left yet
+    Map<AgentApi, String> waiting = new LinkedHashMap<>();
+    for (AgentApi agentApi : agents) {
+      waiting.put(agentApi, previousStates.get(agentApi));
+    }
+    long delay = initialDelay;
+    while (true) {
+      Map<AgentApi, AgentApplication> applications = getApplications(waiting.keySet(), failures);
+      waiting.keySet().retainAll(applications.keySet());
+      for (Map.Entry<AgentApi, AgentApplication> application : applications.entrySet()) {
+        AgentApi agentApi = application.getKey();
+        String state = application.getValue() == null ? null : application.getValue().state;
+        String previousState = waiting.get(agentApi);
+        if (previousState != null && previousState.equals(state)) {
+          continue;
+        }
+        waiting.put(agentApi, null);
+        if (started ? STARTED.equals(state) : application.getValue() == null) {
+          waiting.remove(agentApi);
+          if (started) {
+            String metric = metric(agentApi);
+            long startedMillis = metrics.elapsed(metric + ".started.millis", start);
+            info("Application " + getApplicationName() + " on " + agentApi.getUri() + " uploaded in "
+                + metrics.get(metric + ".upload.millis") + " ms and started in " + startedMillis + " ms");
+          }
+        } else if (started && DEPLOYMENT_FAILED.equals(state)) {
+          waiting.remove(agentApi);
+          failures.put(agentApi, new DeploymentException("Application " + getApplicationName() + " failed to deploy"));
+        }
+      }
+      if (waiting.isEmpty()) {
+        return;
+      }
+      long remaining = NANOSECONDS.toMillis(deadline - System.nanoTime());
+      if (remaining <= 0) {
+        for (Map.Entry<AgentApi, String> agent : waiting.entrySet()) {
+          failures.put(agent.getKey(), timeout(started, agent.getValue()));
+        }
+        return;
+      }
+      MILLISECONDS.sleep(Math.min(delay, remaining));
+      delay = Math.min(delay * 2, maxDelay);
+    }
+  }
+
+  private DeploymentException timeout(boolean started, String previousState) {
+    if (previousState != null) {
+      return new DeploymentException("Application " + getApplicationName() + " still reported the state of its previous "
+          + "deployment, " + previousState + ", after " + deploymentTimeout + " ms. If the agent redeploys it faster than it "
+          + "is polled, set undeployBeforeRedeploy");
+    }
+    return new DeploymentException("Application " + getApplicationName() + (started ? " didn't start" : " wasn't undeployed")
+        + " in " + deploymentTimeout + " ms");
+  }
+
+  private void checkFailures(String action, Map<AgentApi, Throwable> failures) throws DeploymentException {
+    if (failures.isEmpty()) {
+      return;
+    }
+    List<String> messages = new ArrayList<>();
+    for (AgentApi agentApi : agentApis) {
+      Throwable failure = failures.get(agentApi);
+      if (failure != null) {
+        error("Failure on " + agentApi.getUri() + ": " + failure.getMessage());
+        messages.add(agentApi.getUri() + ": " + failure.getMessage());
+      }
+    }
+    throw new DeploymentException("Failed to " + action + " application " + getApplicationName() + " on " + messages);
+  }
+
+  private String metric(AgentApi agentApi) {
+    return "agent." + (agentApis.indexOf(agentApi) + 1);
   }
 
 }
@@ -7,13 +7,19 @@
 package org.mule.tools.maven.plugin.mule.arm;
 
 import org.mule.tools.maven.plugin.mule.AbstractMuleApi;
+import org.mule.tools.maven.plugin.mule.DeploymentMetrics;
+import org.mule.tools.maven.plugin.mule.MeteredSslContext;
 import org.mule.tools.maven.plugin.mule.TargetType;
+import org.mule.tools.maven.plugin.mule.TlsConfiguration;
+import org.mule.tools.maven.plugin.mule.TlsContexts;
 
 import java.io.File;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
+import java.io.IOException;
+import java.net.URI;
+import java.security.GeneralSecurityException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.concurrent.Callable;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
@@ -36,7 +42,10 @@ public class ArmApi extends AbstractMuleApi {
   private static final String SERVERS = "/hybrid/api/v1/servers";
   private static final String SERVER_GROUPS = "/hybrid/api/v1/serverGroups";
   private static final String CLUSTERS = "/hybrid/api/v1/clusters";
+  private static final String APPLICATIONS_INVENTORY = "arm.applications";
+  private static SSLContext insecureContext;
   private boolean armInsecure;
+  private TlsConfiguration tlsConfiguration = new TlsConfiguration();
 
   public ArmApi(Log log, String uri, String username, String password, String environment, String businessGroup,
                 boolean armInsecure) {
@@ -58,6 +67,7 @@ public class ArmApi extends AbstractMuleApi {
 
   public String undeployApplication(int applicationId) {
     Response response = delete(uri, APPLICATIONS + "/" + applicationId);
+    invalidate(APPLICATIONS_INVENTORY);
     validateStatusSuccess(response);
     return response.readEntity(String.class);
   }
@@ -72,30 +82,39 @@ public class ArmApi extends AbstractMuleApi {
   }
 
   public Application deployApplication(File app, String appName, TargetType targetType, String target) {
-    MultiPart body = buildRequestBody(app, appName, targetType, target);
+    return deployApplication(app, appName, findTargetId(targetType, target));
+  }
+
+  public Application deployApplication(File app, String appName, String targetId) {
+    MultiPart body = buildRequestBody(app, appName, targetId);
     Response response = post(uri, APPLICATIONS, Entity.entity(body, body.getMediaType()));
+    invalidate(APPLICATIONS_INVENTORY);
     validateStatusSuccess(response);
     return response.readEntity(Application.class);
   }
 
   public Application redeployApplication(int applicationId, File app, String appName, TargetType targetType, String target) {
-    MultiPart body = buildRequestBody(app, appName, targetType, target);
+    return redeployApplication(applicationId, app, appName, findTargetId(targetType, target));
+  }
+
+  public Application redeployApplication(int applicationId, File app, String appName, String targetId) {
+    MultiPart body = buildRequestBody(app, appName, targetId);
     Response response = patch(uri, APPLICATIONS + "/" + applicationId, Entity.entity(body, body.getMediaType()));
+    invalidate(APPLICATIONS_INVENTORY);
     validateStatusSuccess(response);
     return response.readEntity(Application.class);
   }
 
-  private MultiPart buildRequestBody(File app, String appName, TargetType targetType, String target) {
-    String id = getId(targetType, target);
+  private MultiPart buildRequestBody(File app, String appName, String targetId) {
     FileDataBodyPart applicationPart = new FileDataBodyPart("file", app);
     MultiPart body = new FormDataMultiPart()
         .field("artifactName", appName)
-        .field("targetId", id)
+        .field("targetId", targetId)
         .bodyPart(applicationPart);
     return body;
   }
 
-  private String getId(TargetType targetType, String target) {
+  public String findTargetId(TargetType targetType, String target) {
     String id = null;
     switch (targetType) {
       case server:
@@ -112,7 +131,13 @@ public class ArmApi extends AbstractMuleApi {
   }
 
   public Applications getApplications() {
-    return get(uri, APPLICATIONS, Applications.class);
+    return cached(APPLICATIONS_INVENTORY, new Callable<Applications>() {
+
+      @Override
+      public Applications call() {
+        return get(uri, APPLICATIONS, Applications.class);
+      }
+    });
   }
 
   public Target findServerByName(String name) {
@@ -127,8 +152,14 @@ public class ArmApi extends AbstractMuleApi {
     return findTargetByName(name, CLUSTERS);
   }
 
-  private Target findTargetByName(String name, String path) {
-    Targets response = get(uri, path, Targets.class);
+  private Target findTargetByName(String name, final String path) {
+    Targets response = cached("arm." + path, new Callable<Targets>() {
+
+      @Override
+      public Targets call() {
+        return get(uri, path, Targets.class);
+      }
+    });
     if (response.data == null) // Workaround because an empty array in the response is mapped as null
     {
       throw new RuntimeException("Couldn't find target named [" + name + "]");
@@ -142,12 +173,21 @@ public class ArmApi extends AbstractMuleApi {
   }
 
   public Integer findApplication(String name, TargetType targetType, String target) {
-    Applications apps = getApplications();
-    Data[] appArray = getApplications().data;
+    if (getApplications().data == null) {
+      return null;
+    }
+    return findApplication(name, findTargetId(targetType, target));
+  }
+
+  public Integer findApplication(String name, String targetId) {
+    return findApplication(getApplications(), name, targetId);
+  }
+
+  public Integer findApplication(Applications applications, String name, String targetId) {
+    Data[] appArray = applications.data;
     if (appArray == null) {
       return null;
     }
-    String targetId = getId(targetType, target);
     for (int i = 0; i < appArray.length; i++) {
       if (name.equals(appArray[i].artifact.name) && targetId.equals(appArray[i].target.id)) {
         return appArray[i].id;
@@ -156,17 +196,40 @@ public class ArmApi extends AbstractMuleApi {
     return null;
   }
 
+  public ArmApi setTlsConfiguration(TlsConfiguration tlsConfiguration) {
+    this.tlsConfiguration = tlsConfiguration;
+    return this;
+  }
+
+  @Override
+  public ArmApi setMetrics(DeploymentMetrics metrics) {
+    super.setMetrics(metrics);
+    return this;
+  }
+
   protected void configureSecurityContext(ClientBuilder builder) {
-    if (armInsecure) {
-      try {
-        SSLContext sslcontext = SSLContext.getInstance("TLS");
-        sslcontext.init(null, new TrustManager[] {new TrustAllManager()}, new java.security.SecureRandom());
-        builder.hostnameVerifier(new DummyHostnameVerifier()).sslContext(sslcontext);
-      } catch (KeyManagementException | NoSuchAlgorithmException e) {
-        throw new RuntimeException(e);
+    try {
+      SSLContext sslContext;
+      if (armInsecure) {
+        sslContext = getInsecureContext();
+        builder.hostnameVerifier(new DummyHostnameVerifier());
+      } else if (tlsConfiguration.isDefault()) {
+        sslContext = SSLContext.getDefault();
+      } else {
+        sslContext = TlsContexts.get(URI.create(uri).getHost(), tlsConfiguration);
       }
+      builder.sslContext(new MeteredSslContext(sslContext, metrics));
+    } catch (GeneralSecurityException | IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
 
+  private static synchronized SSLContext getInsecureContext() throws GeneralSecurityException {
+    if (insecureContext == null) {
+      insecureContext = SSLContext.getInstance("TLS");
+      insecureContext.init(null, new TrustManager[] {new TrustAllManager()}, null);
     }
+    return insecureContext;
   }
 
   private static class DummyHostnameVerifier implements HostnameVerifier {
@@ -8,10 +8,16 @@ package org.mule.tools.maven.plugin.mule.arm;
 
 import org.mule.tools.maven.plugin.mule.AbstractDeployer;
 import org.mule.tools.maven.plugin.mule.ApiException;
+import org.mule.tools.maven.plugin.mule.ApiSessionCache;
 import org.mule.tools.maven.plugin.mule.DeploymentException;
+import org.mule.tools.maven.plugin.mule.DeploymentMetrics;
+import org.mule.tools.maven.plugin.mule.HttpTransport;
+import org.mule.tools.maven.plugin.mule.StageGraph;
 import org.mule.tools.maven.plugin.mule.TargetType;
+import org.mule.tools.maven.plugin.mule.TlsConfiguration;
 
 import java.io.File;
+import java.util.concurrent.Callable;
 
 import org.apache.maven.plugin.logging.Log;
 
@@ -20,32 +26,107 @@ public class ArmDeployer extends AbstractDeployer {
   private final TargetType targetType;
   private final String target;
   private final ArmApi armApi;
+  private DeploymentMetrics metrics = new DeploymentMetrics();
 
   public ArmDeployer(String uri, String username, String password, String environment, TargetType targetType, String target,
                      File application, String applicationName, Log log, String businessGroup, boolean armInsecure) {
+    this(targetType, target, application, applicationName, log,
+         new ArmApi(log, uri, username, password, environment, businessGroup, armInsecure));
+  }
+
+  public ArmDeployer(TargetType targetType, String target, File application, String applicationName, Log log, ArmApi armApi) {
     super(applicationName, application, log);
     this.targetType = targetType;
     this.target = target;
-    armApi = new ArmApi(log, uri, username, password, environment, businessGroup, armInsecure);
+    this.armApi = armApi;
+  }
+
+  public ArmDeployer setSessionCache(ApiSessionCache cache) {
+    armApi.setSessionCache(cache);
+    return this;
+  }
+
+  public ArmDeployer setTlsConfiguration(TlsConfiguration tlsConfiguration) {
+    armApi.setTlsConfiguration(tlsConfiguration);
+    return this;
+  }
+
+  public ArmDeployer setMetrics(DeploymentMetrics metrics) {
+    this.metrics = metrics;
+    armApi.setMetrics(metrics);
+    return this;
+  }
+
+  public ArmDeployer setTransport(HttpTransport transport) {
+    armApi.setTransport(transport);
+    return this;
   }
 
+  @Override
+  public void close() {
+    armApi.close();
+  }
+
+  /**
+   * Checks the application file while authenticating, then looks up the deployed applications and the target at the same
+   * time before uploading.
+   */
   @Override
   public void deploy() throws DeploymentException {
-    try {
-      armApi.init();
-      Integer applicationId = armApi.findApplication(getApplicationName(), targetType, target);
-      if (applicationId == null) {
-        info("Deploying application " + getApplicationName());
-        armApi.deployApplication(getApplicationFile(), getApplicationName(), targetType, target);
-      } else {
-        String alreadyExistsMessage = "Found application %s on %s %s. Redeploying application...";
-        info(String.format(alreadyExistsMessage, getApplicationName(), targetType.toString(), target));
-        armApi.redeployApplication(applicationId, getApplicationFile(), getApplicationName(), targetType, target);
-      }
+    try (StageGraph graph = new StageGraph("deploy", 3, metrics)) {
+      StageGraph.Stage<Long> artifact = graph.add("artifact", new Callable<Long>() {
+
+        @Override
+        public Long call() throws DeploymentException {
+          return checkApplicationFile();
+        }
+      });
+      final StageGraph.Stage<Void> session = graph.add("session", new Callable<Void>() {
+
+        @Override
+        public Void call() {
+          armApi.init();
+          return null;
+        }
+      });
+      final StageGraph.Stage<Applications> applications = graph.add("applications", new Callable<Applications>() {
+
+        @Override
+        public Applications call() {
+          return armApi.getApplications();
+        }
+      }, session);
+      final StageGraph.Stage<String> targetId = graph.add("target", new Callable<String>() {
+
+        @Override
+        public String call() {
+          return armApi.findTargetId(targetType, target);
+        }
+      }, session);
+      StageGraph.Stage<Void> upload = graph.add("upload", new Callable<Void>() {
+
+        @Override
+        public Void call() {
+          upload(armApi.findApplication(applications.get(), getApplicationName(), targetId.get()), targetId.get());
+          return null;
+        }
+      }, artifact, applications, targetId);
+      graph.await(upload);
     } catch (ApiException e) {
       error("Failed: " + e.getMessage());
       throw new DeploymentException("Failed to deploy application " + getApplicationName(), e);
     }
   }
 
+  private void upload(Integer applicationId, String targetId) {
+    if (applicationId == null) {
+      info("Deploying application " + getApplicationName());
+      armApi.deployApplication(getApplicationFile(), getApplicationName(), targetId);
+    } else {
+      String alreadyExistsMessage = "Found application %s on %s %s. Redeploying application...";
+      info(String.format(alreadyExistsMessage, getApplicationName(), targetType.toString(), target));
+      armApi.redeployApplication(applicationId, getApplicationFile(), getApplicationName(), targetId);
+    }
+  }
+
 }
@@ -14,6 +14,7 @@ public class Application {
   public String domain; // "example-app2"
   public String fullDomain; // "example-app2.cloudhub.io"
   public String status; // "UNDEPLOYED"
+  public String deploymentUpdateStatus; // "DEPLOYING", only set while an update is in progress or after it failed
   public Integer workers; // 1
   public String workerType; // "Medium"
   public String muleVersion; // "3.6.1"
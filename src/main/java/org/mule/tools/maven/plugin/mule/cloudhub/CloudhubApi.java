@@ -7,8 +7,12 @@
 package org.mule.tools.maven.plugin.mule.cloudhub;
 
 import java.io.File;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.GenericType;
@@ -27,6 +31,9 @@ public class CloudhubApi extends AbstractMuleApi {
   public static final String APPLICATION_UPDATE_PATH = "/cloudhub/api/v2/applications/%s";
   public static final String APPLICATIONS_FILES_PATH = "/cloudhub/api/v2/applications/%s/files";
   public static final String DOMAINS_PATH = "/cloudhub/api/applications/domains/";
+  public static final String DEPLOYMENTS_PATH = "/cloudhub/api/v2/applications/%s/deployments";
+  public static final String DEPLOYMENT_LOGS_PATH = "/cloudhub/api/v2/applications/%s/deployments/%s/logs";
+  private static final String APPLICATIONS_INVENTORY = "cloudhub.applications";
   public static final String CREATE_REQUEST_TEMPLATE = "{" +
       "  \"domain\": \"%s\"," +
       "  \"region\": \"%s\"," +
@@ -51,6 +58,7 @@ public class CloudhubApi extends AbstractMuleApi {
                                        Map<String, String> properties) {
     Entity<String> json = createApplicationRequest(appName, region, muleVersion, workers, workerType, properties);
     Response response = post(uri, APPLICATIONS_PATH, json);
+    invalidate(APPLICATIONS_INVENTORY);
     if (response.getStatus() == 201) // Created
     {
       return response.readEntity(Application.class);
@@ -96,6 +104,7 @@ public class CloudhubApi extends AbstractMuleApi {
                                 Map<String, String> properties) {
     Entity<String> json = updateApplicationRequest(region, muleVersion, workers, workerType, properties);
     Response response = put(uri, String.format(APPLICATION_UPDATE_PATH, appName), json);
+    invalidate(APPLICATIONS_INVENTORY);
     if (response.getStatus() != 200 && response.getStatus() != 301) // OK || Not modified
     {
       throw new ApiException(response);
@@ -108,8 +117,24 @@ public class CloudhubApi extends AbstractMuleApi {
    * @return The details of an application, or null if it doesn't exist.
    */
   public Application getApplication(String appName) {
-    Response response = get(uri, APPLICATIONS_PATH + "/" + appName);
+    return readApplication(get(uri, APPLICATIONS_PATH + "/" + appName));
+  }
 
+  /**
+   * Looks up an application by its name without waiting for the response.
+   * @return The details of an application, or null if it doesn't exist.
+   */
+  public CompletableFuture<Application> getApplicationAsync(String appName) {
+    return getAsync(uri, APPLICATIONS_PATH + "/" + appName).thenApply(new Function<Response, Application>() {
+
+      @Override
+      public Application apply(Response response) {
+        return readApplication(response);
+      }
+    });
+  }
+
+  private Application readApplication(Response response) {
     if (response.getStatus() == 200) {
       return response.readEntity(Application.class);
     } else if (response.getStatus() == 404) // Not found
@@ -121,10 +146,55 @@ public class CloudhubApi extends AbstractMuleApi {
   }
 
   public List<Application> getApplications() {
-    Response response = get(uri, APPLICATIONS_PATH);
+    return cached(APPLICATIONS_INVENTORY, new Callable<List<Application>>() {
+
+      @Override
+      public List<Application> call() {
+        final GenericType<List<Application>> type = new GenericType<List<Application>>() {};
+        return readShared(uri, APPLICATIONS_PATH, type.getType(), new Callable<List<Application>>() {
+
+          @Override
+          public List<Application> call() {
+            Response response = get(uri, APPLICATIONS_PATH);
+
+            if (response.getStatus() == 200) {
+              return response.readEntity(type);
+            } else {
+              throw new ApiException(response);
+            }
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * @return The deployments of an application, the most recent first.
+   */
+  public Deployment[] getDeployments(String appName) {
+    Map<String, Object> query = new LinkedHashMap<>();
+    query.put("orderByDate", "DESC");
+    Response response = get(uri, String.format(DEPLOYMENTS_PATH, appName), query);
 
     if (response.getStatus() == 200) {
-      return response.readEntity(new GenericType<List<Application>>() {});
+      Deployment[] deployments = response.readEntity(Deployments.class).data;
+      return deployments == null ? new Deployment[0] : deployments;
+    } else {
+      throw new ApiException(response);
+    }
+  }
+
+  /**
+   * Reads the log records of a deployment logged from a given time on.
+   * @param startTime Time in milliseconds of the oldest record to read, inclusive.
+   */
+  public List<LogRecord> getDeploymentLogs(String appName, String deploymentId, long startTime) {
+    Map<String, Object> query = new LinkedHashMap<>();
+    query.put("startTime", startTime);
+    Response response = get(uri, String.format(DEPLOYMENT_LOGS_PATH, appName, deploymentId), query);
+
+    if (response.getStatus() == 200) {
+      return response.readEntity(new GenericType<List<LogRecord>>() {});
     } else {
       throw new ApiException(response);
     }
@@ -150,27 +220,63 @@ public class CloudhubApi extends AbstractMuleApi {
     changeApplicationState(appName, "STOP");
   }
 
+  /**
+   * Stops the application without waiting for the response.
+   */
+  public CompletableFuture<Void> stopApplicationAsync(String appName) {
+    return postAsync(uri, APPLICATIONS_PATH + "/" + appName + "/status", stateEntity("STOP"))
+        .thenApply(new Function<Response, Void>() {
+
+          @Override
+          public Void apply(Response response) {
+            checkStateChanged(response);
+            return null;
+          }
+        });
+  }
+
   private void changeApplicationState(String appName, String state) {
-    Entity<String> json = Entity.json("{\"status\": \"" + state + "\"}");
-    Response response = post(uri, APPLICATIONS_PATH + "/" + appName + "/status", json);
+    checkStateChanged(post(uri, APPLICATIONS_PATH + "/" + appName + "/status", stateEntity(state)));
+  }
+
+  private Entity<String> stateEntity(String state) {
+    return Entity.json("{\"status\": \"" + state + "\"}");
+  }
+
+  private void checkStateChanged(Response response) {
+    invalidate(APPLICATIONS_INVENTORY);
 
     if (response.getStatus() != 200 && response.getStatus() != 304) {
       throw new ApiException(response);
     }
+  }
 
+  public void deleteApplication(String appName) {
+    checkDeleted(delete(uri, APPLICATIONS_PATH + "/" + appName));
   }
 
+  /**
+   * Deletes the application without waiting for the response.
+   */
+  public CompletableFuture<Void> deleteApplicationAsync(String appName) {
+    return deleteAsync(uri, APPLICATIONS_PATH + "/" + appName).thenApply(new Function<Response, Void>() {
+
+      @Override
+      public Void apply(Response response) {
+        checkDeleted(response);
+        return null;
+      }
+    });
+  }
 
-  public void deleteApplication(String appName) {
-    Response response = delete(uri, APPLICATIONS_PATH + "/" + appName);
+  private void checkDeleted(Response response) {
+    invalidate(APPLICATIONS_INVENTORY);
 
     if (response.getStatus() != 200 && response.getStatus() != 204) {
       throw new ApiException(response);
     }
-
   }
 
-
   public boolean isNameAvailable(String appName) {
     Response response = get(uri, DOMAINS_PATH + appName);
 
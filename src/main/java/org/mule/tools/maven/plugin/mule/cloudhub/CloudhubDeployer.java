@@ -8,12 +8,18 @@ package org.mule.tools.maven.plugin.mule.cloudhub;
 
 import org.mule.tools.maven.plugin.mule.AbstractDeployer;
 import org.mule.tools.maven.plugin.mule.ApiException;
+import org.mule.tools.maven.plugin.mule.ApiSessionCache;
 import org.mule.tools.maven.plugin.mule.DeploymentException;
+import org.mule.tools.maven.plugin.mule.DeploymentMetrics;
+import org.mule.tools.maven.plugin.mule.HttpTransport;
+import org.mule.tools.maven.plugin.mule.StageGraph;
 
 import com.fasterxml.jackson.databind.util.JSONPObject;
 
 import java.io.File;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.WebTarget;
@@ -32,6 +38,9 @@ public class CloudhubDeployer extends AbstractDeployer {
   private final Integer workers;
   private final String workerType;
   private final Map<String, String> properties;
+  private DeploymentMetrics metrics = new DeploymentMetrics();
+  private boolean waitForDeployment;
+  private long deploymentTimeout;
 
   public CloudhubDeployer(String uri, String username, String password, String environment, String applicationName,
                           File application,
@@ -46,54 +55,152 @@ public class CloudhubDeployer extends AbstractDeployer {
     this.properties = properties;
   }
 
+  public CloudhubDeployer setSessionCache(ApiSessionCache cache) {
+    cloudhubApi.setSessionCache(cache);
+    return this;
+  }
+
+  public CloudhubDeployer setMetrics(DeploymentMetrics metrics) {
+    this.metrics = metrics;
+    cloudhubApi.setMetrics(metrics);
+    return this;
+  }
+
+  /**
+   * Waits for the application to be started on all its workers after deploying it.
+   */
+  public CloudhubDeployer setWaitForDeployment(boolean waitForDeployment, long deploymentTimeout) {
+    this.waitForDeployment = waitForDeployment;
+    this.deploymentTimeout = deploymentTimeout;
+    return this;
+  }
+
+  public CloudhubDeployer setTransport(HttpTransport transport) {
+    cloudhubApi.setTransport(transport);
+    return this;
+  }
+
   @Override
-  public void deploy() throws DeploymentException {
-    cloudhubApi.init();
+  public void close() {
+    cloudhubApi.close();
+  }
 
+  /**
+   * Checks the application file while authenticating, then checks the name and looks up the existing applications at the
+   * same time before creating or updating the application.
+   */
+  @Override
+  public void deploy() throws DeploymentException {
     info("Deploying application " + getApplicationName() + " to Cloudhub");
+    final DeploymentTracker tracker = new DeploymentTracker(cloudhubApi, getApplicationName(), getLog(), metrics);
 
-    if (!getApplicationFile().exists()) {
-      throw new DeploymentException("Application file " + getApplicationFile() + " does not exist.");
-    }
+    try (StageGraph graph = new StageGraph("deploy", 3, metrics)) {
+      StageGraph.Stage<Long> artifact = graph.add("artifact", new Callable<Long>() {
 
-    try {
-      boolean domainAvailable = cloudhubApi.isNameAvailable(getApplicationName());
+        @Override
+        public Long call() throws DeploymentException {
+          return checkApplicationFile();
+        }
+      });
+      StageGraph.Stage<Void> session = graph.add("session", new Callable<Void>() {
 
-      if (domainAvailable) {
-        info("Creating application " + getApplicationName());
-        cloudhubApi.createApplication(getApplicationName(), region, muleVersion, workers, workerType, properties);
-      } else {
-        Application app = findApplicationFromCurrentUser(getApplicationName());
+        @Override
+        public Void call() {
+          cloudhubApi.init();
+          return null;
+        }
+      });
+      final StageGraph.Stage<Boolean> available = graph.add("availability", new Callable<Boolean>() {
 
-        if (app != null) {
-          info("Application " + getApplicationName() + " already exists, redeploying");
+        @Override
+        public Boolean call() {
+          return cloudhubApi.isNameAvailable(getApplicationName());
+        }
+      }, session);
+      // Only needed for redeployments, the most common case, so it is fetched without waiting for the name check
+      final StageGraph.Stage<List<Application>> applications = graph.add("applications", new Callable<List<Application>>() {
 
-          String updateRegion = (region == null) ? app.region : region;
-          String updateMuleVersion = (muleVersion == null) ? app.muleVersion : muleVersion;
-          Integer updateWorkers = (workers == null) ? app.workers : workers;
-          String updateWorkerType = (workerType == null) ? app.workerType : workerType;
+        @Override
+        public List<Application> call() {
+          return cloudhubApi.getApplications();
+        }
+      }, session);
+      StageGraph.Stage<Void> configure = graph.add("configure", new Callable<Void>() {
 
-          cloudhubApi.updateApplication(getApplicationName(), updateRegion, updateMuleVersion, updateWorkers, updateWorkerType,
-                                        properties);
-        } else {
-          error("Domain " + getApplicationName() + " is not available. Aborting.");
-          throw new DeploymentException("Domain " + getApplicationName() + " is not available. Aborting.");
+        @Override
+        public Void call() throws DeploymentException {
+          configure(available.get(), applications.get());
+          return null;
         }
+      }, available, applications, artifact);
+      StageGraph.Stage<Void> uploadReady = configure;
+      if (waitForDeployment) {
+        // Taken once the application is configured, so only the deployment started by the upload is waited for
+        uploadReady = graph.add("snapshot", new Callable<Void>() {
+
+          @Override
+          public Void call() {
+            tracker.snapshot();
+            return null;
+          }
+        }, configure);
       }
+      StageGraph.Stage<Void> upload = graph.add("upload", new Callable<Void>() {
 
-      info("Uploading application contents " + getApplicationName());
-      cloudhubApi.uploadFile(getApplicationName(), getApplicationFile());
+        @Override
+        public Void call() {
+          info("Uploading application contents " + getApplicationName());
+          cloudhubApi.uploadFile(getApplicationName(), getApplicationFile());
 
-      info("Starting application " + getApplicationName());
-      cloudhubApi.startApplication(getApplicationName());
+          info("Starting application " + getApplicationName());
+          cloudhubApi.startApplication(getApplicationName());
+          return null;
+        }
+      }, uploadReady);
+      StageGraph.Stage<Void> last = upload;
+      if (waitForDeployment) {
+        last = graph.add("started", new Callable<Void>() {
+
+          @Override
+          public Void call() throws DeploymentException {
+            tracker.await(deploymentTimeout);
+            return null;
+          }
+        }, upload);
+      }
+      graph.await(last);
     } catch (ApiException e) {
       error("Failed: " + e.getMessage());
       throw new DeploymentException("Failed to deploy application " + getApplicationName(), e);
     }
   }
 
-  private Application findApplicationFromCurrentUser(String appName) {
-    for (Application app : cloudhubApi.getApplications()) {
+  private void configure(boolean domainAvailable, List<Application> applications) throws DeploymentException {
+    if (domainAvailable) {
+      info("Creating application " + getApplicationName());
+      cloudhubApi.createApplication(getApplicationName(), region, muleVersion, workers, workerType, properties);
+    } else {
+      Application app = findApplication(applications, getApplicationName());
+
+      if (app != null) {
+        info("Application " + getApplicationName() + " already exists, redeploying");
+
+        String updateRegion = (region == null) ? app.region : region;
+        String updateMuleVersion = (muleVersion == null) ? app.muleVersion : muleVersion;
+        Integer updateWorkers = (workers == null) ? app.workers : workers;
+        String updateWorkerType = (workerType == null) ? app.workerType : workerType;
+
+        cloudhubApi.updateApplication(getApplicationName(), updateRegion, updateMuleVersion, updateWorkers, updateWorkerType,
+                                      properties);
+      } else {
+        error("Domain " + getApplicationName() + " is not available. Aborting.");
+        throw new DeploymentException("Domain " + getApplicationName() + " is not available. Aborting.");
+      }
+    }
+  }
+
+  private Application findApplication(List<Application> applications, String appName) {
+    for (Application app : applications) {
       if (appName.equals(app.domain)) {
         return app;
       }
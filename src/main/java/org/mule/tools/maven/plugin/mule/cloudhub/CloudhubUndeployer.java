@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule.cloudhub;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import org.mule.tools.maven.plugin.mule.DeploymentMetrics;
+import org.mule.tools.maven.plugin.mule.ParallelExecutor;
+import org.mule.tools.maven.plugin.mule.ParallelExecutor.AsyncTask;
+import org.mule.tools.maven.plugin.mule.UndeployMode;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Stops or deletes CloudHub applications, several of them at the same time. Applications are named or matched with
+ * <code>*</code> and <code>?</code> wildcards against a single read of the environment's applications, and all requests
+ * share the same authenticated session. Deleting doesn't stop the application first, so its workers are released with a
+ * single request. Requests are sent asynchronously from the calling thread, so no thread is held per application.
+ */
+public class CloudhubUndeployer {
+
+  public static final int DEFAULT_THREADS = 8;
+
+  private static final long INITIAL_POLLING_DELAY = 1000;
+  private static final long MAX_POLLING_DELAY = 10000;
+
+  private final CloudhubApi api;
+  private final Log log;
+  private final List<String> applicationNames;
+  private UndeployMode mode = UndeployMode.stop;
+  private int threads = DEFAULT_THREADS;
+  private long timeout = 300000;
+  private boolean failIfNotExists = true;
+  private DeploymentMetrics metrics = new DeploymentMetrics();
+
+  /**
+   * @param applicationNames Names of the applications, or patterns with <code>*</code> and <code>?</code> wildcards.
+   */
+  public CloudhubUndeployer(CloudhubApi api, Log log, List<String> applicationNames) {
+    this.api = api;
+    this.log = log;
+    this.applicationNames = applicationNames;
+  }
+
+  public CloudhubUndeployer setMode(UndeployMode mode) {
+    this.mode = mode;
+    return this;
+  }
+
+  /**
+   * Sets how many applications are undeployed at the same time, that is, how many requests are in flight.
+   */
+  public CloudhubUndeployer setThreads(int threads) {
+    this.threads = Math.max(1, threads);
+    return this;
+  }
+
+  /**
+   * Sets the milliseconds to wait for each application to be gone in {@link UndeployMode#deleteAndWait} mode.
+   */
+  public CloudhubUndeployer setTimeout(long timeout) {
+    this.timeout = timeout;
+    return this;
+  }
+
+  /**
+   * When set to false, names and patterns that match no application are logged instead of failing.
+   */
+  public CloudhubUndeployer setFailIfNotExists(boolean failIfNotExists) {
+    this.failIfNotExists = failIfNotExists;
+    return this;
+  }
+
+  public CloudhubUndeployer setMetrics(DeploymentMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  public void execute() throws MojoExecutionException {
+    long start = System.nanoTime();
+    api.init();
+    Set<String> domains = findApplications();
+    Map<String, Throwable> failures = new LinkedHashMap<>();
+    try {
+      Map<String, Long> undeployed = ParallelExecutor.invokeAllAsync(domains, threads, new AsyncTask<String, Long>() {
+
+        @Override
+        public CompletableFuture<Long> start(String domain) {
+          return undeploy(domain);
+        }
+      }, failures);
+      if (mode == UndeployMode.deleteAndWait) {
+        awaitDeleted(undeployed, failures);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Interrupted while undeploying applications " + domains, e);
+    }
+    checkFailures(failures);
+    metrics.record("cloudhub.undeployed.count", domains.size());
+    metrics.elapsed("undeploy.millis", start);
+  }
+
+  private Set<String> findApplications() throws MojoExecutionException {
+    List<String> existing = new ArrayList<>();
+    for (Application application : api.getApplications()) {
+      existing.add(application.domain);
+    }
+    Set<String> domains = new TreeSet<>();
+    for (String pattern : applicationNames) {
+      boolean found = false;
+      for (String domain : existing) {
+        if (FilenameUtils.wildcardMatch(domain, pattern)) {
+          domains.add(domain);
+          found = true;
+        }
+      }
+      if (!found) {
+        if (failIfNotExists) {
+          throw new MojoExecutionException("Application " + pattern + " not found.");
+        }
+        log.warn("Application " + pattern + " not found.");
+      }
+    }
+    return domains;
+  }
+
+  /**
+   * Sends the request that stops or deletes the application.
+   *
+   * @return The time the request was sent, in nanoseconds.
+   */
+  private CompletableFuture<Long> undeploy(String domain) {
+    final long start = System.nanoTime();
+    CompletableFuture<Void> request;
+    if (mode == UndeployMode.stop) {
+      log.info("Stopping application " + domain);
+      request = api.stopApplicationAsync(domain);
+    } else {
+      log.info("Deleting application " + domain);
+      request = api.deleteApplicationAsync(domain);
+    }
+    return request.thenApply(new Function<Void, Long>() {
+
+      @Override
+      public Long apply(Void result) {
+        return start;
+      }
+    });
+  }
+
+  /**
+   * Polls the deleted applications, all of them at the same time, until they are gone. Each application gets
+   * <code>timeout</code> milliseconds from its deletion.
+   *
+   * @param deleted The time each application was deleted, in nanoseconds.
+   */
+  private void awaitDeleted(Map<String, Long> deleted, Map<String, Throwable> failures) throws InterruptedException {
+    Map<String, Long> waiting = new LinkedHashMap<>(deleted);
+    long delay = INITIAL_POLLING_DELAY;
+    while (true) {
+      Map<String, Application> applications =
+          ParallelExecutor.invokeAllAsync(waiting.keySet(), threads, new AsyncTask<String, Application>() {
+
+            @Override
+            public CompletableFuture<Application> start(String domain) {
+              return api.getApplicationAsync(domain);
+            }
+          }, failures);
+      waiting.keySet().retainAll(applications.keySet());
+      long remaining = Long.MAX_VALUE;
+      for (Iterator<Map.Entry<String, Long>> domains = waiting.entrySet().iterator(); domains.hasNext();) {
+        Map.Entry<String, Long> domain = domains.next();
+        long millis = NANOSECONDS.toMillis(System.nanoTime() - domain.getValue());
+        if (applications.get(domain.getKey()) == null) {
+          log.info("Application " + domain.getKey() + " deleted in " + millis + " ms");
+          domains.remove();
+        } else if (millis >= timeout) {
+          failures.put(domain.getKey(),
+                       new MojoExecutionException("Application " + domain.getKey() + " wasn't deleted in " + timeout + " ms"));
+          domains.remove();
+        } else {
+          remaining = Math.min(remaining, timeout - millis);
+        }
+      }
+      if (waiting.isEmpty()) {
+        return;
+      }
+      MILLISECONDS.sleep(Math.min(delay, remaining));
+      delay = Math.min(delay * 2, MAX_POLLING_DELAY);
+    }
+  }
+
+  /**
+   * Logs the failure of every application, and fails with the first one.
+   */
+  private void checkFailures(Map<String, Throwable> failures) throws MojoExecutionException {
+    for (Map.Entry<String, Throwable> failure : failures.entrySet()) {
+      log.error("Failed to undeploy application " + failure.getKey() + ": " + failure.getValue().getMessage());
+    }
+    if (failures.isEmpty()) {
+      return;
+    }
+    Map.Entry<String, Throwable> first = failures.entrySet().iterator().next();
+    if (first.getValue() instanceof MojoExecutionException) {
+      throw (MojoExecutionException) first.getValue();
+    }
+    throw new MojoExecutionException("Failed to undeploy application " + first.getKey(), first.getValue());
+  }
+}
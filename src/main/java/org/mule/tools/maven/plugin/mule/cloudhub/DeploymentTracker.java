@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule.cloudhub;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import org.mule.tools.maven.plugin.mule.ApiException;
+import org.mule.tools.maven.plugin.mule.DeploymentException;
+import org.mule.tools.maven.plugin.mule.DeploymentMetrics;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Waits for a CloudHub application to be started on all its workers, streaming the logs of the deployment meanwhile.
+ * <p>
+ * Status is polled with an exponential backoff with jitter, so builds deploying many applications don't poll in lockstep.
+ * Logs are read from the timestamp of the last record shown on, skipping the records already shown with that same timestamp.
+ * The time each worker took to start is recorded as <code>cloudhub.worker.&lt;n&gt;.started.millis</code>, and the time
+ * until the application was started as <code>cloudhub.started.millis</code>.
+ */
+public class DeploymentTracker {
+
+  private static final String STARTED = "STARTED";
+  private static final String DEPLOY_FAILED = "DEPLOY_FAILED";
+  private static final String FAILED = "FAILED";
+
+  private final CloudhubApi api;
+  private final String appName;
+  private final Log log;
+  private final DeploymentMetrics metrics;
+  private final Set<String> previousDeployments = new HashSet<>();
+  private long initialDelay = 1000;
+  private long maxDelay = 15000;
+
+  private final Set<String> startedInstances = new HashSet<>();
+  private long lastLogTimestamp;
+  private final Set<String> lastLogRecords = new HashSet<>();
+  private boolean logsFailed;
+
+  public DeploymentTracker(CloudhubApi api, String appName, Log log, DeploymentMetrics metrics) {
+    this.api = api;
+    this.appName = appName;
+    this.log = log;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Records the deployments the application already has, which are ignored while waiting. Call it right before requesting
+   * the deployment to wait for: the tracker then waits for a deployment that didn't exist at that point, however close in
+   * time to the previous one it is.
+   */
+  public DeploymentTracker snapshot() {
+    previousDeployments.clear();
+    Deployment[] deployments;
+    try {
+      deployments = api.getDeployments(appName);
+    } catch (ApiException e) {
+      // The application doesn't exist yet, so it has no deployments
+      log.debug("Couldn't read the deployments of application " + appName + ": " + e.getMessage());
+      return this;
+    }
+    for (Deployment deployment : deployments) {
+      previousDeployments.add(deployment.deploymentId);
+    }
+    return this;
+  }
+
+  public DeploymentTracker setPollingDelay(long initialDelay, long maxDelay) {
+    this.initialDelay = initialDelay;
+    this.maxDelay = Math.max(initialDelay, maxDelay);
+    return this;
+  }
+
+  /**
+   * Waits until the application and all the workers of its latest deployment are started.
+   *
+   * @throws DeploymentException If the deployment fails or it doesn't complete in time.
+   */
+  public void await(long timeout) throws DeploymentException {
+    long start = System.nanoTime();
+    long delay = initialDelay;
+    log.info("Waiting for application " + appName + " to start");
+    while (true) {
+      Application application = api.getApplication(appName);
+      if (application == null) {
+        throw new DeploymentException("Application " + appName + " doesn't exist");
+      }
+      Deployment deployment = findDeployment(api.getDeployments(appName));
+      if (deployment != null) {
+        tailLogs(deployment);
+        trackInstances(deployment, start);
+      }
+      String failure = getFailure(application, deployment);
+      if (failure != null) {
+        throw new DeploymentException("Deployment of application " + appName + " failed with status " + failure);
+      }
+      if (isStarted(application, deployment)) {
+        long millis = metrics.elapsed("cloudhub.started.millis", start);
+        log.info("Application " + appName + " started in " + millis + " ms");
+        return;
+      }
+      long remaining = timeout - NANOSECONDS.toMillis(System.nanoTime() - start);
+      if (remaining <= 0) {
+        throw new DeploymentException("Application " + appName + " didn't start in " + timeout + " ms");
+      }
+      sleep(Math.min(jitter(delay), remaining));
+      delay = Math.min(delay * 2, maxDelay);
+    }
+  }
+
+  private Deployment findDeployment(Deployment[] deployments) {
+    // Deployments are sorted by date, the most recent first, and the previous ones are ignored until the new one shows up
+    if (deployments.length == 0 || previousDeployments.contains(deployments[0].deploymentId)) {
+      return null;
+    }
+    return deployments[0];
+  }
+
+  private void trackInstances(Deployment deployment, long start) {
+    if (deployment.instances == null) {
+      return;
+    }
+    for (int i = 0; i < deployment.instances.length; i++) {
+      Instance instance = deployment.instances[i];
+      if (STARTED.equals(instance.status) && startedInstances.add(instance.instanceId)) {
+        long millis = metrics.elapsed("cloudhub.worker." + (i + 1) + ".started.millis", start);
+        log.info("Worker " + instance.instanceId + " started in " + millis + " ms");
+      }
+    }
+  }
+
+  private String getFailure(Application application, Deployment deployment) {
+    if (DEPLOY_FAILED.equals(application.status) || DEPLOY_FAILED.equals(application.deploymentUpdateStatus)) {
+      return DEPLOY_FAILED;
+    }
+    if (deployment != null && deployment.instances != null) {
+      for (Instance instance : deployment.instances) {
+        if (FAILED.equals(instance.status) || DEPLOY_FAILED.equals(instance.status)) {
+          return instance.status + " on worker " + instance.instanceId;
+        }
+      }
+    }
+    return null;
+  }
+
+  private boolean isStarted(Application application, Deployment deployment) {
+    if (!STARTED.equals(application.status) || application.deploymentUpdateStatus != null) {
+      return false;
+    }
+    if (deployment == null || deployment.instances == null || deployment.instances.length == 0) {
+      return false;
+    }
+    for (Instance instance : deployment.instances) {
+      if (!STARTED.equals(instance.status)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void tailLogs(Deployment deployment) {
+    if (logsFailed) {
+      return;
+    }
+    List<LogRecord> records;
+    try {
+      records = api.getDeploymentLogs(appName, deployment.deploymentId, lastLogTimestamp);
+    } catch (RuntimeException e) {
+      // Logs are informative only, a failure to read them doesn't affect the deployment
+      log.warn("Couldn't read the logs of application " + appName + ": " + e.getMessage());
+      logsFailed = true;
+      return;
+    }
+    if (records == null) {
+      return;
+    }
+    for (LogRecord record : records) {
+      if (record.event == null || record.event.timestamp == null) {
+        continue;
+      }
+      long timestamp = record.event.timestamp;
+      if (timestamp < lastLogTimestamp || (timestamp == lastLogTimestamp && !lastLogRecords.add(record.recordId))) {
+        continue;
+      }
+      if (timestamp > lastLogTimestamp) {
+        lastLogTimestamp = timestamp;
+        lastLogRecords.clear();
+        lastLogRecords.add(record.recordId);
+      }
+      log.info("[" + appName + " " + record.instanceId + "] " + record.event.priority + " " + record.event.message);
+    }
+  }
+
+  private static long jitter(long delay) {
+    return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+  }
+
+  private static void sleep(long millis) throws DeploymentException {
+    try {
+      MILLISECONDS.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DeploymentException("Interrupted while waiting for the deployment", e);
+    }
+  }
+}
@@ -0,0 +1,15 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule.cloudhub;
+
+public class LogEvent {
+
+  public Long timestamp; // 1500000000000
+  public String priority; // "INFO"
+  public String message; // "Mule is up and kicking (every 5000ms)"
+
+}
@@ -0,0 +1,16 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule.cloudhub;
+
+public class LogRecord {
+
+  public String recordId; // "0-1500000000000-5a1b2c3d4e5f60718293a4b6-0"
+  public String deploymentId; // "5a1b2c3d4e5f60718293a4b5"
+  public String instanceId; // "5a1b2c3d4e5f60718293a4b6-0"
+  public LogEvent event;
+
+}
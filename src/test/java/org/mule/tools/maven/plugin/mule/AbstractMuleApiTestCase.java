@@ -6,13 +6,29 @@
  */
 package org.mule.tools.maven.plugin.mule;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Response;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.junit.Test;
 
 public class AbstractMuleApiTestCase {
 
+  private static final String URI = "https://anypoint.mulesoft.com";
+  private static final String APPLICATIONS = "/cloudhub/api/applications";
+
   private AbstractMuleApi api;
 
   private AbstractMuleApi createApi(String businessgroup) {
@@ -82,4 +98,93 @@ public class AbstractMuleApiTestCase {
     assertThat(result[1], equalTo("leaf"));
   }
 
+  @Test
+  public void logsInAgainOnceWhenTokenExpires() {
+    SessionApi api = new SessionApi(null);
+    api.init();
+    api.expiredTokens.add("token-1");
+
+    assertThat(api.get(URI, APPLICATIONS).getStatus(), equalTo(200));
+    assertThat(api.logins.get(), equalTo(2));
+    assertThat(api.requests, contains("token-1", "token-2"));
+    api.close();
+  }
+
+  @Test
+  public void asynchronousRequestsLogInAgainWhenTokenExpires() throws Exception {
+    SessionApi api = new SessionApi(null);
+    api.init();
+    api.expiredTokens.add("token-1");
+
+    assertThat(api.getAsync(URI, APPLICATIONS).get().getStatus(), equalTo(200));
+    assertThat(api.logins.get(), equalTo(2));
+    assertThat(api.requests, contains("token-1", "token-2"));
+    api.close();
+  }
+
+  @Test
+  public void retriesOnlyOnce() {
+    SessionApi api = new SessionApi(null);
+    api.init();
+    api.expiredTokens.add("token-1");
+    api.expiredTokens.add("token-2");
+
+    assertThat(api.get(URI, APPLICATIONS).getStatus(), equalTo(401));
+    assertThat(api.requests, contains("token-1", "token-2"));
+    api.close();
+  }
+
+  @Test
+  public void sharedSessionIsRenewedOnce() {
+    ApiSessionCache cache = new ApiSessionCache();
+    SessionApi first = new SessionApi(cache);
+    SessionApi second = new SessionApi(cache);
+    first.init();
+    second.init();
+    first.expiredTokens.add("token-1");
+    second.expiredTokens.add("token-1");
+
+    assertThat(first.get(URI, APPLICATIONS).getStatus(), equalTo(200));
+    assertThat(second.get(URI, APPLICATIONS).getStatus(), equalTo(200));
+    assertThat(first.logins.get() + second.logins.get(), equalTo(2));
+    assertThat(second.requests, contains("token-1", "token-2"));
+    first.close();
+    second.close();
+  }
+
+  /**
+   * Logs in with a new token each time and rejects the requests sent with an expired token.
+   */
+  private static class SessionApi extends AbstractMuleApi {
+
+    private static final AtomicInteger TOKENS = new AtomicInteger();
+
+    private final AtomicInteger logins = new AtomicInteger();
+    private final Set<String> expiredTokens = new HashSet<>();
+    private final List<String> requests = new ArrayList<>();
+
+    SessionApi(ApiSessionCache cache) {
+      super(URI, new SystemStreamLog(), "user", "password", "Production", null);
+      TOKENS.set(0);
+      setSessionCache(cache);
+    }
+
+    @Override
+    protected String[] login() {
+      logins.incrementAndGet();
+      return new String[] {"token-" + TOKENS.incrementAndGet(), "org", "env"};
+    }
+
+    @Override
+    protected Response invoke(WebTarget target, String method, Entity<?> entity) {
+      String token = getRequestScope().split("\\|")[0];
+      requests.add(token);
+      return Response.status(expiredTokens.contains(token) ? 401 : 200).build();
+    }
+
+    @Override
+    protected CompletableFuture<Response> invokeAsync(WebTarget target, String method, Entity<?> entity) {
+      return CompletableFuture.completedFuture(invoke(target, method, entity));
+    }
+  }
 }
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.mule.tools.maven.plugin.mule.agent.AgentApi;
+import org.mule.tools.maven.plugin.mule.agent.AgentApplication;
+import org.mule.tools.maven.plugin.mule.agent.AgentDeployer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+public class AgentDeployerTestCase {
+
+  private static final String APP = "app";
+
+  private DeploymentMetrics metrics = new DeploymentMetrics();
+
+  @Test
+  public void uploadsToAllAgentsAtTheSameTime() throws DeploymentException {
+    CountDownLatch uploads = new CountDownLatch(3);
+    FakeAgentApi[] agents = {new FakeAgentApi("agent1", null), new FakeAgentApi("agent2", null),
+        new FakeAgentApi("agent3", null)};
+    for (FakeAgentApi agent : agents) {
+      agent.uploads = uploads;
+    }
+
+    deployer(false, 10000, agents).deploy();
+
+    for (FakeAgentApi agent : agents) {
+      assertThat(agent.calls, contains("deploy"));
+    }
+    assertThat(metrics.contains("agent.3.upload.millis"), equalTo(true));
+    assertThat(metrics.contains("agent.deploy.millis"), equalTo(true));
+  }
+
+  @Test
+  public void waitsForAllAgentsToStart() throws DeploymentException {
+    FakeAgentApi fast = new FakeAgentApi("fast", null);
+    FakeAgentApi slow = new FakeAgentApi("slow", null);
+    slow.pollsToStart = 3;
+
+    deployer(true, 10000, fast, slow).deploy();
+
+    assertThat(fast.seen, contains("STARTED"));
+    assertThat(slow.seen, contains("DEPLOYING", "DEPLOYING", "STARTED"));
+    assertThat(metrics.contains("agent.1.started.millis"), equalTo(true));
+    assertThat(metrics.contains("agent.2.started.millis"), equalTo(true));
+  }
+
+  @Test
+  public void redeploymentWaitsForTheNewDeployment() throws DeploymentException {
+    FakeAgentApi agent = new FakeAgentApi("agent", "STARTED");
+    agent.pollsToRedeploy = 2;
+    agent.pollsToStart = 2;
+
+    deployer(true, 10000, agent).deploy();
+
+    assertThat(agent.calls, contains("deploy"));
+    assertThat(agent.seen, contains("STARTED", "STARTED", "STARTED", "DEPLOYING", "STARTED"));
+  }
+
+  @Test
+  public void redeploymentFailsIfThePreviousDeploymentIsNeverLeft() {
+    FakeAgentApi agent = new FakeAgentApi("agent", "STARTED");
+    agent.pollsToRedeploy = Integer.MAX_VALUE;
+
+    try {
+      deployer(true, 50, agent).deploy();
+      fail("Deployment should fail");
+    } catch (DeploymentException e) {
+      assertThat(e.getMessage().contains("undeployBeforeRedeploy"), equalTo(true));
+    }
+  }
+
+  @Test
+  public void undeploysBeforeRedeployingWhenConfigured() throws DeploymentException {
+    FakeAgentApi agent = new FakeAgentApi("agent", "STARTED");
+    agent.pollsToStart = 2;
+
+    deployer(true, 10000, agent).setUndeployBeforeRedeploy(true).deploy();
+
+    assertThat(agent.calls, contains("undeploy", "deploy"));
+    assertThat(agent.seen, contains("STARTED", "DEPLOYING", "STARTED"));
+  }
+
+  @Test(expected = DeploymentException.class)
+  public void failsAfterTimeout() throws DeploymentException {
+    FakeAgentApi agent = new FakeAgentApi("agent", null);
+    agent.pollsToStart = Integer.MAX_VALUE;
+
+    deployer(true, 50, agent).deploy();
+  }
+
+  @Test
+  public void reportsFailuresOfAllAgents() {
+    FakeAgentApi failing = new FakeAgentApi("failing", null);
+    failing.failure = new IllegalStateException("unreachable");
+    FakeAgentApi failed = new FakeAgentApi("failed", null);
+    failed.failedDeployment = true;
+    FakeAgentApi working = new FakeAgentApi("working", null);
+
+    try {
+      deployer(true, 10000, failing, failed, working).deploy();
+      fail("Deployment should fail");
+    } catch (DeploymentException e) {
+      assertThat(e.getMessage().contains("failing: unreachable"), equalTo(true));
+      assertThat(e.getMessage().contains("failed: Application app failed to deploy"), equalTo(true));
+      assertThat(e.getMessage().contains("working"), equalTo(false));
+    }
+    assertThat(working.seen, contains("STARTED"));
+  }
+
+  @Test
+  public void undeploysFromAllAgentsReportingFailuresTogether() {
+    FakeAgentApi first = new FakeAgentApi("first", "STARTED");
+    first.failure = new IllegalStateException("unreachable");
+    FakeAgentApi second = new FakeAgentApi("second", "STARTED");
+    FakeAgentApi third = new FakeAgentApi("third", "STARTED");
+    third.failure = new IllegalStateException("refused");
+
+    try {
+      deployer(false, 10000, first, second, third).undeploy();
+      fail("Undeployment should fail");
+    } catch (DeploymentException e) {
+      assertThat(e.getMessage().contains("first: unreachable"), equalTo(true));
+      assertThat(e.getMessage().contains("third: refused"), equalTo(true));
+    }
+    assertThat(second.calls, contains("undeploy"));
+  }
+
+  private AgentDeployer deployer(boolean waitForDeployment, long timeout, AgentApi... agents) {
+    return new AgentDeployer(new SystemStreamLog(), APP, new File(APP + ".zip"), agents).setMetrics(metrics)
+        .setWaitForDeployment(waitForDeployment, timeout).setPollingDelay(1, 5);
+  }
+
+  private static class FakeAgentApi extends AgentApi {
+
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> seen = Collections.synchronizedList(new ArrayList<String>());
+    private volatile String state;
+    private volatile String deployedState;
+    private volatile int pollsToRedeploy;
+    private volatile int pollsToStart = 1;
+    private boolean failedDeployment;
+    private RuntimeException failure;
+    private CountDownLatch uploads;
+
+    FakeAgentApi(String uri, String state) {
+      super(null, uri);
+      this.state = state;
+    }
+
+    @Override
+    public void deployApplication(String applicationName, File file) {
+      if (failure != null) {
+        throw failure;
+      }
+      calls.add("deploy");
+      deployedState = failedDeployment ? "DEPLOYMENT_FAILED" : "DEPLOYING";
+      if (state == null) {
+        pollsToRedeploy = 0;
+      }
+    }
+
+    /**
+     * Completes the upload once all the agents were asked for theirs, so it fails unless the uploads are in flight at the
+     * same time.
+     */
+    @Override
+    public CompletableFuture<Void> deployApplicationAsync(String applicationName, File file) {
+      deployApplication(applicationName, file);
+      if (uploads == null) {
+        return CompletableFuture.completedFuture(null);
+      }
+      uploads.countDown();
+      return CompletableFuture.runAsync(new Runnable() {
+
+        @Override
+        public void run() {
+          try {
+            if (!uploads.await(5, TimeUnit.SECONDS)) {
+              throw new IllegalStateException("Uploads are not concurrent");
+            }
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      });
+    }
+
+    @Override
+    public CompletableFuture<AgentApplication> getApplicationAsync(String appName) {
+      return CompletableFuture.completedFuture(getApplication(appName));
+    }
+
+    @Override
+    public CompletableFuture<Void> undeployApplicationAsync(String appName) {
+      undeployApplication(appName);
+      return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public AgentApplication getApplication(String appName) {
+      // The previous deployment is reported for a few polls after the upload
+      if (deployedState != null && --pollsToRedeploy < 0) {
+        state = deployedState;
+        deployedState = null;
+      }
+      if (state == null) {
+        return null;
+      }
+      if ("DEPLOYING".equals(state) && --pollsToStart <= 0) {
+        state = "STARTED";
+      }
+      seen.add(state);
+      AgentApplication application = new AgentApplication();
+      application.name = appName;
+      application.state = state;
+      return application;
+    }
+
+    @Override
+    public void undeployApplication(String appName) {
+      if (failure != null) {
+        throw failure;
+      }
+      calls.add("undeploy");
+      state = null;
+    }
+  }
+}
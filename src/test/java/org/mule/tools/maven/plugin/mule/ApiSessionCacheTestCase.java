@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+import org.mule.tools.maven.plugin.mule.arm.Applications;
+import org.mule.tools.maven.plugin.mule.arm.ArmApi;
+import org.mule.tools.maven.plugin.mule.cloudhub.Application;
+import org.mule.tools.maven.plugin.mule.cloudhub.CloudhubApi;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ApiSessionCacheTestCase {
+
+  private static final String SCOPE = "https://anypoint.mulesoft.com|org|env";
+
+  private ApiSessionCache cache = new ApiSessionCache();
+  private AtomicInteger loads = new AtomicInteger();
+  private Callable<Integer> loader = new Callable<Integer>() {
+
+    @Override
+    public Integer call() throws Exception {
+      Thread.sleep(20);
+      return loads.incrementAndGet();
+    }
+  };
+
+  @Test
+  public void loadsOnceForConcurrentExecutions() throws Exception {
+    List<Callable<Integer>> executions = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      executions.add(new Callable<Integer>() {
+
+        @Override
+        public Integer call() {
+          return cache.get(SCOPE, "applications", ApiSessionCache.INVENTORY_TTL, loader);
+        }
+      });
+    }
+    for (Integer value : ParallelExecutor.invokeAll(8, executions)) {
+      assertThat(value, equalTo(1));
+    }
+    assertThat(loads.get(), equalTo(1));
+  }
+
+  @Test
+  public void reloadsAfterInvalidation() {
+    cache.get(SCOPE, "applications", ApiSessionCache.INVENTORY_TTL, loader);
+    cache.get(SCOPE, "servers", ApiSessionCache.INVENTORY_TTL, loader);
+    cache.invalidate(SCOPE, "applications");
+    assertThat(cache.get(SCOPE, "applications", ApiSessionCache.INVENTORY_TTL, loader), equalTo(3));
+    assertThat(cache.get(SCOPE, "servers", ApiSessionCache.INVENTORY_TTL, loader), equalTo(2));
+    cache.invalidate(SCOPE);
+    assertThat(cache.get(SCOPE, "servers", ApiSessionCache.INVENTORY_TTL, loader), equalTo(4));
+  }
+
+  @Test
+  public void reloadsExpiredValues() {
+    cache.get(SCOPE, "session", -1, loader);
+    assertThat(cache.get(SCOPE, "session", ApiSessionCache.SESSION_TTL, loader), equalTo(2));
+  }
+
+  @Test
+  public void armAndCloudhubInventoryShareScopeWithoutColliding() {
+    ArmApi arm = new ArmApi(null, "https://anypoint.mulesoft.com", "user", "password", "env", null, false) {
+
+      @Override
+      protected <T> T get(String uri, String path, Class<T> clazz) {
+        return clazz.cast(new Applications());
+      }
+    };
+    CloudhubApi cloudhub = new CloudhubApi("https://anypoint.mulesoft.com", null, "user", "password", "env", null) {
+
+      @Override
+      @SuppressWarnings("unchecked")
+      protected <T> T readShared(String uri, String path, Type type, Callable<T> read) {
+        return (T) new ArrayList<Application>();
+      }
+    };
+    arm.setSessionCache(cache);
+    cloudhub.setSessionCache(cache);
+
+    List<Application> applications = cloudhub.getApplications();
+    Applications armApplications = arm.getApplications();
+    assertThat(cloudhub.getApplications(), equalTo(applications));
+    assertThat(arm.getApplications(), equalTo(armApplications));
+  }
+
+  @Test
+  public void digestsSecrets() {
+    assertThat(ApiSessionCache.digest("Aa"), not(equalTo(ApiSessionCache.digest("BB"))));
+    assertThat(ApiSessionCache.digest("Aa"), equalTo(ApiSessionCache.digest("Aa")));
+    assertThat(ApiSessionCache.digest("Aa").contains("Aa"), equalTo(false));
+  }
+}
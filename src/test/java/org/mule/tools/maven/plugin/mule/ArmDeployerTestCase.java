@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.mule.tools.maven.plugin.mule.arm.Application;
+import org.mule.tools.maven.plugin.mule.arm.Applications;
+import org.mule.tools.maven.plugin.mule.arm.ArmApi;
+import org.mule.tools.maven.plugin.mule.arm.ArmDeployer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ArmDeployerTestCase {
+
+  private static final String APP = "app";
+  private static final String TARGET_ID = "42";
+
+  private File application;
+  private FakeArmApi armApi = new FakeArmApi();
+
+  @Before
+  public void setUp() throws IOException {
+    application = File.createTempFile(APP, ".zip");
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(application);
+  }
+
+  @Test
+  public void uploadsOnceTheTargetAndTheApplicationsAreKnown() throws DeploymentException {
+    deployer().deploy();
+
+    assertThat(armApi.calls.get(0), equalTo("session"));
+    assertThat(armApi.calls.subList(1, 3), containsInAnyOrder("applications", "target"));
+    assertThat(armApi.calls.subList(3, armApi.calls.size()), contains("deploy " + TARGET_ID));
+  }
+
+  @Test
+  public void failedSessionFailsTheDeploy() {
+    armApi.sessionFailure = new ApiException("Invalid credentials", 401, "Unauthorized");
+    try {
+      deployer().deploy();
+      fail("Deployment should fail");
+    } catch (DeploymentException e) {
+      assertThat(e.getCause(), equalTo((Throwable) armApi.sessionFailure));
+    }
+    assertThat(armApi.calls, empty());
+  }
+
+  private ArmDeployer deployer() {
+    return new ArmDeployer(TargetType.server, "server", application, APP, new SystemStreamLog(), armApi)
+        .setMetrics(new DeploymentMetrics());
+  }
+
+  private static class FakeArmApi extends ArmApi {
+
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch lookups = new CountDownLatch(2);
+    private ApiException sessionFailure;
+
+    FakeArmApi() {
+      super(new SystemStreamLog(), null, null, null, null, null, false);
+    }
+
+    @Override
+    public void init() {
+      if (sessionFailure != null) {
+        throw sessionFailure;
+      }
+      calls.add("session");
+    }
+
+    @Override
+    public Applications getApplications() {
+      meet();
+      calls.add("applications");
+      return new Applications();
+    }
+
+    @Override
+    public String findTargetId(TargetType targetType, String target) {
+      meet();
+      calls.add("target");
+      return TARGET_ID;
+    }
+
+    @Override
+    public Application deployApplication(File app, String appName, String targetId) {
+      calls.add("deploy " + targetId);
+      return null;
+    }
+
+    /**
+     * Waits until both lookups are running, so they fail unless they run at the same time.
+     */
+    private void meet() {
+      lookups.countDown();
+      try {
+        if (!lookups.await(5, TimeUnit.SECONDS)) {
+          throw new IllegalStateException("Lookups are not concurrent");
+        }
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+}
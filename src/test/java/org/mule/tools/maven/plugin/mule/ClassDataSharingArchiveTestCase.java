@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClassDataSharingArchiveTestCase {
+
+  private static final MuleJvm JDK_17 = new MuleJvm(new File("/opt/jdk-17/bin/java"), "17.0.2");
+
+  private File cacheDirectory;
+  private File muleHome;
+
+  @Before
+  public void setUp() throws IOException {
+    cacheDirectory = Files.createTempDirectory("cds").toFile();
+    muleHome = new File(cacheDirectory.getParentFile(), "mule-enterprise-standalone-3.8.0");
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(cacheDirectory);
+  }
+
+  @Test
+  public void requiresJdkOfMuleToDumpArchives() {
+    assertThat(ClassDataSharingArchive.isSupported(JDK_17), equalTo(true));
+    assertThat(ClassDataSharingArchive.isSupported(new MuleJvm(new File("/opt/jdk-11/bin/java"), "11.0.12")), equalTo(false));
+    assertThat(ClassDataSharingArchive.isSupported(new MuleJvm(null, null)), equalTo(false));
+  }
+
+  @Test
+  public void archivesAreKeyedByJvmOfMule() {
+    File archive = new ClassDataSharingArchive(cacheDirectory, "3.8.0", JDK_17, "app", muleHome).getFile();
+    assertThat(new ClassDataSharingArchive(cacheDirectory, "3.8.0", JDK_17, "app", muleHome).getFile(), equalTo(archive));
+    assertThat(archive.getName().startsWith("mule-3.8.0-jvm-17.0.2-app-"), equalTo(true));
+    assertThat(new ClassDataSharingArchive(cacheDirectory, "3.8.0", new MuleJvm(new File("/usr/lib/jvm/17/bin/java"), "17.0.2"),
+                                           "app", muleHome).getFile(),
+               not(equalTo(archive)));
+    assertThat(new ClassDataSharingArchive(cacheDirectory, "3.8.0", JDK_17, "app", new File(muleHome, "other")).getFile(),
+               not(equalTo(archive)));
+  }
+
+  @Test
+  public void trainingOptionDumpsArchive() throws IOException {
+    ClassDataSharingArchive archive =
+        new ClassDataSharingArchive(new File(cacheDirectory, "cds"), "3.8.0", JDK_17, "app", muleHome);
+    assertThat(archive.getTrainingOption(), equalTo("-XX:ArchiveClassesAtExit=" + archive.getFile().getAbsolutePath()));
+    assertThat(archive.getFile().getParentFile().isDirectory(), equalTo(true));
+    assertThat(archive.exists(), equalTo(false));
+    FileUtils.writeStringToFile(archive.getFile(), "", "UTF-8");
+    assertThat(archive.exists(), equalTo(false));
+    FileUtils.writeStringToFile(archive.getFile(), "archive", "UTF-8");
+    assertThat(archive.exists(), equalTo(true));
+  }
+
+  @Test
+  public void storesBaseline() throws IOException {
+    ClassDataSharingArchive archive = new ClassDataSharingArchive(cacheDirectory, "3.8.0", JDK_17, "app", muleHome);
+    assertThat(archive.getBaseline(), nullValue());
+    archive.setBaseline(12500);
+    assertThat(new ClassDataSharingArchive(cacheDirectory, "3.8.0", JDK_17, "app", muleHome).getBaseline(), equalTo(12500L));
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertThat;
+
+import org.mule.tools.maven.plugin.mule.cloudhub.Application;
+import org.mule.tools.maven.plugin.mule.cloudhub.CloudhubApi;
+import org.mule.tools.maven.plugin.mule.cloudhub.CloudhubUndeployer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+public class CloudhubUndeployerTestCase {
+
+  private FakeApi api = new FakeApi("orders-1", "orders-2", "orders-3", "billing");
+
+  @Test
+  public void deletesMatchingApplications() throws MojoExecutionException {
+    undeployer(UndeployMode.delete, "orders-*").execute();
+
+    assertThat(api.deleted, containsInAnyOrder("orders-1", "orders-2", "orders-3"));
+    assertThat(api.stopped, empty());
+    assertThat(api.sessions.get(), equalTo(1));
+  }
+
+  @Test
+  public void stopsApplications() throws MojoExecutionException {
+    undeployer(UndeployMode.stop, "billing").execute();
+
+    assertThat(api.stopped, containsInAnyOrder("billing"));
+    assertThat(api.deleted, empty());
+  }
+
+  @Test
+  public void waitsUntilDeleted() throws MojoExecutionException {
+    undeployer(UndeployMode.deleteAndWait, "orders-1", "billing").execute();
+
+    assertThat(api.deleted, containsInAnyOrder("orders-1", "billing"));
+    assertThat(api.applications.isEmpty(), equalTo(false));
+    assertThat(api.applications.containsKey("orders-1"), equalTo(false));
+    assertThat(api.applications.containsKey("billing"), equalTo(false));
+  }
+
+  @Test
+  public void keepsAtMostThreadsRequestsInFlight() throws MojoExecutionException {
+    api.requestMillis = 50;
+
+    undeployer(UndeployMode.delete, "orders-*").setThreads(2).execute();
+
+    assertThat(api.deleted, containsInAnyOrder("orders-1", "orders-2", "orders-3"));
+    assertThat(api.maxInFlight.get(), equalTo(2));
+  }
+
+  @Test(expected = MojoExecutionException.class)
+  public void failsWhenNotFound() throws MojoExecutionException {
+    try {
+      undeployer(UndeployMode.delete, "orders-1", "missing").execute();
+    } finally {
+      assertThat(api.deleted, empty());
+    }
+  }
+
+  @Test
+  public void skipsMissingWhenAllowed() throws MojoExecutionException {
+    undeployer(UndeployMode.delete, "orders-1", "missing").setFailIfNotExists(false).execute();
+
+    assertThat(api.deleted, containsInAnyOrder("orders-1"));
+  }
+
+  private CloudhubUndeployer undeployer(UndeployMode mode, String... names) {
+    return new CloudhubUndeployer(api, new SystemStreamLog(), Arrays.asList(names)).setMode(mode).setThreads(4)
+        .setTimeout(10000);
+  }
+
+  private static class FakeApi extends CloudhubApi {
+
+    private final Map<String, AtomicInteger> applications = new ConcurrentHashMap<>();
+    private final List<String> deleted = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> stopped = Collections.synchronizedList(new ArrayList<String>());
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private long requestMillis;
+
+    FakeApi(String... domains) {
+      super("https://anypoint.mulesoft.com", null, "user", "password", "env", null);
+      for (String domain : domains) {
+        applications.put(domain, new AtomicInteger());
+      }
+    }
+
+    @Override
+    public void init() {
+      sessions.incrementAndGet();
+    }
+
+    @Override
+    public List<Application> getApplications() {
+      List<Application> result = new ArrayList<>();
+      for (String domain : applications.keySet()) {
+        result.add(application(domain));
+      }
+      return result;
+    }
+
+    @Override
+    public Application getApplication(String appName) {
+      AtomicInteger reads = applications.get(appName);
+      if (reads == null) {
+        return null;
+      }
+      // Deleted applications are listed once more before they are gone
+      if (deleted.contains(appName) && reads.incrementAndGet() > 1) {
+        applications.remove(appName);
+        return null;
+      }
+      return application(appName);
+    }
+
+    @Override
+    public void deleteApplication(String appName) {
+      deleted.add(appName);
+    }
+
+    @Override
+    public void stopApplication(String appName) {
+      stopped.add(appName);
+    }
+
+    @Override
+    public CompletableFuture<Application> getApplicationAsync(String appName) {
+      return CompletableFuture.completedFuture(getApplication(appName));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteApplicationAsync(String appName) {
+      deleteApplication(appName);
+      return respond();
+    }
+
+    @Override
+    public CompletableFuture<Void> stopApplicationAsync(String appName) {
+      stopApplication(appName);
+      return respond();
+    }
+
+    /**
+     * Responds after <code>requestMillis</code>, recording how many requests were in flight.
+     */
+    private CompletableFuture<Void> respond() {
+      int current = inFlight.incrementAndGet();
+      while (maxInFlight.get() < current) {
+        maxInFlight.compareAndSet(maxInFlight.get(), current);
+      }
+      return CompletableFuture.runAsync(new Runnable() {
+
+        @Override
+        public void run() {
+          try {
+            Thread.sleep(requestMillis);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } finally {
+            inFlight.decrementAndGet();
+          }
+        }
+      });
+    }
+
+    private static Application application(String domain) {
+      Application application = new Application();
+      application.domain = domain;
+      return application;
+    }
+  }
+}
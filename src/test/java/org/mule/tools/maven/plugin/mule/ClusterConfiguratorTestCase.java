@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+import org.mule.test.infrastructure.process.MuleProcessController;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class ClusterConfiguratorTestCase {
+
+  private static final HostResources HOST = new HostResources(16L * 1024 * 1024 * 1024, 8, 8);
+
+  @Test
+  public void clusterIdIsStableAndUniquePerBuild() {
+    File[] build = {new File("target/mule0"), new File("target/mule1")};
+    File[] otherBuild = {new File("other/target/mule0"), new File("other/target/mule1")};
+
+    assertThat(ClusterConfigurator.getClusterId(build), equalTo(ClusterConfigurator.getClusterId(build.clone())));
+    assertThat(ClusterConfigurator.getClusterId(build), not(equalTo(ClusterConfigurator.getClusterId(otherBuild))));
+  }
+
+  @Test
+  public void membersUseAllocatedPorts() {
+    assertThat(ClusterConfigurator.getMembers(Arrays.asList(new PortAllocation(20000, 8), new PortAllocation(20008, 8))),
+               contains("127.0.0.1:20002", "127.0.0.1:20010"));
+  }
+
+  @Test
+  public void nodesWithoutAllocatedPortsUseMulticast() throws Exception {
+    File directory = Files.createTempDirectory("cluster").toFile();
+    try {
+      File[] paths = {new File(directory, "mule0"), new File(directory, "mule1")};
+
+      new ClusterConfigurator().configureCluster(paths, Collections.<MuleProcessController>emptyList());
+
+      for (File path : paths) {
+        Properties properties = readClusterProperties(path);
+        assertThat(properties.getProperty("mule.clusterSize"), equalTo("2"));
+        assertThat(properties.containsKey("mule.cluster.multicastenabled"), equalTo(false));
+        assertThat(properties.containsKey("mule.cluster.nodes"), equalTo(false));
+      }
+    } finally {
+      FileUtils.deleteQuietly(directory);
+    }
+  }
+
+  @Test
+  public void nodesListenOnThePortsOtherNodesListForThem() throws Exception {
+    File directory = Files.createTempDirectory("cluster").toFile();
+    try {
+      File[] paths = {new File(directory, "mule0"), new File(directory, "mule1"), new File(directory, "mule2")};
+      List<PortAllocation> ports =
+          Arrays.asList(new PortAllocation(20000, 8), new PortAllocation(20008, 8), new PortAllocation(20016, 8));
+
+      new ClusterConfigurator().configureCluster(paths, Collections.<MuleProcessController>emptyList(), ports);
+
+      for (int i = 0; i < paths.length; i++) {
+        String port = readClusterProperties(paths[i]).getProperty(ClusterConfigurator.CLUSTER_PORT_PROPERTY);
+        assertThat(ports.get(i).configure(new WrapperConfiguration()).getJvmOptions(),
+                   hasItem("-D" + ClusterConfigurator.CLUSTER_PORT_PROPERTY + "=" + port));
+        for (File other : paths) {
+          String[] members = readClusterProperties(other).getProperty("mule.cluster.nodes").split(",");
+          assertThat(members[i], equalTo("127.0.0.1:" + port));
+        }
+      }
+    } finally {
+      FileUtils.deleteQuietly(directory);
+    }
+  }
+
+  private static Properties readClusterProperties(File muleHome) throws IOException {
+    Properties properties = new Properties();
+    try (InputStream in = new FileInputStream(new File(muleHome, ".mule/mule-cluster.properties"))) {
+      properties.load(in);
+    }
+    return properties;
+  }
+
+  @Test
+  public void budgetOfTheWholeHostLeavesConfigurationEmpty() {
+    HostResources singleCore = new HostResources(16L * 1024 * 1024 * 1024, 1, 8);
+
+    assertThat(new NodeBudget(HOST, 1).configure(new WrapperConfiguration()).isEmpty(), equalTo(true));
+    assertThat(new NodeBudget(singleCore, 2).configure(new WrapperConfiguration()).isEmpty(), equalTo(true));
+  }
+
+  @Test
+  public void nodesShareHostResources() {
+    NodeBudget budget = new NodeBudget(HOST, 16);
+    WrapperConfiguration configuration = budget.configure(new WrapperConfiguration());
+
+    assertThat(configuration.getMaximumMemory(), equalTo(768));
+    assertThat(configuration.getJvmOptions(), contains("-XX:ParallelGCThreads=1", "-XX:ConcGCThreads=1"));
+    assertThat(budget.checkMemory(NodeBudget.MINIMUM_HEAP), equalTo(null));
+    assertThat(new NodeBudget(HOST, 128).checkMemory(NodeBudget.MINIMUM_HEAP), not(equalTo(null)));
+  }
+}
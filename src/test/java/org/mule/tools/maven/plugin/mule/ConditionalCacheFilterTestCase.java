@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static javax.ws.rs.core.HttpHeaders.AUTHORIZATION;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static javax.ws.rs.core.HttpHeaders.ETAG;
+import static javax.ws.rs.core.HttpHeaders.IF_NONE_MATCH;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class ConditionalCacheFilterTestCase {
+
+  private static final String ADDRESS = "https://anypoint.mulesoft.com/hybrid/api/v1/applications";
+  private static final String TOKEN = "bearer 5f1d";
+  private static final String BODY = "{\"data\":[{\"name\":\"app\"}]}";
+  private static final String CHANGED_BODY = "{\"data\":[]}";
+
+  private DeploymentMetrics metrics = new DeploymentMetrics();
+  private ConditionalCacheFilter filter = new ConditionalCacheFilter(metrics);
+
+  @Before
+  public void setUp() {
+    ConditionalCacheFilter.clear();
+  }
+
+  @After
+  public void tearDown() {
+    ConditionalCacheFilter.clear();
+  }
+
+  @Test
+  public void replacesNotModifiedWithKeptBody() throws IOException {
+    assertThat(exchange(request(), ok(BODY, "\"v1\"")), equalTo(BODY));
+
+    ClientRequestContext request = request();
+    filter.filter(request);
+    assertThat(request.getHeaders().getFirst(IF_NONE_MATCH), equalTo((Object) "\"v1\""));
+    ClientResponseContext response = response(304, null);
+    filter.filter(request, response);
+
+    verify(response).setStatus(200);
+    assertThat(response.getHeaders().getFirst(CONTENT_TYPE), equalTo("application/json"));
+    assertThat(entity(response), equalTo(BODY));
+    assertThat(metrics.get("http.cache.revalidated.count"), equalTo(1L));
+    assertThat(metrics.get("http.cache.saved.bytes"), equalTo((long) BODY.length()));
+  }
+
+  @Test
+  public void keepsBodiesPerCredentials() throws IOException {
+    exchange(request(), ok(BODY, "\"v1\""));
+
+    ClientRequestContext request = request("GET", "bearer 9c2e");
+    filter.filter(request);
+    assertThat(request.getHeaders().getFirst(IF_NONE_MATCH), nullValue());
+  }
+
+  @Test
+  public void doesNotKeepBodiesWithoutValidators() throws IOException {
+    ClientRequestContext first = request();
+    ClientResponseContext response = response(200, BODY, CONTENT_TYPE, "application/json");
+    filter.filter(first);
+    filter.filter(first, response);
+    verify(response, never()).setEntityStream(any(InputStream.class));
+
+    ClientRequestContext request = request();
+    filter.filter(request);
+    assertThat(request.getHeaders().getFirst(IF_NONE_MATCH), nullValue());
+  }
+
+  @Test
+  public void retriesNotModifiedWithoutValidatorsWhenBodyWasDiscarded() throws IOException {
+    exchange(request(), ok(BODY, "\"v1\""));
+
+    ClientRequestContext request = request();
+    Client client = mock(Client.class);
+    Invocation.Builder retry = replyTo(request, client, received(200, CHANGED_BODY, ETAG, "\"v2\"", CONTENT_TYPE,
+                                                                  "application/json"));
+    filter.filter(request);
+    ConditionalCacheFilter.clear();
+    ClientResponseContext response = response(304, null);
+    filter.filter(request, response);
+
+    verify(response).setStatus(200);
+    assertThat(response.getHeaders().getFirst(ETAG), equalTo("\"v2\""));
+    assertThat(entity(response), equalTo(CHANGED_BODY));
+    assertThat(metrics.get("http.cache.retried.count"), equalTo(1L));
+    assertThat(metrics.get("http.cache.revalidated.count"), equalTo(0L));
+
+    verify(client).target(ADDRESS);
+    verify(retry).header(AUTHORIZATION, TOKEN);
+    verify(retry, never()).header(eq(IF_NONE_MATCH), any());
+    verify(retry).get();
+
+    // The response to the retry, once through the filters of the client, is kept for the original request
+    ClientRequestContext retried = sentThrough(retry);
+    assertThat(exchange(retried, ok(CHANGED_BODY, "\"v2\"")), equalTo(CHANGED_BODY));
+    assertThat(retried.getHeaders().getFirst(IF_NONE_MATCH), nullValue());
+    ClientRequestContext next = request();
+    filter.filter(next);
+    assertThat(next.getHeaders().getFirst(IF_NONE_MATCH), equalTo((Object) "\"v2\""));
+  }
+
+  @Test
+  public void doesNotRetryTwice() throws IOException {
+    ClientRequestContext request = request();
+    filter.filter(request);
+    request.getHeaders().add(IF_NONE_MATCH, "\"v1\"");
+    Invocation.Builder builder = replyTo(request, mock(Client.class), received(304, null));
+    filter.filter(request, response(304, null));
+
+    ClientRequestContext retry = sentThrough(builder);
+    Invocation.Builder retryBuilder = replyTo(retry, mock(Client.class), received(304, null));
+    filter.filter(retry);
+    ClientResponseContext response = response(304, null);
+    filter.filter(retry, response);
+
+    verify(response, never()).setStatus(anyInt());
+    verify(retryBuilder, never()).get();
+  }
+
+  @Test
+  public void ignoresOtherMethods() throws IOException {
+    ClientRequestContext request = request("PUT", TOKEN);
+    filter.filter(request);
+    filter.filter(request, ok(BODY, "\"v1\""));
+
+    ClientRequestContext get = request();
+    filter.filter(get);
+    assertThat(get.getHeaders().getFirst(IF_NONE_MATCH), nullValue());
+  }
+
+  private String exchange(ClientRequestContext request, ClientResponseContext response) throws IOException {
+    filter.filter(request);
+    filter.filter(request, response);
+    return entity(response);
+  }
+
+  private static ClientRequestContext request() {
+    return request("GET", TOKEN);
+  }
+
+  /**
+   * A request whose headers and properties are kept, as the filter reads back what it sets.
+   */
+  private static ClientRequestContext request(String method, String authorization) {
+    final MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+    headers.add(AUTHORIZATION, authorization);
+    final Map<String, Object> properties = new HashMap<>();
+    ClientRequestContext request = mock(ClientRequestContext.class);
+    when(request.getMethod()).thenReturn(method);
+    when(request.getUri()).thenReturn(URI.create(ADDRESS));
+    when(request.getHeaders()).thenReturn(headers);
+    when(request.getStringHeaders()).thenAnswer(new Answer<MultivaluedMap<String, String>>() {
+
+      @Override
+      public MultivaluedMap<String, String> answer(InvocationOnMock invocation) {
+        MultivaluedMap<String, String> stringHeaders = new MultivaluedHashMap<>();
+        for (Map.Entry<String, List<Object>> header : headers.entrySet()) {
+          for (Object value : header.getValue()) {
+            stringHeaders.add(header.getKey(), value.toString());
+          }
+        }
+        return stringHeaders;
+      }
+    });
+    when(request.getProperty(anyString())).thenAnswer(new Answer<Object>() {
+
+      @Override
+      public Object answer(InvocationOnMock invocation) {
+        return properties.get(invocation.getArguments()[0]);
+      }
+    });
+    doAnswer(new Answer<Void>() {
+
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        properties.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+        return null;
+      }
+    }).when(request).setProperty(anyString(), any());
+    return request;
+  }
+
+  /**
+   * Makes the requests sent through the client of the request get the reply.
+   *
+   * @return The builder of those requests.
+   */
+  private static Invocation.Builder replyTo(ClientRequestContext request, Client client, Response reply) {
+    WebTarget target = mock(WebTarget.class);
+    Invocation.Builder builder = mock(Invocation.Builder.class);
+    when(request.getClient()).thenReturn(client);
+    when(client.target(ADDRESS)).thenReturn(target);
+    when(target.request()).thenReturn(builder);
+    when(builder.header(anyString(), any())).thenReturn(builder);
+    when(builder.property(anyString(), any())).thenReturn(builder);
+    when(builder.get()).thenReturn(reply);
+    return builder;
+  }
+
+  /**
+   * @return The request sent through the builder, with the property it was given.
+   */
+  private static ClientRequestContext sentThrough(Invocation.Builder builder) {
+    ArgumentCaptor<String> name = ArgumentCaptor.forClass(String.class);
+    ArgumentCaptor<Object> value = ArgumentCaptor.forClass(Object.class);
+    verify(builder).property(name.capture(), value.capture());
+    ClientRequestContext request = request();
+    request.setProperty(name.getValue(), value.getValue());
+    return request;
+  }
+
+  private static ClientResponseContext ok(String body, String etag) throws IOException {
+    return response(200, body, ETAG, etag, CONTENT_TYPE, "application/json");
+  }
+
+  /**
+   * A response with the body and the header names and values, whose headers are kept as the filter changes them.
+   */
+  private static ClientResponseContext response(int status, String body, String... headers) throws IOException {
+    final MultivaluedMap<String, String> headerValues = new MultivaluedHashMap<>();
+    for (int i = 0; i < headers.length; i += 2) {
+      headerValues.add(headers[i], headers[i + 1]);
+    }
+    ClientResponseContext response = mock(ClientResponseContext.class);
+    when(response.getStatus()).thenReturn(status);
+    when(response.getHeaders()).thenReturn(headerValues);
+    when(response.getHeaderString(anyString())).thenAnswer(new Answer<String>() {
+
+      @Override
+      public String answer(InvocationOnMock invocation) {
+        return headerValues.getFirst((String) invocation.getArguments()[0]);
+      }
+    });
+    when(response.hasEntity()).thenReturn(body != null);
+    if (body != null) {
+      byte[] bytes = body.getBytes("UTF-8");
+      when(response.getEntityStream()).thenReturn(new ByteArrayInputStream(bytes));
+      when(response.getLength()).thenReturn(bytes.length);
+    }
+    return response;
+  }
+
+  /**
+   * A response as received by a client, which unlike the responses built with {@link Response#ok()} can be read.
+   */
+  private static Response received(int status, String body, String... headers) throws IOException {
+    MultivaluedMap<String, String> headerValues = new MultivaluedHashMap<>();
+    for (int i = 0; i < headers.length; i += 2) {
+      headerValues.add(headers[i], headers[i + 1]);
+    }
+    Response response = mock(Response.class);
+    when(response.getStatus()).thenReturn(status);
+    when(response.getStringHeaders()).thenReturn(headerValues);
+    when(response.hasEntity()).thenReturn(body != null);
+    if (body != null) {
+      when(response.readEntity(byte[].class)).thenReturn(body.getBytes("UTF-8"));
+    }
+    return response;
+  }
+
+  /**
+   * @return The body the filter set on the response.
+   */
+  private static String entity(ClientResponseContext response) throws IOException {
+    ArgumentCaptor<InputStream> entity = ArgumentCaptor.forClass(InputStream.class);
+    verify(response).setEntityStream(entity.capture());
+    return IOUtils.toString(entity.getValue(), "UTF-8");
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import org.mule.test.infrastructure.process.MuleProcessController;
+import org.mule.tools.maven.plugin.mule.agent.AgentApi;
+import org.mule.tools.maven.plugin.mule.agent.AgentDeployer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DeploymentHookTestCase {
+
+  private File directory;
+  private File application;
+  private List<HookPoint> executed = Collections.synchronizedList(new ArrayList<HookPoint>());
+  private DeploymentHook hook = new OnceDeploymentHook(new DeploymentHook() {
+
+    @Override
+    public void execute(HookPoint hookPoint) {
+      executed.add(hookPoint);
+    }
+  });
+  private List<Process> processes = new ArrayList<>();
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("hooks").toFile();
+    application = new File(directory, "app.zip");
+    FileUtils.write(application, "application");
+  }
+
+  @After
+  public void tearDown() {
+    for (Process process : processes) {
+      process.destroy();
+    }
+    FileUtils.deleteQuietly(directory);
+  }
+
+  @Test
+  public void runsEachHookPointOnce() throws MojoExecutionException {
+    hook.execute(HookPoint.preInstall);
+    hook.execute(HookPoint.preDeploy);
+    hook.execute(HookPoint.preDeploy);
+    hook.execute(HookPoint.postDeploy);
+    hook.execute(HookPoint.postDeploy);
+
+    assertThat(executed, contains(HookPoint.preInstall, HookPoint.preDeploy, HookPoint.postDeploy));
+  }
+
+  @Test
+  public void remoteDeploymentRunsDeployHooks() throws Exception {
+    final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+    AgentApi agentApi = new AgentApi(null, "agent") {
+
+      @Override
+      public CompletableFuture<Void> deployApplicationAsync(String applicationName, File file) {
+        events.add("deploy after " + executed);
+        return CompletableFuture.completedFuture(null);
+      }
+    };
+
+    new AgentDeployer(new SystemStreamLog(), "app", application, agentApi).deploy(hook);
+
+    assertThat(events, contains("deploy after [preDeploy]"));
+    assertThat(executed, contains(HookPoint.preDeploy, HookPoint.postDeploy));
+  }
+
+  @Test
+  public void standaloneRedeploymentDoesNotRunHooksAgain() throws Exception {
+    File muleHome = startInstance("mule");
+    Deployer deployer = new Deployer(muleHome, new MuleProcessController(muleHome.getAbsolutePath(), 1000),
+                                     new SystemStreamLog(), application, 5000, null, 10).setHook(hook);
+
+    deployer.execute();
+    deployer.execute();
+
+    assertThat(executed, contains(HookPoint.preDeploy, HookPoint.postDeploy));
+  }
+
+  @Test
+  public void clusterDeploymentRunsDeployHooksOnce() throws Exception {
+    File[] muleHomes = {startInstance("mule0"), startInstance("mule1")};
+    List<MuleProcessController> controllers = new ArrayList<>();
+    for (File muleHome : muleHomes) {
+      controllers.add(new MuleProcessController(muleHome.getAbsolutePath(), 1000));
+    }
+
+    new ClusterDeployer(muleHomes, controllers, new SystemStreamLog(), application, 5000, null, 10).setHook(hook)
+        .execute();
+
+    assertThat(executed, contains(HookPoint.preDeploy, HookPoint.postDeploy));
+  }
+
+  /**
+   * Starts a process running from a new MULE_HOME that records its pid the way the wrapper does, with the application
+   * already deployed.
+   */
+  private File startInstance(String name) throws Exception {
+    assumeTrue(WrapperProcess.isProcAvailable());
+    File muleHome = new File(directory, name);
+    FileUtils.write(new File(muleHome, "apps/app-anchor.txt"), "Delete this file while Mule is running to undeploy");
+    File pidFile = new File(muleHome, "bin/.mule_ee.pid");
+    File script = new File(muleHome, "bin/wrapper.sh");
+    FileUtils.write(script, "echo $$ > " + pidFile.getAbsolutePath() + ".tmp\nmv " + pidFile.getAbsolutePath() + ".tmp "
+        + pidFile.getAbsolutePath() + "\nsleep 60\n");
+    processes.add(new ProcessBuilder("sh", script.getAbsolutePath()).start());
+    for (int i = 0; i < 100 && !pidFile.exists(); i++) {
+      Thread.sleep(50);
+    }
+    return muleHome;
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class DeploymentMetricsTestCase {
+
+  private DeploymentMetrics metrics = new DeploymentMetrics();
+
+  @Test
+  public void recordsAndAdds() {
+    assertThat(metrics.isEmpty(), equalTo(true));
+    assertThat(metrics.get("cds.archive.bytes"), equalTo(0L));
+    metrics.record("cds.archive.bytes", 100);
+    metrics.record("cds.archive.bytes", 200);
+    assertThat(metrics.add("http.gzip.saved.bytes", 10), equalTo(10L));
+    assertThat(metrics.add("http.gzip.saved.bytes", 5), equalTo(15L));
+    assertThat(metrics.increment("http.cache.revalidated.count"), equalTo(1L));
+
+    assertThat(metrics.get("cds.archive.bytes"), equalTo(200L));
+    assertThat(metrics.get("http.gzip.saved.bytes"), equalTo(15L));
+    assertThat(metrics.contains("http.cache.revalidated.count"), equalTo(true));
+    assertThat(metrics.contains("cds.dump.millis"), equalTo(false));
+  }
+
+  @Test
+  public void recordsElapsedMillis() throws InterruptedException {
+    long start = System.nanoTime();
+    Thread.sleep(20);
+    long elapsed = metrics.elapsed("cds.dump.millis", start);
+    assertThat(elapsed >= 20, equalTo(true));
+    assertThat(metrics.get("cds.dump.millis"), equalTo(elapsed));
+  }
+
+  @Test
+  public void countsFromManyThreads() throws Exception {
+    List<Callable<Long>> increments = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      increments.add(new Callable<Long>() {
+
+        @Override
+        public Long call() {
+          return metrics.increment("http.reads.count");
+        }
+      });
+    }
+    ParallelExecutor.invokeAll(8, increments);
+    assertThat(metrics.get("http.reads.count"), equalTo(1000L));
+  }
+
+  @Test
+  public void storesAsProperties() throws IOException {
+    File directory = Files.createTempDirectory("metrics").toFile();
+    try {
+      metrics.record("cds.ready.saved.millis", 4200);
+      metrics.increment("http.cache.retried.count");
+      File file = new File(directory, "target/mule-metrics.properties");
+      metrics.store(file);
+
+      Properties properties = new Properties();
+      try (InputStream stream = new FileInputStream(file)) {
+        properties.load(stream);
+      }
+      assertThat(properties.size(), equalTo(2));
+      assertThat(properties.getProperty("cds.ready.saved.millis"), equalTo("4200"));
+      assertThat(properties.getProperty("http.cache.retried.count"), equalTo("1"));
+    } finally {
+      FileUtils.deleteQuietly(directory);
+    }
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.mule.tools.maven.plugin.mule.cloudhub.Application;
+import org.mule.tools.maven.plugin.mule.cloudhub.CloudhubApi;
+import org.mule.tools.maven.plugin.mule.cloudhub.Deployment;
+import org.mule.tools.maven.plugin.mule.cloudhub.DeploymentTracker;
+import org.mule.tools.maven.plugin.mule.cloudhub.Instance;
+import org.mule.tools.maven.plugin.mule.cloudhub.LogEvent;
+import org.mule.tools.maven.plugin.mule.cloudhub.LogRecord;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+public class DeploymentTrackerTestCase {
+
+  private static final String APP = "app";
+
+  private DeploymentMetrics metrics = new DeploymentMetrics();
+  private List<String> logged = new ArrayList<>();
+  private ScriptedApi api = new ScriptedApi();
+  private DeploymentTracker tracker = new DeploymentTracker(api, APP, new SystemStreamLog() {
+
+    @Override
+    public void info(CharSequence content) {
+      if (content.toString().startsWith("[")) {
+        logged.add(content.toString());
+      }
+    }
+  }, metrics).setPollingDelay(1, 5);
+
+  @Test
+  public void waitsForAllWorkers() throws DeploymentException {
+    api.poll(application("DEPLOYING", null), deployment("DEPLOYING", "DEPLOYING"), record("1", 100, "Starting"));
+    api.poll(application("DEPLOYING", null), deployment("STARTED", "DEPLOYING"), record("1", 100, "Starting"),
+             record("2", 100, "Deploying"), record("3", 200, "Started"));
+    api.poll(application("STARTED", null), deployment("STARTED", "STARTED"), record("3", 200, "Started"));
+
+    tracker.await(10000);
+
+    assertThat(api.polls, equalTo(3));
+    assertThat(api.logStartTimes, contains(0L, 100L, 200L));
+    assertThat(logged.size(), equalTo(3));
+    assertThat(metrics.contains("cloudhub.worker.1.started.millis"), equalTo(true));
+    assertThat(metrics.contains("cloudhub.worker.2.started.millis"), equalTo(true));
+    assertThat(metrics.contains("cloudhub.started.millis"), equalTo(true));
+  }
+
+  @Test
+  public void ignoresPreviousDeployment() throws DeploymentException {
+    Deployment previous = previous(0L);
+    api.existing = new Deployment[] {previous};
+    tracker.snapshot();
+    api.poll(application("STARTED", "DEPLOYING"), previous);
+    api.poll(application("STARTED", null), deployment("STARTED"));
+
+    tracker.await(10000);
+
+    assertThat(api.polls, equalTo(2));
+  }
+
+  @Test
+  public void ignoresPreviousDeploymentOfRedeployWithinAMinute() throws DeploymentException {
+    Deployment previous = previous(System.currentTimeMillis() - 1000);
+    api.existing = new Deployment[] {previous};
+    tracker.snapshot();
+    // CloudHub hasn't flagged the update yet, so the application still looks started by the previous deployment
+    api.poll(application("STARTED", null), previous);
+    api.poll(application("STARTED", "DEPLOYING"), deployment("DEPLOYING"));
+    api.poll(application("STARTED", null), deployment("STARTED"));
+
+    tracker.await(10000);
+
+    assertThat(api.polls, equalTo(3));
+  }
+
+  @Test(expected = DeploymentException.class)
+  public void failsOnFailedDeployment() throws DeploymentException {
+    api.poll(application("STARTED", "DEPLOY_FAILED"), deployment("FAILED"));
+    api.poll(application("STARTED", null), deployment("STARTED"));
+
+    try {
+      tracker.await(10000);
+    } finally {
+      assertThat(api.polls, equalTo(1));
+    }
+  }
+
+  @Test(expected = DeploymentException.class)
+  public void failsAfterTimeout() throws DeploymentException {
+    api.poll(application("DEPLOYING", null), deployment("DEPLOYING"));
+
+    tracker.await(50);
+  }
+
+  private static Application application(String status, String deploymentUpdateStatus) {
+    Application application = new Application();
+    application.domain = APP;
+    application.status = status;
+    application.deploymentUpdateStatus = deploymentUpdateStatus;
+    return application;
+  }
+
+  private static Deployment deployment(String... statuses) {
+    Deployment deployment = new Deployment();
+    deployment.deploymentId = "deployment";
+    deployment.createTime = System.currentTimeMillis();
+    deployment.instances = new Instance[statuses.length];
+    for (int i = 0; i < statuses.length; i++) {
+      deployment.instances[i] = new Instance();
+      deployment.instances[i].instanceId = "worker-" + i;
+      deployment.instances[i].status = statuses[i];
+    }
+    return deployment;
+  }
+
+  private static Deployment previous(long createTime) {
+    Deployment deployment = deployment("STARTED");
+    deployment.deploymentId = "previous";
+    deployment.createTime = createTime;
+    return deployment;
+  }
+
+  private static LogRecord record(String id, long timestamp, String message) {
+    LogRecord record = new LogRecord();
+    record.recordId = id;
+    record.instanceId = "worker-0";
+    record.event = new LogEvent();
+    record.event.timestamp = timestamp;
+    record.event.priority = "INFO";
+    record.event.message = message;
+    return record;
+  }
+
+  private static class ScriptedApi extends CloudhubApi {
+
+    private final List<Object[]> script = new ArrayList<>();
+    private final List<Long> logStartTimes = new ArrayList<>();
+    private Deployment[] existing = new Deployment[0];
+    private int polls;
+
+    ScriptedApi() {
+      super("https://anypoint.mulesoft.com", null, "user", "password", "env", null);
+    }
+
+    void poll(Application application, Deployment deployment, LogRecord... records) {
+      script.add(new Object[] {application, deployment, Arrays.asList(records)});
+    }
+
+    private Object[] current() {
+      return script.get(Math.min(polls, script.size()) - 1);
+    }
+
+    @Override
+    public Application getApplication(String appName) {
+      polls++;
+      return (Application) current()[0];
+    }
+
+    @Override
+    public Deployment[] getDeployments(String appName) {
+      if (polls == 0) {
+        return existing;
+      }
+      return new Deployment[] {(Deployment) current()[1]};
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<LogRecord> getDeploymentLogs(String appName, String deploymentId, long startTime) {
+      logStartTimes.add(startTime);
+      List<LogRecord> records = new ArrayList<>();
+      for (LogRecord record : (List<LogRecord>) current()[2]) {
+        if (record.event.timestamp >= startTime) {
+          records.add(record);
+        }
+      }
+      return records;
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DistributionExtractorTestCase {
+
+  private File directory;
+  private File archive;
+  private DeploymentMetrics metrics = new DeploymentMetrics();
+  private DistributionExtractor extractor = new DistributionExtractor(new SystemStreamLog(), metrics);
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("distribution").toFile();
+    archive = new File(directory, "mule.tar.gz");
+    try (OutputStream output = new GZIPOutputStream(new FileOutputStream(archive))) {
+      writeEntry(output, "mule/", '5', 0755, "");
+      writeEntry(output, "mule/bin/mule", '0', 0755, "#!/bin/sh");
+      writeEntry(output, "mule/conf/wrapper.conf", '0', 0644, "wrapper.java.command=java");
+      writeEntry(output, "mule/docs/index.html", '0', 0644, "<html/>");
+      String longName = "mule/lib/" + repeat('a', 120) + ".jar";
+      writeEntry(output, "././@LongLink", 'L', 0644, longName);
+      writeEntry(output, longName.substring(0, 100), '0', 0644, "jar");
+      output.write(new byte[1024]);
+    }
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory);
+  }
+
+  @Test
+  public void extractsAllEntries() throws IOException {
+    File destination = new File(directory, "out");
+
+    extractor.extract(archive, destination);
+
+    assertThat(FileUtils.readFileToString(new File(destination, "mule/bin/mule")), equalTo("#!/bin/sh"));
+    assertThat(FileUtils.readFileToString(new File(destination, "mule/docs/index.html")), equalTo("<html/>"));
+    assertThat(FileUtils.readFileToString(new File(destination, "mule/lib/" + repeat('a', 120) + ".jar")), equalTo("jar"));
+    assertThat(new File(destination, "mule/bin/mule").canExecute(), equalTo(true));
+    assertThat(metrics.get("distribution.extract.bytes"), equalTo(44L));
+  }
+
+  @Test
+  public void skipsExcludedEntries() throws IOException {
+    File destination = new File(directory, "out");
+
+    extractor.setExcludes(Arrays.asList("docs/**")).extract(archive, destination);
+
+    assertThat(new File(destination, "mule/docs/index.html").exists(), equalTo(false));
+    assertThat(new File(destination, "mule/conf/wrapper.conf").exists(), equalTo(true));
+    assertThat(metrics.get("distribution.extract.skipped.count"), equalTo(1L));
+  }
+
+  @Test
+  public void extractsOnlyIncludedEntries() throws IOException {
+    File destination = new File(directory, "out");
+
+    extractor.setIncludes(Arrays.asList("bin/**", "conf/**")).extract(archive, destination);
+
+    assertThat(new File(destination, "mule/bin/mule").exists(), equalTo(true));
+    assertThat(new File(destination, "mule/conf/wrapper.conf").exists(), equalTo(true));
+    assertThat(new File(destination, "mule/docs").exists(), equalTo(false));
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsEntriesOutsideOfDestination() throws IOException {
+    try (OutputStream output = new GZIPOutputStream(new FileOutputStream(archive))) {
+      writeEntry(output, "mule/../../evil.sh", '0', 0755, "evil");
+      output.write(new byte[1024]);
+    }
+
+    extractor.extract(archive, new File(directory, "out"));
+  }
+
+  private static void writeEntry(OutputStream output, String name, char type, int mode, String content)
+      throws IOException {
+    byte[] data = content.getBytes(UTF_8);
+    byte[] header = new byte[512];
+    put(header, 0, 100, name);
+    put(header, 100, 8, String.format("%07o", mode));
+    put(header, 108, 8, "0000000");
+    put(header, 116, 8, "0000000");
+    put(header, 124, 12, String.format("%011o", data.length));
+    put(header, 136, 12, String.format("%011o", 1500000000L));
+    header[156] = (byte) type;
+    put(header, 257, 6, "ustar");
+    put(header, 263, 2, "00");
+    Arrays.fill(header, 148, 156, (byte) ' ');
+    long sum = 0;
+    for (byte b : header) {
+      sum += b & 0xff;
+    }
+    put(header, 148, 8, String.format("%06o", sum));
+    output.write(header);
+    output.write(data);
+    output.write(new byte[(512 - data.length % 512) % 512]);
+  }
+
+  private static void put(byte[] header, int offset, int length, String value) {
+    byte[] bytes = value.getBytes(UTF_8);
+    System.arraycopy(bytes, 0, header, offset, Math.min(length, bytes.length));
+  }
+
+  private static String repeat(char c, int count) {
+    char[] chars = new char[count];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
+}
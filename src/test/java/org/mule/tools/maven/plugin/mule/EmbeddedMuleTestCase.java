@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EmbeddedMuleTestCase {
+
+  private File muleHome;
+
+  @Before
+  public void setUp() throws IOException {
+    muleHome = Files.createTempDirectory("mule").toFile();
+    FileUtils.write(new File(muleHome, "lib/mule/mule-core.jar"), "");
+    FileUtils.write(new File(muleHome, "lib/boot/mule-module-boot.jar"), "");
+    FileUtils.write(new File(muleHome, "lib/user/driver.jar"), "");
+    FileUtils.write(new File(muleHome, "lib/opt/README.txt"), "");
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(muleHome);
+  }
+
+  @Test
+  public void classPathFollowsWrapperOrder() throws Exception {
+    URL[] classPath = EmbeddedMule.getClassPath(muleHome);
+    assertThat(classPath.length, equalTo(4));
+    assertThat(classPath[0], equalTo(new File(muleHome, "conf").toURI().toURL()));
+    assertThat(classPath[1], equalTo(new File(muleHome, "lib/boot/mule-module-boot.jar").toURI().toURL()));
+    assertThat(classPath[2], equalTo(new File(muleHome, "lib/user/driver.jar").toURI().toURL()));
+    assertThat(classPath[3], equalTo(new File(muleHome, "lib/mule/mule-core.jar").toURI().toURL()));
+  }
+
+  @Test
+  public void restoresSystemPropertiesWhenStartFails() {
+    String muleHomeProperty = System.getProperty("mule.home");
+    try {
+      EmbeddedMule.start(muleHome, new SystemStreamLog(), new String[] {"-M-Dembedded.test=true"});
+      throw new AssertionError("Started without a Mule Runtime container");
+    } catch (MojoExecutionException e) {
+      assertThat(System.getProperty("mule.home"), equalTo(muleHomeProperty));
+      assertThat(System.getProperty("embedded.test"), equalTo(null));
+      assertThat(EmbeddedMule.get(muleHome), equalTo(null));
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExplodedApplicationInstallerTestCase {
+
+  private File directory;
+  private File muleHome;
+  private DeploymentMetrics metrics = new DeploymentMetrics();
+  private ExplodedApplicationInstaller installer = new ExplodedApplicationInstaller(new SystemStreamLog(), metrics);
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("exploded").toFile();
+    muleHome = new File(directory, "mule");
+    new File(muleHome, "apps").mkdirs();
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory);
+  }
+
+  @Test
+  public void installsZipApplication() throws IOException {
+    File zip = new File(directory, "app.zip");
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+      out.putNextEntry(new ZipEntry("mule-config.xml"));
+      out.write("<mule/>".getBytes(StandardCharsets.UTF_8));
+      out.putNextEntry(new ZipEntry("classes/"));
+      out.putNextEntry(new ZipEntry("classes/log4j2.xml"));
+      out.write("<Configuration/>".getBytes(StandardCharsets.UTF_8));
+    }
+
+    File installed = installer.install(zip, "my-app", muleHome);
+
+    assertThat(installed, equalTo(new File(muleHome, "apps/my-app")));
+    assertThat(FileUtils.readFileToString(new File(installed, "classes/log4j2.xml")), equalTo("<Configuration/>"));
+    assertThat(metrics.get("exploded.extracted.bytes"), equalTo(23L));
+    assertThat(new File(muleHome, ".mule/staging").list().length, equalTo(0));
+  }
+
+  @Test
+  public void replacesApplicationDirectoryWithoutModifyingSources() throws IOException {
+    File application = new File(directory, "app");
+    File config = new File(application, "mule-config.xml");
+    FileUtils.write(config, "<mule/>");
+    FileUtils.write(new File(application, "lib/some.jar"), "jar");
+    config.setLastModified(1000);
+    FileUtils.write(new File(muleHome, "apps/my-app/old.txt"), "old");
+
+    File installed = installer.install(application, "my-app", muleHome);
+
+    assertTrue(new File(installed, "lib/some.jar").isFile());
+    assertTrue(!new File(installed, "old.txt").exists());
+    assertThat(config.lastModified(), equalTo(1000L));
+    assertThat(new File(installed, "mule-config.xml").lastModified(), greaterThan(1000L));
+    assertThat(metrics.get("staging.linked.bytes") + metrics.get("staging.copied.bytes"), equalTo(10L));
+  }
+
+  @Test
+  public void readsConfigResourcesFromDeployProperties() throws IOException {
+    File application = new File(directory, "app");
+    FileUtils.write(new File(application, ExplodedApplicationInstaller.DEPLOY_PROPERTIES), "config.resources=a.xml, b.xml\n");
+
+    assertThat(ExplodedApplicationInstaller.getConfigResources(application), contains("a.xml", "b.xml"));
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsEntriesOutsideApplication() throws IOException {
+    File zip = new File(directory, "evil.zip");
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+      out.putNextEntry(new ZipEntry("../evil.txt"));
+    }
+
+    installer.extract(zip, new File(directory, "out").toPath());
+  }
+}
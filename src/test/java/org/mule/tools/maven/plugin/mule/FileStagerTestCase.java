@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileStagerTestCase {
+
+  private File directory;
+  private DeploymentMetrics metrics = new DeploymentMetrics();
+  private FileStager stager = new FileStager(metrics);
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("staging").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory);
+  }
+
+  @Test
+  public void stagesReplacingExistingFile() throws IOException {
+    File source = new File(directory, "app.zip");
+    File target = new File(directory, "apps/app.zip");
+    FileUtils.write(source, "application");
+    FileUtils.write(target, "old");
+
+    stager.stageAtomically(source.toPath(), target.toPath());
+
+    assertThat(FileUtils.readFileToString(target), equalTo("application"));
+    assertThat(metrics.get("staging.linked.bytes") + metrics.get("staging.copied.bytes"), equalTo(11L));
+    assertThat(target.getParentFile().list().length, equalTo(1));
+  }
+
+  @Test
+  public void linkedFilesShareContents() throws IOException {
+    File source = new File(directory, "app.zip");
+    File target = new File(directory, "app-copy.zip");
+    FileUtils.write(source, "application");
+
+    stager.stage(source.toPath(), target.toPath());
+
+    if (metrics.contains("staging.linked.bytes")) {
+      assertThat(Files.isSameFile(source.toPath(), target.toPath()), equalTo(true));
+    } else {
+      assertThat(target.lastModified(), equalTo(source.lastModified()));
+    }
+  }
+}
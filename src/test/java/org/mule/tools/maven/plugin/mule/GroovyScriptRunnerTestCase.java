@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import groovy.lang.GroovySystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GroovyScriptRunnerTestCase {
+
+  private File directory;
+  private File script;
+  private Map<String, Object> result = new HashMap<>();
+  private Map<String, Object> variables = new HashMap<>();
+  private Properties properties = new Properties();
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("scripts").toFile();
+    script = new File(directory, "script.groovy");
+    // Unique contents, so compiled classes cached by other tests aren't used
+    FileUtils.write(script, "// " + UUID.randomUUID() + "\nresult.put('greeting', greeting + ' ' + hook)\n");
+    variables.put("result", result);
+    variables.put("hook", "postStart");
+    properties.setProperty("greeting", "hello");
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory);
+  }
+
+  @Test
+  public void resolvesPropertiesAndVariables() throws Exception {
+    DeploymentMetrics metrics = new DeploymentMetrics();
+    runner(metrics).run(script, variables, properties);
+    assertThat(result.get("greeting"), equalTo((Object) "hello postStart"));
+    assertThat(metrics.contains("scripts.compile.millis"), equalTo(true));
+  }
+
+  @Test
+  public void compilesOnce() throws Exception {
+    runner(new DeploymentMetrics()).run(script, variables, properties);
+    DeploymentMetrics metrics = new DeploymentMetrics();
+    runner(metrics).run(script, variables, properties);
+    assertThat(metrics.contains("scripts.compile.millis"), equalTo(false));
+    assertThat(metrics.get("scripts.memory.hits.count"), equalTo(1L));
+    assertThat(result.get("greeting"), equalTo((Object) "hello postStart"));
+  }
+
+  @Test
+  public void recompilesCorruptCachedScript() throws Exception {
+    String hash = GroovyScriptRunner.hash(GroovySystem.getVersion() + "\n" + FileUtils.readFileToString(script, "UTF-8"));
+    FileUtils.write(new File(directory, "cache/" + hash + "/MuleScript_" + hash + ".class"), "not a class");
+    DeploymentMetrics metrics = new DeploymentMetrics();
+
+    runner(metrics).run(script, variables, properties);
+
+    assertThat(result.get("greeting"), equalTo((Object) "hello postStart"));
+    assertThat(metrics.contains("scripts.compile.millis"), equalTo(true));
+    assertThat(metrics.contains("scripts.disk.hits.count"), equalTo(false));
+  }
+
+  private GroovyScriptRunner runner(DeploymentMetrics metrics) {
+    return new GroovyScriptRunner(new File(directory, "cache"), new SystemStreamLog(), metrics);
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static javax.ws.rs.core.HttpHeaders.ACCEPT_ENCODING;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_ENCODING;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_LENGTH;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class GzipResponseFilterTestCase {
+
+  private DeploymentMetrics metrics = new DeploymentMetrics();
+  private GzipResponseFilter filter = new GzipResponseFilter(metrics);
+
+  @Test
+  public void asksForGzip() throws IOException {
+    ClientRequestContext request = request();
+    filter.filter(request);
+    assertThat(request.getHeaders().getFirst(ACCEPT_ENCODING), equalTo((Object) "gzip"));
+  }
+
+  @Test
+  public void keepsRequestedEncoding() throws IOException {
+    ClientRequestContext request = request();
+    request.getHeaders().add(ACCEPT_ENCODING, "identity");
+    filter.filter(request);
+    assertThat(request.getHeaders().getFirst(ACCEPT_ENCODING), equalTo((Object) "identity"));
+  }
+
+  @Test
+  public void decompressesGzipResponses() throws IOException {
+    String body = repeat("{\"domain\":\"app\",\"status\":\"STARTED\"},", 100);
+    byte[] compressed = gzip(body);
+    ClientResponseContext response = response(compressed, CONTENT_ENCODING, "gzip", CONTENT_LENGTH,
+                                              Integer.toString(compressed.length));
+    filter.filter(request(), response);
+
+    assertThat(response.getHeaders().getFirst(CONTENT_ENCODING), nullValue());
+    assertThat(response.getHeaders().getFirst(CONTENT_LENGTH), nullValue());
+    ArgumentCaptor<InputStream> entity = ArgumentCaptor.forClass(InputStream.class);
+    verify(response).setEntityStream(entity.capture());
+    assertThat(IOUtils.toString(entity.getValue(), "UTF-8"), equalTo(body));
+    entity.getValue().close();
+    assertThat(metrics.get("http.gzip.saved.bytes"), equalTo((long) body.length() - compressed.length));
+  }
+
+  @Test
+  public void leavesUncompressedResponses() throws IOException {
+    String body = "{\"status\":\"STARTED\"}";
+    ClientResponseContext response = response(body.getBytes("UTF-8"), CONTENT_LENGTH, Integer.toString(body.length()));
+    filter.filter(request(), response);
+
+    assertThat(response.getHeaders().getFirst(CONTENT_LENGTH), equalTo(Integer.toString(body.length())));
+    verify(response, never()).setEntityStream(any(InputStream.class));
+    assertThat(metrics.contains("http.gzip.saved.bytes"), equalTo(false));
+  }
+
+  private static ClientRequestContext request() {
+    MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+    ClientRequestContext request = mock(ClientRequestContext.class);
+    when(request.getHeaders()).thenReturn(headers);
+    return request;
+  }
+
+  /**
+   * A response with the body and the header names and values, whose headers are kept as the filter changes them.
+   */
+  private static ClientResponseContext response(byte[] body, String... headers) {
+    final MultivaluedMap<String, String> headerValues = new MultivaluedHashMap<>();
+    for (int i = 0; i < headers.length; i += 2) {
+      headerValues.add(headers[i], headers[i + 1]);
+    }
+    ClientResponseContext response = mock(ClientResponseContext.class);
+    when(response.getStatus()).thenReturn(200);
+    when(response.getHeaders()).thenReturn(headerValues);
+    when(response.getHeaderString(anyString())).thenAnswer(new Answer<String>() {
+
+      @Override
+      public String answer(InvocationOnMock invocation) {
+        return headerValues.getFirst((String) invocation.getArguments()[0]);
+      }
+    });
+    when(response.hasEntity()).thenReturn(true);
+    when(response.getEntityStream()).thenReturn(new ByteArrayInputStream(body));
+    return response;
+  }
+
+  private static byte[] gzip(String body) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+      gzip.write(body.getBytes("UTF-8"));
+    }
+    return output.toByteArray();
+  }
+
+  private static String repeat(String text, int times) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < times; i++) {
+      builder.append(text);
+    }
+    return builder.toString();
+  }
+}
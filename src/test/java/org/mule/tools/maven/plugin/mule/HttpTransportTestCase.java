@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import javax.ws.rs.client.Client;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.HttpUrlConnectorProvider;
+import org.glassfish.jersey.client.RequestEntityProcessing;
+import org.glassfish.jersey.grizzly.connector.GrizzlyConnectorProvider;
+import org.junit.Test;
+
+public class HttpTransportTestCase {
+
+  @Test
+  public void urlConnectionUsesJdkConnector() {
+    ClientConfig config = configure(HttpTransport.urlConnection);
+    assertConnector(config, HttpUrlConnectorProvider.class);
+    assertThat(config.getProperty(ClientProperties.REQUEST_ENTITY_PROCESSING), nullValue());
+    assertThat(HttpTransport.urlConnection.isPatchSupported(), equalTo(false));
+  }
+
+  @Test
+  public void apacheUsesPooledConnections() {
+    ClientConfig config = configure(HttpTransport.apache);
+    assertConnector(config, ApacheConnectorProvider.class);
+    PoolingHttpClientConnectionManager connectionManager =
+        (PoolingHttpClientConnectionManager) config.getProperty(ApacheClientProperties.CONNECTION_MANAGER);
+    assertThat(connectionManager.getMaxTotal(), equalTo(32));
+    assertThat(connectionManager.getDefaultMaxPerRoute(), equalTo(32));
+    assertThat(config.getProperty(ClientProperties.REQUEST_ENTITY_PROCESSING), equalTo((Object) RequestEntityProcessing.CHUNKED));
+    assertThat(HttpTransport.apache.isPatchSupported(), equalTo(true));
+  }
+
+  @Test
+  public void apacheClientsDoNotSharePools() {
+    Object connectionManager = configure(HttpTransport.apache).getProperty(ApacheClientProperties.CONNECTION_MANAGER);
+    assertThat(configure(HttpTransport.apache).getProperty(ApacheClientProperties.CONNECTION_MANAGER),
+               not(sameInstance(connectionManager)));
+  }
+
+  @Test
+  public void grizzlyStreamsRequestBodies() {
+    ClientConfig config = configure(HttpTransport.grizzly);
+    assertConnector(config, GrizzlyConnectorProvider.class);
+    assertThat(config.getProperty(ClientProperties.REQUEST_ENTITY_PROCESSING), equalTo((Object) RequestEntityProcessing.CHUNKED));
+    assertThat(HttpTransport.grizzly.isPatchSupported(), equalTo(true));
+  }
+
+  @Test
+  public void requestsShareClient() {
+    TestApi api = new TestApi();
+    api.setTransport(HttpTransport.apache);
+    assertThat(api.getClient(), sameInstance(api.getClient()));
+    api.close();
+  }
+
+  @Test
+  public void closeReleasesClient() {
+    TestApi api = new TestApi();
+    api.setTransport(HttpTransport.apache);
+    Client client = api.getClient();
+    api.close();
+    try {
+      client.target("http://localhost");
+      fail("Closed client was usable");
+    } catch (IllegalStateException e) {
+      // Expected
+    }
+    Client newClient = api.getClient();
+    assertThat(newClient, not(sameInstance(client)));
+    newClient.target("http://localhost");
+    api.close();
+  }
+
+  @Test
+  public void closeWithoutRequestsDoesNothing() {
+    new TestApi().close();
+  }
+
+  private ClientConfig configure(HttpTransport transport) {
+    ClientConfig config = new ClientConfig();
+    transport.configure(config);
+    return config;
+  }
+
+  private void assertConnector(ClientConfig config, Class<?> connectorProvider) {
+    assertThat(config.getConnectorProvider().getClass().getName(), equalTo(connectorProvider.getName()));
+  }
+
+  private static class TestApi extends AbstractApi {
+
+    TestApi() {
+      super(null);
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IncrementalSynchronizerTestCase {
+
+  private File directory;
+  private File application;
+  private File deployed;
+  private DeploymentMetrics metrics = new DeploymentMetrics();
+  private IncrementalSynchronizer synchronizer = new IncrementalSynchronizer(new SystemStreamLog(), metrics);
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("incremental").toFile();
+    application = new File(directory, "app");
+    deployed = new File(directory, "apps/app");
+    FileUtils.write(new File(application, "mule-config.xml"), "<mule/>");
+    FileUtils.write(new File(application, "classes/flow.xml"), "<flow/>");
+    FileUtils.write(new File(application, "lib/some.jar"), "jar");
+    FileUtils.copyDirectory(application, deployed);
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory);
+  }
+
+  @Test
+  public void nothingChanged() throws IOException {
+    assertThat(synchronizer.synchronize(application, deployed, System.currentTimeMillis()), equalTo(0));
+  }
+
+  @Test
+  public void sameContentWithNewerTimestampIsNotChanged() throws IOException {
+    new File(application, "classes/flow.xml").setLastModified(System.currentTimeMillis() + 5000);
+
+    assertThat(synchronizer.synchronize(application, deployed, System.currentTimeMillis()), equalTo(0));
+  }
+
+  @Test
+  public void synchronizesChangedAddedAndRemovedFiles() throws IOException {
+    FileUtils.write(new File(application, "classes/flow.xml"), "<flow name=\"changed\"/>");
+    FileUtils.write(new File(application, "classes/other.xml"), "<other/>");
+    FileUtils.forceDelete(new File(application, "lib/some.jar"));
+
+    assertThat(synchronizer.synchronize(application, deployed, System.currentTimeMillis()), equalTo(3));
+    assertThat(FileUtils.readFileToString(new File(deployed, "classes/flow.xml")), equalTo("<flow name=\"changed\"/>"));
+    assertTrue(new File(deployed, "classes/other.xml").isFile());
+    assertTrue(!new File(deployed, "lib/some.jar").exists());
+    assertThat(metrics.get("incremental.changed.count"), equalTo(2L));
+    assertThat(metrics.get("incremental.removed.count"), equalTo(1L));
+  }
+}
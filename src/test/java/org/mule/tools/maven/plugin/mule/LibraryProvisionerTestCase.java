@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LibraryProvisionerTestCase {
+
+  private File directory;
+  private File[] muleHomes;
+  private List<File> libraries;
+  private DeploymentMetrics metrics = new DeploymentMetrics();
+  private LibraryProvisioner provisioner;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("libraries").toFile();
+    muleHomes = new File[] {new File(directory, "mule0"), new File(directory, "mule1")};
+    libraries = Arrays.asList(new File(directory, "repository/driver.jar"), new File(directory, "repository/connector.jar"));
+    FileUtils.write(libraries.get(0), "driver");
+    FileUtils.write(libraries.get(1), "connector");
+    provisioner = new LibraryProvisioner(new File(directory, "store"), new SystemStreamLog(), metrics);
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory);
+  }
+
+  @Test
+  public void provisionsEachLibraryOnEveryNode() throws IOException {
+    provisioner.provision(libraries, muleHomes);
+
+    for (File muleHome : muleHomes) {
+      assertThat(FileUtils.readFileToString(new File(muleHome, "lib/user/driver.jar")), equalTo("driver"));
+      assertThat(FileUtils.readFileToString(new File(muleHome, "lib/user/connector.jar")), equalTo("connector"));
+    }
+    assertThat(new File(directory, "store").list().length, equalTo(2));
+    assertThat(metrics.get("libraries.provisioned.count"), equalTo(4L));
+  }
+
+  @Test
+  public void skipsLibrariesWithSameContents() throws IOException {
+    FileUtils.write(new File(muleHomes[0], "lib/user/driver.jar"), "driver");
+    FileUtils.write(new File(muleHomes[0], "lib/user/connector.jar"), "outdated");
+
+    provisioner.provision(libraries, muleHomes[0]);
+
+    assertThat(metrics.get("libraries.skipped.count"), equalTo(1L));
+    assertThat(FileUtils.readFileToString(new File(muleHomes[0], "lib/user/connector.jar")), equalTo("connector"));
+  }
+
+  @Test
+  public void keepsLibrariesWithSameFileName() throws IOException {
+    File other = new File(directory, "other/driver.jar");
+    FileUtils.write(other, "other driver");
+
+    provisioner.provision(Arrays.asList(libraries.get(0), other, libraries.get(0)), muleHomes);
+
+    for (File muleHome : muleHomes) {
+      String[] names = new File(muleHome, "lib/user").list();
+      assertThat(names.length, equalTo(2));
+      List<String> contents = new ArrayList<>();
+      for (String name : names) {
+        assertThat(name.endsWith("-driver.jar"), equalTo(true));
+        contents.add(FileUtils.readFileToString(new File(muleHome, "lib/user/" + name)));
+      }
+      assertThat(contents, containsInAnyOrder("driver", "other driver"));
+    }
+    assertThat(new File(directory, "store").list().length, equalTo(2));
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import org.mule.test.infrastructure.process.MuleProcessController;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MuleInstanceProbeTestCase {
+
+  private File muleHome;
+  private MuleInstanceProbe probe;
+  private Process process;
+
+  @Before
+  public void setUp() throws IOException {
+    assumeTrue(WrapperProcess.isProcAvailable());
+    muleHome = Files.createTempDirectory("mule").toFile();
+    probe = new MuleInstanceProbe(muleHome, new MuleProcessController(muleHome.getAbsolutePath(), 1000));
+  }
+
+  @After
+  public void tearDown() {
+    if (process != null) {
+      process.destroy();
+    }
+    FileUtils.deleteQuietly(muleHome);
+  }
+
+  @Test
+  public void deployedWhenRunningWithAnchor() throws Exception {
+    startInstanceProcess();
+    assertThat(probe.isRunning(), equalTo(true));
+    assertThat(probe.isDeployed("app"), equalTo(false));
+
+    FileUtils.write(new File(muleHome, "apps/app-anchor.txt"), "Delete this file while Mule is running to undeploy");
+    assertThat(probe.isDeployed("app"), equalTo(true));
+    assertThat(probe.deployed("app").isSatisfied(), equalTo(true));
+  }
+
+  @Test
+  public void notRunningWhenPidBelongsToAnotherProcess() throws IOException {
+    int pid = Integer.parseInt(ManagementFactory.getRuntimeMXBean().getName().split("@")[0]);
+    FileUtils.write(new File(muleHome, "bin/.mule_ee.pid"), pid + "\n");
+    FileUtils.write(new File(muleHome, "apps/app-anchor.txt"), "Delete this file while Mule is running to undeploy");
+
+    assertThat(probe.isRunning(), equalTo(false));
+    assertThat(probe.isDeployed("app"), equalTo(false));
+  }
+
+  @Test
+  public void notDeployedWhenStopped() throws IOException {
+    FileUtils.write(new File(muleHome, "apps/app-anchor.txt"), "Delete this file while Mule is running to undeploy");
+    assertThat(probe.isRunning(), equalTo(false));
+    assertThat(probe.isDeployed("app"), equalTo(false));
+  }
+
+  /**
+   * Starts a process running from MULE_HOME that records its pid the way the wrapper does.
+   */
+  private void startInstanceProcess() throws Exception {
+    File pidFile = new File(muleHome, "bin/.mule_ee.pid");
+    File script = new File(muleHome, "bin/wrapper.sh");
+    FileUtils.write(script, "echo $$ > " + pidFile.getAbsolutePath() + ".tmp\nmv " + pidFile.getAbsolutePath() + ".tmp "
+        + pidFile.getAbsolutePath() + "\nsleep 60\n");
+    process = new ProcessBuilder("sh", script.getAbsolutePath()).start();
+    for (int i = 0; i < 100 && !pidFile.exists(); i++) {
+      Thread.sleep(50);
+    }
+  }
+}
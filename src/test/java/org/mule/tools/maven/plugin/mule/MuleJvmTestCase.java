@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MuleJvmTestCase {
+
+  private File directory;
+  private File muleHome;
+  private Map<String, String> environment = new HashMap<>();
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("mule-jvm").toFile();
+    muleHome = new File(directory, "mule");
+    new File(muleHome, "conf").mkdirs();
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory);
+  }
+
+  @Test
+  public void usesJavaHomeForPlainCommand() throws IOException {
+    writeWrapperConf("wrapper.java.command=java");
+    File jdk17 = createJdk("jdk-17", "17.0.2");
+    File jdk8 = createJdk("jdk-8", "1.8.0_292");
+    environment.put("JAVA_HOME", jdk17.getAbsolutePath());
+    environment.put("PATH", new File(jdk8, "bin").getAbsolutePath());
+
+    MuleJvm jvm = MuleJvm.detect(muleHome, environment);
+    assertThat(jvm.getCommand(), equalTo(new File(jdk17, "bin/java")));
+    assertThat(jvm.getVersion(), equalTo("17.0.2"));
+    assertThat(jvm.getJavaVersion(), equalTo(17));
+  }
+
+  @Test
+  public void looksUpPathWithoutJavaHome() throws IOException {
+    File jdk8 = createJdk("jdk-8", "1.8.0_292");
+    environment.put("PATH", new File(directory, "missing").getAbsolutePath() + File.pathSeparator
+        + new File(jdk8, "bin").getAbsolutePath());
+
+    MuleJvm jvm = MuleJvm.detect(muleHome, environment);
+    assertThat(jvm.getCommand(), equalTo(new File(jdk8, "bin/java")));
+    assertThat(jvm.getJavaVersion(), equalTo(8));
+  }
+
+  @Test
+  public void expandsEnvironmentInConfiguredCommand() throws IOException {
+    File jdk11 = createJdk("jdk-11", "11.0.12");
+    File jdk17 = createJdk("jdk-17", "17.0.2");
+    writeWrapperConf("#wrapper.java.command=java", "wrapper.java.command=%JAVA_HOME%/bin/java",
+                     "wrapper.java.command=%MULE_JDK%/bin/java");
+    environment.put("JAVA_HOME", jdk17.getAbsolutePath());
+    environment.put("MULE_JDK", jdk11.getAbsolutePath());
+
+    assertThat(MuleJvm.detect(muleHome, environment).getJavaVersion(), equalTo(11));
+  }
+
+  @Test
+  public void readsReleaseOfJdkWithJre() throws IOException {
+    File jdk8 = createJdk("jdk-8", "1.8.0_292");
+    File jreJava = new File(jdk8, "jre/bin/java");
+    jreJava.getParentFile().mkdirs();
+    jreJava.createNewFile();
+    writeWrapperConf("wrapper.java.command=" + jreJava.getAbsolutePath());
+
+    assertThat(MuleJvm.detect(muleHome, environment).getJavaVersion(), equalTo(8));
+  }
+
+  @Test
+  public void unknownWhenCommandIsMissing() throws IOException {
+    writeWrapperConf("wrapper.java.command=%JAVA_HOME%/bin/java");
+
+    MuleJvm jvm = MuleJvm.detect(muleHome, environment);
+    assertThat(jvm.getCommand(), nullValue());
+    assertThat(jvm.getJavaVersion(), nullValue());
+    environment.put("JAVA_HOME", new File(directory, "missing").getAbsolutePath());
+    assertThat(MuleJvm.detect(muleHome, environment).getJavaVersion(), nullValue());
+  }
+
+  private File createJdk(String name, String version) throws IOException {
+    File jdk = new File(directory, name);
+    File java = new File(jdk, "bin/java");
+    java.getParentFile().mkdirs();
+    java.createNewFile();
+    FileUtils.writeStringToFile(new File(jdk, "release"), "IMPLEMENTOR=\"Eclipse Adoptium\"\nJAVA_VERSION=\"" + version + "\"\n",
+                                ISO_8859_1);
+    return jdk;
+  }
+
+  private void writeWrapperConf(String... lines) throws IOException {
+    FileUtils.writeLines(new File(muleHome, WrapperConfigurator.WRAPPER_CONF), Arrays.asList(lines));
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PortAllocatorTestCase {
+
+  private static final int RANGE_START = 41000;
+
+  private File directory;
+  private File locks;
+  private PortAllocator allocator;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("ports").toFile();
+    locks = new File(directory, "locks");
+    allocator = new PortAllocator(new SystemStreamLog(), locks, RANGE_START, RANGE_START + 10 * PortAllocator.BLOCK_SIZE);
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory);
+  }
+
+  @Test
+  public void instancesGetDifferentRanges() throws IOException {
+    PortAllocation first = allocator.allocate(new File(directory, "mule0"));
+    PortAllocation second = allocator.allocate(new File(directory, "mule1"));
+
+    assertThat(first.getBasePort(), not(equalTo(second.getBasePort())));
+    assertThat(PortAllocator.read(new File(directory, "mule0")).getBasePort(), equalTo(first.getBasePort()));
+  }
+
+  @Test
+  public void instanceKeepsItsRange() throws IOException {
+    File muleHome = new File(directory, "mule0");
+    PortAllocation allocation = allocator.allocate(muleHome);
+
+    assertThat(allocator.allocate(muleHome).getBasePort(), equalTo(allocation.getBasePort()));
+  }
+
+  @Test
+  public void releasedRangeIsReused() throws IOException {
+    File muleHome = new File(directory, "mule0");
+    PortAllocation allocation = allocator.allocate(muleHome);
+
+    allocator.release(muleHome);
+
+    assertThat(PortAllocator.read(muleHome), nullValue());
+    assertThat(allocator.allocate(new File(directory, "mule1")).getBasePort(), equalTo(allocation.getBasePort()));
+  }
+
+  @Test
+  public void staleLockIsReclaimed() throws IOException {
+    File muleHome = new File(directory, "mule0");
+    PortAllocation allocation = allocator.allocate(muleHome);
+    FileUtils.deleteDirectory(muleHome);
+    new File(locks, allocation.getBasePort() + ".lock").setLastModified(System.currentTimeMillis() - 120000);
+
+    assertThat(allocator.allocate(new File(directory, "mule1")).getBasePort(), equalTo(allocation.getBasePort()));
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SingleFlightTestCase {
+
+  private static final int THREADS = 8;
+
+  private SingleFlight singleFlight = new SingleFlight();
+  private DeploymentMetrics metrics = new DeploymentMetrics();
+  private AtomicInteger calls = new AtomicInteger();
+
+  @Test
+  public void sharesCallAmongConcurrentThreads() throws Exception {
+    for (Integer value : ParallelExecutor.invokeAll(THREADS, executions(new Callable<Integer>() {
+
+      @Override
+      public Integer call() throws Exception {
+        awaitFollowers();
+        return calls.incrementAndGet();
+      }
+    }))) {
+      assertThat(value, equalTo(1));
+    }
+    assertThat(calls.get(), equalTo(1));
+    assertThat(metrics.get("http.reads.count"), equalTo((long) THREADS));
+    assertThat(metrics.get("http.reads.coalesced.count"), equalTo((long) THREADS - 1));
+  }
+
+  @Test
+  public void sharesFailure() throws Exception {
+    try {
+      ParallelExecutor.invokeAll(THREADS, executions(new Callable<Integer>() {
+
+        @Override
+        public Integer call() throws Exception {
+          awaitFollowers();
+          calls.incrementAndGet();
+          throw new ApiUnavailableException();
+        }
+      }));
+      fail("Expected the call to fail");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause() instanceof ApiUnavailableException, equalTo(true));
+    }
+    assertThat(calls.get(), equalTo(1));
+  }
+
+  @Test
+  public void callsAgainOnceCompleted() {
+    Callable<Integer> call = new Callable<Integer>() {
+
+      @Override
+      public Integer call() {
+        return calls.incrementAndGet();
+      }
+    };
+    singleFlight.execute("applications", call, metrics);
+    assertThat(singleFlight.execute("applications", call, metrics), equalTo(2));
+    assertThat(metrics.get("http.reads.coalesced.count"), equalTo(0L));
+  }
+
+  private List<Callable<Integer>> executions(final Callable<Integer> call) {
+    List<Callable<Integer>> executions = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      executions.add(new Callable<Integer>() {
+
+        @Override
+        public Integer call() {
+          return singleFlight.execute("applications", call, metrics);
+        }
+      });
+    }
+    return executions;
+  }
+
+  private void awaitFollowers() throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (metrics.get("http.reads.coalesced.count") < THREADS - 1 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+  }
+
+  private static class ApiUnavailableException extends RuntimeException {
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.Watchable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SourceWatcherTestCase {
+
+  private static final long DEBOUNCE = 300;
+
+  private File directory;
+  private Path source;
+  private Path target;
+  private TestWatchService watchService = new TestWatchService();
+  private TestSourceWatcher watcher;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("watch").toFile();
+    source = new File(directory, "src").toPath();
+    target = new File(directory, "app").toPath();
+    Files.createDirectories(source);
+    FileUtils.write(source.resolve("mule-config.xml").toFile(), "<mule/>");
+    FileUtils.write(source.resolve("mule-app.properties").toFile(), "http.port=8081");
+    watcher = new TestSourceWatcher(watchService);
+    watcher.watch(source, target);
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory);
+  }
+
+  @Test
+  public void batchesChangesUntilQuiet() throws Exception {
+    Path classes = new File(directory, "classes").toPath();
+    FileUtils.write(classes.resolve("log4j2.xml").toFile(), "<Configuration/>");
+    watcher.watch(classes, target.resolve("classes"));
+    TestWatchKey key = watcher.keys.get(source);
+    watchService.signal(key.event(ENTRY_MODIFY, "mule-config.xml").event(ENTRY_MODIFY, "mule-app.properties"));
+    watchService.signal(watcher.keys.get(classes).event(ENTRY_MODIFY, "log4j2.xml"));
+    watchService.signal(key.event(ENTRY_MODIFY, "mule-config.xml"));
+
+    SourceWatcher.Changes changes = watcher.awaitChanges();
+
+    assertThat(changes.files.keySet(), contains(source.resolve("mule-config.xml"), source.resolve("mule-app.properties"),
+                                                classes.resolve("log4j2.xml")));
+    assertThat(changes.resync, equalTo(false));
+    // Waited for more changes after each key, until one wait ended without changes
+    assertThat(watchService.pollTimeouts, contains(DEBOUNCE, DEBOUNCE));
+
+    watchService.signal(key.event(ENTRY_MODIFY, "mule-config.xml"));
+    assertThat(watcher.awaitChanges().files.keySet(), contains(source.resolve("mule-config.xml")));
+  }
+
+  @Test
+  public void mirrorsChangedAndDeletedFiles() throws Exception {
+    watcher.mirrorAll();
+    TestWatchKey key = watcher.keys.get(source);
+    FileUtils.write(source.resolve("mule-config.xml").toFile(), "<mule><flow name=\"main\"/></mule>");
+    Files.delete(source.resolve("mule-app.properties"));
+    watchService.signal(key.event(ENTRY_MODIFY, "mule-config.xml"));
+    watchService.signal(key.event(ENTRY_DELETE, "mule-app.properties"));
+    watchService.signal(key.event(ENTRY_CREATE, ".mule-config.xml.swp"));
+
+    SourceWatcher.Changes changes = watcher.awaitChanges();
+    watcher.apply(changes);
+
+    assertThat(changes.size(), equalTo(2));
+    assertThat(FileUtils.readFileToString(target.resolve("mule-config.xml").toFile()),
+               equalTo("<mule><flow name=\"main\"/></mule>"));
+    assertThat(Files.exists(target.resolve("mule-app.properties")), equalTo(false));
+  }
+
+  @Test
+  public void resynchronizesAfterOverflow() throws Exception {
+    FileUtils.write(source.resolve("flows/orders.xml").toFile(), "<mule/>");
+    watchService.signal(watcher.keys.get(source).event(OVERFLOW, null));
+
+    SourceWatcher.Changes changes = watcher.awaitChanges();
+    watcher.apply(changes);
+
+    assertThat(changes.resync, equalTo(true));
+    assertThat(changes.size(), equalTo(0));
+    assertThat(Files.exists(target.resolve("mule-config.xml")), equalTo(true));
+    assertThat(Files.exists(target.resolve("mule-app.properties")), equalTo(true));
+    assertThat(Files.exists(target.resolve("flows/orders.xml")), equalTo(true));
+  }
+
+  @Test
+  public void watchesNewSubdirectories() throws Exception {
+    FileUtils.write(source.resolve("flows/orders.xml").toFile(), "<mule/>");
+    watchService.signal(watcher.keys.get(source).event(ENTRY_CREATE, "flows"));
+
+    watcher.apply(watcher.awaitChanges());
+
+    assertThat(watcher.keys.containsKey(source.resolve("flows")), equalTo(true));
+    assertThat(Files.exists(target.resolve("flows/orders.xml")), equalTo(true));
+
+    FileUtils.write(source.resolve("flows/billing.xml").toFile(), "<mule/>");
+    watchService.signal(watcher.keys.get(source.resolve("flows")).event(ENTRY_CREATE, "billing.xml"));
+    watcher.apply(watcher.awaitChanges());
+
+    assertThat(FileUtils.readFileToString(target.resolve("flows/billing.xml").toFile()), equalTo("<mule/>"));
+  }
+
+  private static class TestSourceWatcher extends SourceWatcher {
+
+    private final Map<Path, TestWatchKey> keys = new HashMap<>();
+
+    TestSourceWatcher(WatchService watchService) {
+      super(watchService, new FileStager(new DeploymentMetrics()), DEBOUNCE, new SystemStreamLog());
+    }
+
+    @Override
+    WatchKey register(Path directory) {
+      TestWatchKey key = new TestWatchKey(directory);
+      keys.put(directory, key);
+      return key;
+    }
+  }
+
+  /**
+   * Delivers the signalled keys without waiting, recording how long it was asked to wait.
+   */
+  private static class TestWatchService implements WatchService {
+
+    private final LinkedBlockingQueue<WatchKey> signalled = new LinkedBlockingQueue<>();
+    private final List<Long> pollTimeouts = new ArrayList<>();
+
+    void signal(WatchKey key) {
+      if (!signalled.contains(key)) {
+        signalled.add(key);
+      }
+    }
+
+    @Override
+    public WatchKey poll() {
+      return signalled.poll();
+    }
+
+    @Override
+    public WatchKey poll(long timeout, TimeUnit unit) {
+      pollTimeouts.add(unit.toMillis(timeout));
+      return signalled.poll();
+    }
+
+    @Override
+    public WatchKey take() throws InterruptedException {
+      return signalled.take();
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  private static class TestWatchKey implements WatchKey {
+
+    private final Path directory;
+    private final List<WatchEvent<?>> events = new ArrayList<>();
+
+    TestWatchKey(Path directory) {
+      this.directory = directory;
+    }
+
+    TestWatchKey event(final WatchEvent.Kind<?> kind, String name) {
+      final Path context = name == null ? null : directory.getFileSystem().getPath(name);
+      events.add(new WatchEvent<Object>() {
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Kind<Object> kind() {
+          return (Kind<Object>) kind;
+        }
+
+        @Override
+        public int count() {
+          return 1;
+        }
+
+        @Override
+        public Object context() {
+          return context;
+        }
+      });
+      return this;
+    }
+
+    @Override
+    public boolean isValid() {
+      return true;
+    }
+
+    @Override
+    public List<WatchEvent<?>> pollEvents() {
+      List<WatchEvent<?>> polled = new ArrayList<>(events);
+      events.clear();
+      return polled;
+    }
+
+    @Override
+    public boolean reset() {
+      return true;
+    }
+
+    @Override
+    public void cancel() {}
+
+    @Override
+    public Watchable watchable() {
+      return directory;
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class StageGraphTestCase {
+
+  private DeploymentMetrics metrics = new DeploymentMetrics();
+  private StageGraph graph = new StageGraph("deploy", 4, metrics);
+
+  @After
+  public void tearDown() {
+    graph.close();
+  }
+
+  @Test
+  public void runsIndependentStagesConcurrently() throws DeploymentException {
+    CountDownLatch started = new CountDownLatch(2);
+    final StageGraph.Stage<Integer> first = graph.add("first", meet(started, 1));
+    final StageGraph.Stage<Integer> second = graph.add("second", meet(started, 2));
+    StageGraph.Stage<Integer> sum = graph.add("sum", new Callable<Integer>() {
+
+      @Override
+      public Integer call() {
+        return first.get() + second.get();
+      }
+    }, first, second);
+
+    assertThat(graph.await(sum), equalTo(3));
+    assertThat(metrics.contains("deploy.first.millis"), equalTo(true));
+    assertThat(metrics.contains("deploy.second.millis"), equalTo(true));
+    assertThat(metrics.get("deploy.stages.millis"), greaterThanOrEqualTo(metrics.get("deploy.critical.path.millis")));
+  }
+
+  @Test(expected = DeploymentException.class)
+  public void failsDependentStages() throws DeploymentException {
+    final AtomicBoolean ran = new AtomicBoolean();
+    StageGraph.Stage<Void> failing = graph.add("failing", new Callable<Void>() {
+
+      @Override
+      public Void call() throws DeploymentException {
+        throw new DeploymentException("Failed");
+      }
+    });
+    StageGraph.Stage<Void> dependent = graph.add("dependent", new Callable<Void>() {
+
+      @Override
+      public Void call() {
+        ran.set(true);
+        return null;
+      }
+    }, failing);
+
+    try {
+      graph.await(dependent);
+    } finally {
+      assertThat(ran.get(), equalTo(false));
+    }
+  }
+
+  /**
+   * A task that returns the value once all the tasks sharing the latch are running, so they fail unless they run at the
+   * same time.
+   */
+  private static Callable<Integer> meet(final CountDownLatch started, final int value) {
+    return new Callable<Integer>() {
+
+      @Override
+      public Integer call() throws InterruptedException {
+        started.countDown();
+        if (!started.await(5, TimeUnit.SECONDS)) {
+          throw new IllegalStateException("Stages are not concurrent");
+        }
+        return value;
+      }
+    };
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StartupTimingsTestCase {
+
+  private File directory;
+  private File timingsDirectory;
+  private File muleHome;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("startup-timings").toFile();
+    timingsDirectory = new File(directory, "repository/startup");
+    muleHome = new File(directory, "target/mule-enterprise-standalone-3.8.0");
+    muleHome.mkdirs();
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory);
+  }
+
+  @Test
+  public void recordsTimingsOfEachMode() throws IOException {
+    StartupTimings timings = new StartupTimings(timingsDirectory, muleHome);
+    assertThat(timings.getReadyMillis(StartupTimings.SEQUENTIAL), nullValue());
+    timings.setReadyMillis(StartupTimings.SEQUENTIAL, 20000);
+    timings.setReadyMillis(StartupTimings.COLD_START, 15000);
+
+    StartupTimings stored = new StartupTimings(timingsDirectory, muleHome);
+    assertThat(stored.getReadyMillis(StartupTimings.SEQUENTIAL), equalTo(20000L));
+    assertThat(stored.getReadyMillis(StartupTimings.COLD_START), equalTo(15000L));
+    assertThat(stored.getReadyMillis(StartupTimings.EMBEDDED), nullValue());
+  }
+
+  @Test
+  public void comparesWithBaseline() throws IOException {
+    StartupTimings timings = new StartupTimings(timingsDirectory, muleHome);
+    assertThat(timings.getSavedMillis(StartupTimings.SEQUENTIAL, 15000), nullValue());
+    timings.setReadyMillis(StartupTimings.SEQUENTIAL, 20000);
+    assertThat(timings.getSavedMillis(StartupTimings.SEQUENTIAL, 15000), equalTo(5000L));
+    assertThat(timings.getSavedMillis(StartupTimings.SEQUENTIAL, 21000), equalTo(-1000L));
+  }
+
+  @Test
+  public void baselineSurvivesExtractingMuleHomeAgain() throws IOException {
+    new StartupTimings(timingsDirectory, muleHome).setReadyMillis(StartupTimings.SEQUENTIAL, 20000);
+    FileUtils.deleteDirectory(muleHome);
+    muleHome.mkdirs();
+
+    assertThat(new StartupTimings(timingsDirectory, muleHome).getReadyMillis(StartupTimings.SEQUENTIAL), equalTo(20000L));
+    assertThat(muleHome.list().length, equalTo(0));
+  }
+
+  @Test
+  public void keepsTimingsPerMuleHome() throws IOException {
+    new StartupTimings(timingsDirectory, muleHome).setReadyMillis(StartupTimings.SEQUENTIAL, 20000);
+    File otherMuleHome = new File(directory, "other/target/mule-enterprise-standalone-3.8.0");
+
+    assertThat(new StartupTimings(timingsDirectory, otherMuleHome).getReadyMillis(StartupTimings.SEQUENTIAL), nullValue());
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.KeyStore;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TlsContextsTestCase {
+
+  private File directory;
+  private File trustStore;
+  private TlsConfiguration configuration;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("tls").toFile();
+    trustStore = new File(directory, "truststore.jks");
+    KeyStore store = KeyStore.getInstance("JKS");
+    store.load(null, null);
+    try (OutputStream stream = new FileOutputStream(trustStore)) {
+      store.store(stream, "changeit".toCharArray());
+    }
+    configuration = new TlsConfiguration().setTrustStore(trustStore, "changeit", "JKS");
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory);
+  }
+
+  @Test
+  public void buildsContextOncePerHost() throws Exception {
+    SSLContext context = TlsContexts.get("arm.example.com", configuration);
+    assertThat(TlsContexts.get("arm.example.com", configuration), sameInstance(context));
+    assertThat(TlsContexts.get("other.example.com", configuration), not(sameInstance(context)));
+  }
+
+  @Test
+  public void buildsContextPerStoreTypeAndPassword() throws Exception {
+    SSLContext context = TlsContexts.get("arm.example.com", configuration);
+    TlsConfiguration samePassword = new TlsConfiguration().setTrustStore(trustStore, "changeit", "JKS");
+    assertThat(TlsContexts.get("arm.example.com", samePassword), sameInstance(context));
+    // Without a password the integrity of the store is not checked
+    TlsConfiguration noPassword = new TlsConfiguration().setTrustStore(trustStore, null, "JKS");
+    assertThat(TlsContexts.get("arm.example.com", noPassword), not(sameInstance(context)));
+    TlsConfiguration otherPassword = new TlsConfiguration().setTrustStore(trustStore, "secret", "JKS");
+    assertThat(otherPassword.getKey(), not(equalTo(configuration.getKey())));
+    TlsConfiguration otherType = new TlsConfiguration().setTrustStore(trustStore, "changeit", "PKCS12");
+    assertThat(otherType.getKey(), not(equalTo(configuration.getKey())));
+  }
+
+  @Test
+  public void keyDoesNotHoldPasswords() {
+    TlsConfiguration keyStore = new TlsConfiguration().setKeyStore(trustStore, "s3cr3t-password", "JKS");
+    assertThat(keyStore.getKey().contains("s3cr3t-password"), equalTo(false));
+    assertThat(keyStore.getKey().contains(ApiSessionCache.digest("s3cr3t-password")), equalTo(true));
+    assertThat(keyStore.getKey(), not(equalTo(configuration.getKey())));
+  }
+
+  @Test
+  public void meteredContextSharesSessionCache() throws Exception {
+    SSLContext context = TlsContexts.get("arm.example.com", configuration);
+    SSLContext metered = new MeteredSslContext(context, new DeploymentMetrics());
+    assertThat(metered.getClientSessionContext(), sameInstance(context.getClientSessionContext()));
+    assertThat(metered.getProtocol(), equalTo(context.getProtocol()));
+  }
+}
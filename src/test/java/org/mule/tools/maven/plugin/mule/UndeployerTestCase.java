@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UndeployerTestCase {
+
+  private File appsDir;
+
+  @Before
+  public void setUp() throws IOException {
+    appsDir = Files.createTempDirectory("apps").toFile();
+    for (String name : new String[] {"orders-api", "orders-worker", "billing"}) {
+      new File(appsDir, name).mkdir();
+      new File(appsDir, name + "-anchor.txt").createNewFile();
+    }
+    new File(appsDir, "orders-batch.zip").createNewFile();
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(appsDir);
+  }
+
+  @Test
+  public void findsApplicationsMatchingWildcards() {
+    Map<String, List<File>> applications = Undeployer.findApplications(appsDir, Arrays.asList("orders-*"));
+    assertThat(applications.keySet(), contains("orders-api", "orders-batch", "orders-worker"));
+    assertThat(applications.get("orders-api"),
+               containsInAnyOrder(new File(appsDir, "orders-api"), new File(appsDir, "orders-api-anchor.txt")));
+    assertThat(applications.get("orders-batch"), contains(new File(appsDir, "orders-batch.zip")));
+  }
+
+  @Test
+  public void findsApplicationsByName() {
+    Map<String, List<File>> applications = Undeployer.findApplications(appsDir, Arrays.asList("billing", "orders-?pi"));
+    assertThat(applications.keySet(), contains("billing", "orders-api"));
+    assertThat(Undeployer.matchesAny(applications.keySet(), "orders-?pi"), equalTo(true));
+    assertThat(Undeployer.matchesAny(applications.keySet(), "inventory"), equalTo(false));
+  }
+
+  @Test
+  public void keepsDotsOfExplodedApplications() throws IOException {
+    for (String name : new String[] {"orders-1.0", "orders-1.0.0"}) {
+      new File(appsDir, name).mkdir();
+      new File(appsDir, name + "-anchor.txt").createNewFile();
+    }
+    new File(appsDir, "orders-1.0.1.zip").createNewFile();
+
+    Map<String, List<File>> applications = Undeployer.findApplications(appsDir, Arrays.asList("orders-1.0"));
+    assertThat(applications.keySet(), contains("orders-1.0"));
+    assertThat(applications.get("orders-1.0"),
+               containsInAnyOrder(new File(appsDir, "orders-1.0"), new File(appsDir, "orders-1.0-anchor.txt")));
+
+    applications = Undeployer.findApplications(appsDir, Arrays.asList("orders-1.0.*"));
+    assertThat(applications.keySet(), contains("orders-1.0.0", "orders-1.0.1"));
+    assertThat(applications.get("orders-1.0.0"),
+               containsInAnyOrder(new File(appsDir, "orders-1.0.0"), new File(appsDir, "orders-1.0.0-anchor.txt")));
+    assertThat(applications.get("orders-1.0.1"), contains(new File(appsDir, "orders-1.0.1.zip")));
+  }
+
+  @Test
+  public void findsNothingWithoutAppsDirectory() {
+    FileUtils.deleteQuietly(appsDir);
+    assertThat(Undeployer.findApplications(appsDir, Collections.singletonList("*")).isEmpty(), equalTo(true));
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+public class WrapperConfiguratorTestCase {
+
+  private static final List<String> WRAPPER_CONF = Arrays.asList("#encoding=UTF-8",
+                                                                 "wrapper.java.additional.1=-Dmule.home=\"%MULE_HOME%\"",
+                                                                 "wrapper.java.additional.2=-XX:+UseParNewGC",
+                                                                 "wrapper.java.additional.3=-XX:NewSize=512m",
+                                                                 "wrapper.java.additional.4=-XX:+HeapDumpOnOutOfMemoryError",
+                                                                 "wrapper.java.initmemory=1024",
+                                                                 "wrapper.java.maxmemory=1024");
+
+  private static final HostResources HOST = new HostResources(16L * 1024 * 1024 * 1024, 8, 11);
+
+  private WrapperConfigurator configurator = new WrapperConfigurator(null);
+
+  @Test
+  public void profileReplacesConflictingOptions() {
+    List<String> result = configurator.configure(WRAPPER_CONF, PerformanceProfile.fastStartup.toWrapperConfiguration(HOST, 1));
+
+    assertThat(result, equalTo(Arrays.asList("#encoding=UTF-8",
+                                             "wrapper.java.additional.1=-Dmule.home=\"%MULE_HOME%\"",
+                                             WrapperConfigurator.DISABLED_PREFIX + "wrapper.java.additional.2=-XX:+UseParNewGC",
+                                             WrapperConfigurator.DISABLED_PREFIX + "wrapper.java.additional.3=-XX:NewSize=512m",
+                                             "wrapper.java.additional.4=-XX:+HeapDumpOnOutOfMemoryError",
+                                             WrapperConfigurator.DISABLED_PREFIX + "wrapper.java.initmemory=1024",
+                                             WrapperConfigurator.DISABLED_PREFIX + "wrapper.java.maxmemory=1024",
+                                             WrapperConfigurator.BEGIN_MARKER,
+                                             "wrapper.java.initmemory=1024",
+                                             "wrapper.java.maxmemory=1024",
+                                             "wrapper.ignore_sequence_gaps=TRUE",
+                                             "wrapper.java.additional.5=-XX:+UseSerialGC",
+                                             "wrapper.java.additional.6=-XX:TieredStopAtLevel=1",
+                                             "wrapper.java.additional.7=-Xshare:auto",
+                                             WrapperConfigurator.END_MARKER)));
+  }
+
+  @Test
+  public void reconfigurationRestoresOriginalOptions() {
+    List<String> configured = configurator.configure(WRAPPER_CONF, PerformanceProfile.throughput.toWrapperConfiguration(HOST, 2));
+    List<String> result = configurator.configure(configured, new WrapperConfiguration());
+
+    assertThat(result, equalTo(WRAPPER_CONF));
+  }
+
+  @Test
+  public void configureThenUnconfigureRestoresOriginalFile() throws Exception {
+    File muleHome = Files.createTempDirectory("mule").toFile();
+    try {
+      File wrapperConf = new File(muleHome, WrapperConfigurator.WRAPPER_CONF);
+      FileUtils.writeLines(wrapperConf, "ISO-8859-1", WRAPPER_CONF);
+      WrapperConfigurator configurator = new WrapperConfigurator(new SystemStreamLog());
+
+      configurator.configure(muleHome, PerformanceProfile.lowMemory.toWrapperConfiguration(HOST, 4)
+          .setWrapperProperty("wrapper.port", "32000"));
+      assertThat(FileUtils.readLines(wrapperConf, "ISO-8859-1"), not(equalTo(WRAPPER_CONF)));
+      configurator.configure(muleHome, new WrapperConfiguration());
+
+      assertThat(FileUtils.readLines(wrapperConf, "ISO-8859-1"), equalTo(WRAPPER_CONF));
+    } finally {
+      FileUtils.deleteQuietly(muleHome);
+    }
+  }
+
+  @Test
+  public void reconfigurationIsIdempotent() {
+    WrapperConfiguration configuration = PerformanceProfile.lowMemory.toWrapperConfiguration(HOST, 4)
+        .setWrapperProperty("wrapper.port", "32000");
+    List<String> once = configurator.configure(WRAPPER_CONF, configuration);
+
+    assertThat(configurator.configure(once, configuration), equalTo(once));
+  }
+
+  @Test
+  public void heapIsSharedAmongNodes() {
+    assertThat(PerformanceProfile.throughput.getMaximumHeap(HOST, 1), equalTo(8192));
+    assertThat(PerformanceProfile.throughput.getMaximumHeap(HOST, 4), equalTo(2048));
+    assertThat(PerformanceProfile.throughput.getMaximumHeap(HOST, 64), equalTo(512));
+    assertThat(PerformanceProfile.lowMemory.getInitialHeap(HOST, 1), equalTo(128));
+  }
+
+  @Test
+  public void optionKeys() {
+    assertThat(WrapperConfigurator.optionKey("-XX:+UseSerialGC"), equalTo(WrapperConfigurator.optionKey("-XX:-UseSerialGC")));
+    assertThat(WrapperConfigurator.optionKey("-Dport=1"), equalTo(WrapperConfigurator.optionKey("-Dport=2")));
+    assertThat(WrapperConfigurator.optionKey("-Xss512k"), equalTo("-Xss"));
+  }
+}
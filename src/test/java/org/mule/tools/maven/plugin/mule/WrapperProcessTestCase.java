@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.tools.maven.plugin.mule;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WrapperProcessTestCase {
+
+  private File muleHome;
+
+  @Before
+  public void setUp() throws IOException {
+    muleHome = Files.createTempDirectory("mule").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(muleHome);
+  }
+
+  @Test
+  public void readsPidFiles() throws IOException {
+    int pid = Integer.parseInt(ManagementFactory.getRuntimeMXBean().getName().split("@")[0]);
+    FileUtils.write(new File(muleHome, "bin/.mule_ee.pid"), pid + "\n");
+    FileUtils.write(new File(muleHome, ".mule/invalid.pid"), "not a pid");
+
+    WrapperProcess process = new WrapperProcess(muleHome);
+
+    assertThat(process.getPids(), contains(pid));
+    // The test JVM doesn't run from MULE_HOME, so where /proc tells which instance a process belongs to its pid is foreign
+    assertThat(process.isAlive(), equalTo(!WrapperProcess.isProcAvailable()));
+  }
+
+  @Test
+  public void notAliveWithoutPidFiles() {
+    assertThat(new WrapperProcess(muleHome).isAlive(), equalTo(false));
+  }
+}